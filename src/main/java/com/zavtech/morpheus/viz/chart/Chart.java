@@ -128,6 +128,41 @@ public interface Chart<P> {
      */
     Chart writerPng(OutputStream os, int width, int height, boolean transparent);
 
+    /**
+     * Writes an SVG vector image of the chart to the file, which is gzip compressed if the name ends with .gz
+     * @param file          the file reference
+     * @param width         the image width
+     * @param height        the image height
+     * @return              this chart
+     */
+    Chart writeSvg(File file, int width, int height);
+
+    /**
+     * Writes an SVG vector image of the chart to the output stream, which is streamed as the chart is drawn
+     * @param os            the output stream
+     * @param width         the image width
+     * @param height        the image height
+     * @return              this chart
+     */
+    Chart writeSvg(OutputStream os, int width, int height);
+
+    /**
+     * Keeps this chart in sync with the DataFrames it plots, refreshing no more often than the rate specified
+     * Refreshes are driven by events fired through DataFrame.events(). Bursts of events are coalesced, datasets are rebuilt off the display thread and then published in a
+     * single hand-off. Datasets refreshed this way are published from a snapshot so painting never reads a frame being modified.
+     * Charts that render to static output ignore this setting.
+     * @param maxPerSecond  the maximum number of refreshes per second, zero to stop live refresh
+     * @return              this chart
+     */
+    Chart withLiveRefresh(int maxPerSecond);
+
+    /**
+     * Returns a version number for this chart that changes whenever its plot data, styles, axes or options change
+     * Datasets over a DataFrame that is modified in place only change version when they are refreshed.
+     * @return  the modification version for this chart
+     */
+    long version();
+
     /**
      * Writes a Javascript function with the name specified that will render this chart
      * @param jsCode            the Javascript code generator
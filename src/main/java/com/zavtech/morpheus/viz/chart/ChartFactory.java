@@ -16,7 +16,10 @@
 package com.zavtech.morpheus.viz.chart;
 
 import java.awt.*;
+import java.io.File;
+import java.io.Writer;
 import java.util.Iterator;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -27,6 +30,7 @@ import com.zavtech.morpheus.frame.DataFrameLeastSquares;
 import com.zavtech.morpheus.util.Bounds;
 import com.zavtech.morpheus.viz.chart.pie.PiePlot;
 import com.zavtech.morpheus.viz.chart.xy.XyPlot;
+import com.zavtech.morpheus.viz.chart.xy.XySource;
 import com.zavtech.morpheus.frame.DataFrame;
 
 /**
@@ -83,6 +87,91 @@ public interface ChartFactory {
     String javascript(Iterable<Chart<?>> charts);
 
 
+    /**
+     * Streams Javascript to embed in an HTML page which will plot the charts specified to the writer provided.
+     * This follows the same conventions as javascript(Chart...), but the script is written through a bounded
+     * buffer rather than built in memory, which suits charts with large datasets written to a file or socket.
+     * @param writer    the writer to stream Javascript to, which is flushed but not closed
+     * @param charts    the sequence of charts to generate Javascript from
+     */
+    void javascript(Writer writer, Iterable<Chart<?>> charts);
+
+
+    /**
+     * Sets the limits of the cache of generated chart scripts this factory reuses between calls to javascript()
+     * A cached script is spliced into the output while its chart version is unchanged, which avoids serializing
+     * charts that have not changed when a page is regenerated. Charts are only weakly referenced by the cache, and
+     * a script larger than the byte budget is never cached. A DataFrame modified in place must be refreshed through
+     * the chart data model for the change to be seen, and styles must be changed through the chart's accessors
+     * rather than through references retained from an earlier call.
+     * @param maxEntries    the maximum number of cached chart scripts, zero to disable caching
+     * @param maxBytes      the maximum bytes of cached chart scripts, counting two bytes per character, zero to disable caching
+     * @return              this factory
+     */
+    ChartFactory withScriptCache(int maxEntries, long maxBytes);
+
+
+    /**
+     * Sets the limits of the cache of images this factory embeds in generated Javascript for charts rendered in Java
+     * A cached image is reused while its chart version and size are unchanged, so regenerating a page only renders
+     * the charts that have changed. Images evicted from memory are spilled to the directory if one is given, which
+     * keeps large report sets cheap to regenerate without holding every image on the heap. This has no effect on
+     * charts that are rendered in the browser. Spilled images are deleted least recently used first once they exceed
+     * the disk budget, and the cache never keeps a chart reachable, so images of discarded charts are released.
+     * @param maxBytes      the maximum bytes of encoded images held in memory, zero to hold none
+     * @param directory     the directory to spill evicted images to, null to discard them
+     * @param maxDiskBytes  the maximum bytes of images spilled to the directory
+     * @return              this factory
+     */
+    ChartFactory withImageCache(long maxBytes, File directory, long maxDiskBytes);
+
+
+    /**
+     * Sets the executor on which this factory generates the script for each chart when calling javascript()
+     * Each chart is generated into its own buffer as a separate task and the results are stitched together in
+     * chart order, so a page of many charts is produced in roughly the time of the slowest chart.
+     * @param executor  the executor to generate charts on, null to generate charts serially on the calling thread
+     * @return          this factory
+     */
+    ChartFactory withExecutor(Executor executor);
+
+
+    /**
+     * Sets whether charts in generated pages are drawn only when their div scrolls near the viewport
+     * In lazy mode, drawCharts() observes each chart div and calls its drawChart_i function on first sight, so the
+     * data for off-screen charts is not decoded on page load. Pages written by show() also place each chart in its
+     * own script block, so the time to first paint does not grow with the number of charts on the page.
+     * @param lazy  true to draw charts lazily, false to draw all charts on page load
+     * @return      this factory
+     */
+    ChartFactory withLazyRendering(boolean lazy);
+
+
+    /**
+     * Writes an HTML page that plots the charts specified to a file, with the data for each chart in a separate file
+     * Data files are written in parallel to a sibling directory named after the page with a _files suffix, and the
+     * page loads each one through a script element when its chart is drawn, so it works from local disk without a
+     * web server. Data files are named by a hash of their content, so files unchanged since a previous export are
+     * reused. Charts that are rendered in Java are embedded in the page as images. A file name ending with .gz
+     * produces a single gzip compressed page with all data embedded instead.
+     * @param file      the HTML file to write
+     * @param columns   the number of columns in which to lay out the charts
+     * @param charts    the charts to include in the page
+     * @return          the HTML file written
+     */
+    File export(File file, int columns, Iterable<Chart<?>> charts);
+
+
+    /**
+     * Sets the gzip compression level used by export() for files whose name ends with .gz
+     * A compressed page embeds all chart data in a single self-contained file, since browsers will not load
+     * compressed side-car files from local disk, which suits archiving large numbers of reports.
+     * @param level     the compression level from 0 (none) to 9 (best)
+     * @return          this factory
+     */
+    ChartFactory withCompressionLevel(int level);
+
+
     /**
      * Returns a newly created XY chart and applies it to the configurator provided
      * @param configurator  the chart configurator
@@ -120,6 +209,23 @@ public interface ChartFactory {
     }
 
 
+    /**
+     * Returns a newly created Line Chart that reads directly from an XySource, such as a memory mapped file
+     * @param source        the source of domain and series values for the chart
+     * @param configurator  the configurator to accept config to the chart
+     * @return              the newly created chart
+     */
+    default <X extends Comparable,S extends Comparable> Chart<XyPlot<X>> withLinePlot(XySource<X,S> source, Consumer<Chart<XyPlot<X>>> configurator)  {
+        return ofXY(source.keyType(), chart -> {
+            chart.plot().<S>data().add(source);
+            chart.plot().render(0).withLines(false, false);
+            if (configurator != null) {
+                configurator.accept(chart);
+            }
+        });
+    }
+
+
     /**
      * Returns a newly created Line Chart using a column for the domain axis
      * @param frame         the DataFrame for the chart
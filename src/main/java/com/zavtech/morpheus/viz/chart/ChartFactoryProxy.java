@@ -15,8 +15,15 @@
  */
 package com.zavtech.morpheus.viz.chart;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -25,8 +32,10 @@ import com.zavtech.morpheus.util.Collect;
 import com.zavtech.morpheus.viz.chart.pie.PiePlot;
 import com.zavtech.morpheus.viz.chart.xy.XyPlot;
 import com.zavtech.morpheus.viz.google.GChartFactory;
+import com.zavtech.morpheus.viz.html.HtmlCode;
 import com.zavtech.morpheus.viz.jfree.JFChartFactory;
 import com.zavtech.morpheus.viz.js.JsCode;
+import com.zavtech.morpheus.viz.util.GzipOutput;
 
 /**
  * A ChartFactory that delegates all calls to some underlying factory that is implemented against a specific charting framework.
@@ -39,7 +48,11 @@ public class ChartFactoryProxy implements ChartFactory {
 
     private ChartFactory defaultFactory = new JFChartFactory();
     private ChartFactory swingFactory = new JFChartFactory();
-    private ChartFactory htmlFactory = new GChartFactory();
+    private GChartFactory htmlFactory = new GChartFactory();
+    private boolean lazy;
+    private int compressionLevel = GzipOutput.DEFAULT_LEVEL;
+    private Executor executor;
+    private ChartScriptCache scriptCache = new ChartScriptCache(0, 0L);
 
     /**
      * Constructor
@@ -93,34 +106,119 @@ public class ChartFactoryProxy implements ChartFactory {
 
     @Override
     public String javascript(Iterable<Chart<?>> charts) {
+        final StringWriter writer = new StringWriter();
+        this.javascript(writer, charts);
+        return writer.toString();
+    }
+
+
+    @Override
+    public void javascript(Writer writer, Iterable<Chart<?>> charts) {
         if (isMixedCharts(charts)) {
-            final List<Chart<?>> chartList = Collect.asList(charts);
-            return JsCode.create(jsCode -> {
-                jsCode.newLine().write("google.charts.load('current', {'packages':['corechart']});");
-                jsCode.newLine().write("google.charts.setOnLoadCallback(%s);", "drawCharts");
-                jsCode.newLine();
-                jsCode.newFunction("drawCharts", init -> {
-                    for (int i=0; i<chartList.size(); ++i) {
-                        init.write("drawChart_%s()", i);
-                        init.newLine();
-                    }
-                });
-                for (int i=0; i<chartList.size(); ++i) {
-                    final Chart chart = chartList.get(i);
-                    final String functionName = String.format("drawChart_%s", i);
-                    final String divId = chart.options().getId().orElse(String.format("chart_%s", i));
-                    jsCode.newLine().newLine();
-                    chart.accept(jsCode, functionName, divId);
-                }
-            });
+            final Chart<?>[] chartArray = Collect.asStream(charts).toArray(Chart<?>[]::new);
+            JsCode.create(writer, jsCode -> javascript(jsCode, chartArray, null));
         } else if (containsSwingCharts(charts)) {
-            return swingFactory.javascript(charts);
+            swingFactory.javascript(writer, charts);
         } else if (containsHtmlCharts(charts)) {
-            return htmlFactory.javascript(charts);
+            htmlFactory.javascript(writer, charts);
         } else if (charts.iterator().hasNext()) {
             throw new IllegalArgumentException("Unrecognized chart type in Iterable");
         } else {
-            return "console.info('No charts!')";
+            JsCode.create(writer, jsCode -> jsCode.write("console.info('No charts!')"));
+        }
+    }
+
+
+    @Override
+    public ChartFactory withScriptCache(int maxEntries, long maxBytes) {
+        this.scriptCache.withLimits(maxEntries, maxBytes);
+        this.defaultFactory.withScriptCache(maxEntries, maxBytes);
+        this.swingFactory.withScriptCache(maxEntries, maxBytes);
+        this.htmlFactory.withScriptCache(maxEntries, maxBytes);
+        return this;
+    }
+
+
+    @Override
+    public ChartFactory withImageCache(long maxBytes, File directory, long maxDiskBytes) {
+        this.defaultFactory.withImageCache(maxBytes, directory, maxDiskBytes);
+        this.swingFactory.withImageCache(maxBytes, directory, maxDiskBytes);
+        this.htmlFactory.withImageCache(maxBytes, directory, maxDiskBytes);
+        return this;
+    }
+
+
+    @Override
+    public ChartFactory withExecutor(Executor executor) {
+        this.executor = executor;
+        this.defaultFactory.withExecutor(executor);
+        this.swingFactory.withExecutor(executor);
+        this.htmlFactory.withExecutor(executor);
+        return this;
+    }
+
+
+    @Override
+    public ChartFactory withLazyRendering(boolean lazy) {
+        this.lazy = lazy;
+        this.defaultFactory.withLazyRendering(lazy);
+        this.swingFactory.withLazyRendering(lazy);
+        this.htmlFactory.withLazyRendering(lazy);
+        return this;
+    }
+
+
+    @Override
+    public ChartFactory withCompressionLevel(int level) {
+        this.defaultFactory.withCompressionLevel(level);
+        this.swingFactory.withCompressionLevel(level);
+        this.htmlFactory.withCompressionLevel(level);
+        this.compressionLevel = level;
+        return this;
+    }
+
+
+    @Override
+    public File export(File file, int columns, Iterable<Chart<?>> charts) {
+        if (isMixedCharts(charts)) {
+            final Chart<?>[] chartArray = Collect.asStream(charts).toArray(Chart<?>[]::new);
+            final String[] dataUrls = GzipOutput.isGzip(file) ? null : htmlFactory.writeData(file, chartArray);
+            try (Writer writer = new OutputStreamWriter(GzipOutput.open(file, compressionLevel), StandardCharsets.UTF_8)) {
+                HtmlCode.createHtml(writer, htmlCode -> {
+                    htmlCode.newElement("html", html -> {
+                        html.newElement("head", head -> {
+                            head.newElement("script", element -> {
+                                element.newAttribute("type", "text/javascript");
+                                element.newAttribute("src", "https://www.gstatic.com/charts/loader.js");
+                            });
+                            head.newElement("script", element -> {
+                                element.newAttribute("type", "text/javascript");
+                                element.javascript(jsCode -> javascript(jsCode, chartArray, dataUrls));
+                            });
+                        });
+                        final String width = String.valueOf((int)(100d / Math.max(1, columns))) + "%";
+                        html.newElement("body", body -> {
+                            for (int i=0; i<chartArray.length; ++i) {
+                                final String divId = chartArray[i].options().getId().orElse(String.format("chart_%s", i));
+                                body.newElement("div", div -> {
+                                    div.newAttribute("id", divId);
+                                    div.newAttribute("style", String.format("width:%s;float:left;", width));
+                                });
+                            }
+                        });
+                    });
+                });
+            } catch (IOException ex) {
+                throw new ChartException("Failed to export charts to " + file.getAbsolutePath(), ex);
+            }
+            if (dataUrls != null) {
+                this.htmlFactory.pruneData(file, dataUrls);
+            }
+            return file;
+        } else if (containsSwingCharts(charts)) {
+            return swingFactory.export(file, columns, charts);
+        } else {
+            return htmlFactory.export(file, columns, charts);
         }
     }
 
@@ -165,6 +263,45 @@ public class ChartFactoryProxy implements ChartFactory {
     }
 
 
+    /**
+     * Writes Javascript that loads the Google charting library and draws a mix of Google and Java rendered charts
+     * With data URLs, Google charts load their data from the side-car files written by GChartFactory.writeData(), and
+     * the functions for Java rendered charts stream their images straight into the code.
+     * @param jsCode    the code to write Javascript to
+     * @param charts    the charts to draw
+     * @param dataUrls  the relative URLs of the data file for each Google chart, null to embed all data in the code
+     */
+    private void javascript(JsCode jsCode, Chart<?>[] charts, String[] dataUrls) {
+        jsCode.newLine().write("google.charts.load('current', {'packages':['corechart']});");
+        jsCode.newLine().write("google.charts.setOnLoadCallback(%s);", "drawCharts");
+        jsCode.newLine();
+        if (lazy) {
+            scriptCache.acceptLazyDraw(jsCode, "drawCharts", charts);
+        } else {
+            jsCode.newFunction("drawCharts", init -> {
+                for (int i=0; i<charts.length; ++i) {
+                    init.write("drawChart_%s()", i);
+                    init.newLine();
+                }
+            });
+        }
+        if (dataUrls == null) {
+            scriptCache.accept(jsCode, executor, charts);
+        } else {
+            htmlFactory.acceptDataLoader(jsCode);
+            for (int i=0; i<charts.length; ++i) {
+                jsCode.newLine().newLine();
+                if (dataUrls[i] != null) {
+                    htmlFactory.acceptChart(jsCode, charts, i, dataUrls);
+                } else {
+                    final String divId = charts[i].options().getId().orElse(String.format("chart_%s", i));
+                    scriptCache.accept(jsCode, charts[i], String.format("drawChart_%s", i), divId);
+                }
+            }
+        }
+    }
+
+
     /**
      * Returns true if the charts are a mix of swing and html charts
      * @param charts    the iterable of charts
@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.chart;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An interface to an encoder that writes chart images rendered in Java to an output stream
+ *
+ * @see com.zavtech.morpheus.viz.util.PngEncoder
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public interface ChartImageEncoder {
+
+    /**
+     * Encodes the image to the output stream specified, which is not closed by this method
+     * @param image     the image to encode
+     * @param alpha     true to preserve the alpha channel of the image
+     * @param os        the output stream to write to
+     * @throws IOException  if there is an I/O exception
+     */
+    void encode(BufferedImage image, boolean alpha, OutputStream os) throws IOException;
+
+}
@@ -27,6 +27,22 @@ import java.util.Optional;
  */
 public interface ChartOptions {
 
+    /**
+     * The encodings that can be used when chart data is embedded in generated javascript
+     */
+    enum DataEncoding {
+
+        /**
+         * Data is written as a javascript array literal with one row per line
+         */
+        LITERAL,
+
+        /**
+         * Data is written as base64 encoded typed array columns with a null bitmap, which are decoded in the browser
+         */
+        TYPED_ARRAY
+    }
+
     /**
      * Returns the id for this chart
      * @return      the id for chart
@@ -39,6 +55,30 @@ public interface ChartOptions {
      */
     Optional<Dimension> getPreferredSize();
 
+    /**
+     * Returns the encoding used when chart data is embedded in generated javascript
+     * @return      the data encoding
+     */
+    DataEncoding getDataEncoding();
+
+    /**
+     * Returns true if chart data is reduced to a point budget derived from the preferred width before it is embedded
+     * @return      true if chart data is downsampled
+     */
+    boolean isDownsampled();
+
+    /**
+     * Returns the encoder used to write images of charts rendered in Java, if one has been set
+     * @return      the optional image encoder
+     */
+    Optional<ChartImageEncoder> getImageEncoder();
+
+    /**
+     * Returns a counter that is incremented whenever these options change
+     * @return      the modification version of these options
+     */
+    long getVersion();
+
     /**
      * Sets an id for this chart
      * @param id    the id string for chart
@@ -54,6 +94,33 @@ public interface ChartOptions {
      */
     ChartOptions withPreferredSize(int width, int height);
 
+    /**
+     * Sets the encoding used when chart data is embedded in generated javascript
+     * This has no effect on charts that are rendered in Java.
+     * @param encoding  the data encoding
+     * @return          these options
+     */
+    ChartOptions withDataEncoding(DataEncoding encoding);
+
+    /**
+     * Sets whether chart data is reduced to a point budget derived from the preferred width before it is embedded
+     * Each series keeps the first, last, minimum and maximum values per pixel column, so lines render as they
+     * would with the full data while the page carries a small fraction of the rows. This has no effect on
+     * charts that are rendered in Java.
+     * @param downsample    true to downsample chart data
+     * @return              these options
+     */
+    ChartOptions withDownsampling(boolean downsample);
+
+    /**
+     * Sets the encoder used to write images of charts rendered in Java, such as a tuned PngEncoder
+     * If no encoder is set, images are written with the JFreeChart default encoder. This has no effect on
+     * charts that are rendered in the browser.
+     * @param encoder   the image encoder, null for the default
+     * @return          these options
+     */
+    ChartOptions withImageEncoder(ChartImageEncoder encoder);
+
 
     /**
      * A default implementation of the ChartOptions
@@ -62,6 +129,10 @@ public interface ChartOptions {
 
         private String id;
         private Dimension preferredSize = new Dimension(800, 500);
+        private DataEncoding dataEncoding = DataEncoding.LITERAL;
+        private boolean downsampled;
+        private ChartImageEncoder imageEncoder;
+        private long version;
 
         @Override
         public Optional<String> getId() {
@@ -73,15 +144,58 @@ public interface ChartOptions {
             return Optional.ofNullable(preferredSize);
         }
 
+        @Override
+        public DataEncoding getDataEncoding() {
+            return dataEncoding;
+        }
+
+        @Override
+        public boolean isDownsampled() {
+            return downsampled;
+        }
+
+        @Override
+        public Optional<ChartImageEncoder> getImageEncoder() {
+            return Optional.ofNullable(imageEncoder);
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+
         @Override
         public ChartOptions withId(String id) {
             this.id = id;
+            this.version++;
             return this;
         }
 
         @Override
         public ChartOptions withPreferredSize(int width, int height) {
             this.preferredSize = new Dimension(width, height);
+            this.version++;
+            return this;
+        }
+
+        @Override
+        public ChartOptions withDataEncoding(DataEncoding encoding) {
+            this.dataEncoding = encoding != null ? encoding : DataEncoding.LITERAL;
+            this.version++;
+            return this;
+        }
+
+        @Override
+        public ChartOptions withDownsampling(boolean downsample) {
+            this.downsampled = downsample;
+            this.version++;
+            return this;
+        }
+
+        @Override
+        public ChartOptions withImageEncoder(ChartImageEncoder encoder) {
+            this.imageEncoder = encoder;
+            this.version++;
             return this;
         }
     }
@@ -0,0 +1,371 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.chart;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import com.zavtech.morpheus.viz.js.JsCode;
+
+/**
+ * A least recently used cache of the Javascript generated for charts, keyed by chart, function name and div id,
+ * and bounded by both entry count and total bytes.
+ *
+ * A cached script is spliced into the output for as long as the chart version is unchanged, otherwise the chart
+ * script is regenerated and replaces the cached entry. Charts are only weakly referenced, so the cache never keeps
+ * a chart reachable, and the scripts of charts that have been garbage collected are released on the next access.
+ * Scripts larger than the byte budget are written but never cached. Scripts are generated in memory before being
+ * cached, so a cache with zero entries or zero bytes, which is the default, writes charts straight through to the output instead.
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class ChartScriptCache {
+
+    private int maxEntries;
+    private long maxBytes;
+    private long totalBytes;
+    private Map<Key,Entry> entryMap = new LinkedHashMap<>(16, 0.75f, true);
+    private ReferenceQueue<Chart<?>> collected = new ReferenceQueue<>();
+
+
+    /**
+     * Constructor
+     * @param maxEntries    the maximum number of chart scripts to cache, zero to disable caching
+     * @param maxBytes      the maximum bytes of chart scripts to cache, zero to disable caching
+     */
+    public ChartScriptCache(int maxEntries, long maxBytes) {
+        this.withLimits(maxEntries, maxBytes);
+    }
+
+
+    /**
+     * Returns the maximum number of chart scripts held by this cache
+     * @return  the maximum number of entries
+     */
+    public synchronized int getMaxEntries() {
+        return maxEntries;
+    }
+
+
+    /**
+     * Returns the maximum bytes of chart scripts held by this cache, counting two bytes per character
+     * @return  the maximum bytes
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+
+    /**
+     * Returns true if this cache can hold any chart scripts
+     * @return  true if this cache is enabled
+     */
+    public synchronized boolean isEnabled() {
+        return maxEntries > 0 && maxBytes > 0;
+    }
+
+
+    /**
+     * Sets the entry and byte limits for this cache, evicting the least recently used scripts as required
+     * @param maxEntries    the maximum number of entries, zero to disable caching
+     * @param maxBytes      the maximum bytes of scripts, counting two bytes per character, zero to disable caching
+     * @return              this cache
+     */
+    public synchronized ChartScriptCache withLimits(int maxEntries, long maxBytes) {
+        if (maxEntries < 0) {
+            throw new ChartException("The maximum entries for a chart script cache must be >= 0, found " + maxEntries);
+        } else if (maxBytes < 0) {
+            throw new ChartException("The maximum bytes for a chart script cache must be >= 0, found " + maxBytes);
+        } else {
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+            this.purge();
+            this.evict();
+            return this;
+        }
+    }
+
+
+    /**
+     * Removes all cached chart scripts
+     */
+    public synchronized void clear() {
+        this.entryMap.clear();
+        this.totalBytes = 0L;
+    }
+
+
+    /**
+     * Writes the Javascript function for the chart, reusing the cached script if the chart is unchanged
+     * @param jsCode        the code to write the chart function to
+     * @param chart         the chart to write
+     * @param functionName  the function name for the chart's plot instructions
+     * @param divId         the ID of the div element in which to draw chart
+     */
+    public void accept(JsCode jsCode, Chart<?> chart, String functionName, String divId) {
+        if (!isEnabled()) {
+            chart.accept(jsCode, functionName, divId);
+        } else {
+            jsCode.write(script(chart, functionName, divId));
+        }
+    }
+
+
+    /**
+     * Writes a Javascript function for each chart, named drawChart_i and drawn into the div chart_i unless the chart defines an id
+     * With an executor, each chart is generated into its own buffer as a separate task, and the buffers are written
+     * in chart order as they complete, so the elapsed time is governed by the slowest chart rather than the sum.
+     * @param jsCode    the code to write the chart functions to
+     * @param executor  the executor to generate charts on, null to generate them serially on the calling thread
+     * @param charts    the charts to write
+     */
+    public void accept(JsCode jsCode, Executor executor, Chart<?>... charts) {
+        if (executor == null || charts.length < 2) {
+            for (int i=0; i<charts.length; ++i) {
+                final Chart<?> chart = charts[i];
+                final String functionName = String.format("drawChart_%s", i);
+                final String divId = chart.options().getId().orElse(String.format("chart_%s", i));
+                jsCode.newLine().newLine();
+                this.accept(jsCode, chart, functionName, divId);
+            }
+        } else {
+            final List<CompletableFuture<String>> scripts = new ArrayList<>(charts.length);
+            for (int i=0; i<charts.length; ++i) {
+                final Chart<?> chart = charts[i];
+                final String functionName = String.format("drawChart_%s", i);
+                final String divId = chart.options().getId().orElse(String.format("chart_%s", i));
+                scripts.add(CompletableFuture.supplyAsync(() -> script(chart, functionName, divId), executor));
+            }
+            try {
+                for (CompletableFuture<String> script : scripts) {
+                    jsCode.newLine().newLine();
+                    jsCode.write(script.join());
+                }
+            } catch (CompletionException ex) {
+                scripts.forEach(script -> script.cancel(false));
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException)ex.getCause();
+                } else {
+                    throw new ChartException("Failed to generate Javascript for chart", ex.getCause());
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Writes a function that draws each chart written by accept() only once its div comes within reach of the viewport
+     * An IntersectionObserver triggers each drawChart_i function the first time its div nears the viewport, so the data
+     * for off-screen charts is not decoded until it is needed. Browsers without IntersectionObserver, and charts whose
+     * div cannot be found, are drawn immediately. Divs should be given a size, since empty divs are all in view at once.
+     * @param jsCode        the code to write the function to
+     * @param functionName  the name of the function to write
+     * @param charts        the charts to draw
+     */
+    public void acceptLazyDraw(JsCode jsCode, String functionName, Chart<?>... charts) {
+        jsCode.newFunction(functionName, init -> {
+            init.write("var charts = {};");
+            for (int i=0; i<charts.length; ++i) {
+                final String divId = charts[i].options().getId().orElse(String.format("chart_%s", i));
+                init.newLine().write("charts['%s'] = drawChart_%s;", divId.replace("\\", "\\\\").replace("'", "\\'"), i);
+            }
+            init.newLine().write("var draw = function(id) {");
+            init.newLine().write("    var drawChart = charts[id];");
+            init.newLine().write("    delete charts[id];");
+            init.newLine().write("    if (drawChart) drawChart();");
+            init.newLine().write("};");
+            init.newLine().write("if (!window.IntersectionObserver) {");
+            init.newLine().write("    Object.keys(charts).forEach(draw);");
+            init.newLine().write("} else {");
+            init.newLine().write("    var observer = new IntersectionObserver(function(entries) {");
+            init.newLine().write("        entries.forEach(function(entry) {");
+            init.newLine().write("            if (entry.isIntersecting) {");
+            init.newLine().write("                observer.unobserve(entry.target);");
+            init.newLine().write("                draw(entry.target.id);");
+            init.newLine().write("            }");
+            init.newLine().write("        });");
+            init.newLine().write("    }, {rootMargin: '50% 0px'});");
+            init.newLine().write("    Object.keys(charts).forEach(function(id) {");
+            init.newLine().write("        var target = document.getElementById(id);");
+            init.newLine().write("        if (target) observer.observe(target); else draw(id);");
+            init.newLine().write("    });");
+            init.newLine().write("}");
+        });
+    }
+
+
+    /**
+     * Returns the Javascript function for the chart, reusing the cached script if the chart is unchanged
+     * @param chart         the chart to generate Javascript for
+     * @param functionName  the function name for the chart's plot instructions
+     * @param divId         the ID of the div element in which to draw chart
+     * @return              the chart script
+     */
+    private String script(Chart<?> chart, String functionName, String divId) {
+        final Key key = new Key(chart, functionName, divId, collected);
+        final long version = chart.version();
+        final Entry cached = get(key);
+        if (cached != null && cached.version == version) {
+            return cached.script;
+        } else {
+            final JsCode script = new JsCode();
+            chart.accept(script, functionName, divId);
+            final Entry entry = new Entry(version, script.toString());
+            this.put(key, entry);
+            return entry.script;
+        }
+    }
+
+
+    /**
+     * Returns the cached entry for the key
+     * @param key   the entry key
+     * @return      the cached entry, null if no match
+     */
+    private synchronized Entry get(Key key) {
+        this.purge();
+        return entryMap.get(key);
+    }
+
+
+    /**
+     * Caches the entry against the key, replacing any prior version, unless the script alone exceeds the byte budget
+     * @param key   the entry key
+     * @param entry the entry to cache
+     */
+    private synchronized void put(Key key, Entry entry) {
+        this.purge();
+        final Entry prior = entryMap.remove(key);
+        if (prior != null) {
+            this.totalBytes -= prior.length();
+        }
+        if (maxEntries > 0 && entry.length() <= maxBytes) {
+            this.entryMap.put(key, entry);
+            this.totalBytes += entry.length();
+            this.evict();
+        }
+    }
+
+
+    /**
+     * Removes the entries of charts that have been garbage collected, which must be called while holding the cache lock
+     */
+    private void purge() {
+        Reference<? extends Chart<?>> reference;
+        while ((reference = collected.poll()) != null) {
+            final Entry entry = entryMap.remove(reference);
+            if (entry != null) {
+                this.totalBytes -= entry.length();
+            }
+        }
+    }
+
+
+    /**
+     * Removes least recently used entries until the cache is within its limits, which must be called while holding the cache lock
+     */
+    private void evict() {
+        final Iterator<Entry> iterator = entryMap.values().iterator();
+        while (iterator.hasNext() && (entryMap.size() > maxEntries || totalBytes > maxBytes)) {
+            this.totalBytes -= iterator.next().length();
+            iterator.remove();
+        }
+    }
+
+
+    /**
+     * The cache key, which matches charts by identity without keeping them reachable
+     * A key whose chart has been collected is only equal to itself, so it can still be used to remove its entry.
+     */
+    private static class Key extends WeakReference<Chart<?>> {
+
+        private String functionName;
+        private String divId;
+        private int hashCode;
+
+        /**
+         * Constructor
+         * @param chart         the chart
+         * @param functionName  the function name
+         * @param divId         the div id
+         * @param queue         the queue the key is added to once the chart is collected
+         */
+        Key(Chart<?> chart, String functionName, String divId, ReferenceQueue<Chart<?>> queue) {
+            super(chart, queue);
+            this.functionName = functionName;
+            this.divId = divId;
+            this.hashCode = 31 * (31 * System.identityHashCode(chart) + functionName.hashCode()) + divId.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            } else if (!(other instanceof Key)) {
+                return false;
+            } else {
+                final Key key = (Key)other;
+                final Chart<?> chart = get();
+                return chart != null && chart == key.get() && functionName.equals(key.functionName) && divId.equals(key.divId);
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+
+    /**
+     * A cached chart script along with the chart version it was generated from
+     */
+    private static class Entry {
+
+        private long version;
+        private String script;
+
+        /**
+         * Constructor
+         * @param version   the chart version
+         * @param script    the generated script
+         */
+        Entry(long version, String script) {
+            this.version = version;
+            this.script = script;
+        }
+
+        /**
+         * Returns the approximate size of this entry in bytes
+         * @return  the size in bytes
+         */
+        long length() {
+            return script.length() * 2L;
+        }
+    }
+
+}
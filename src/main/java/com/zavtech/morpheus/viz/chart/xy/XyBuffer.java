@@ -0,0 +1,349 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.chart.xy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToDoubleFunction;
+
+import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.range.Range;
+import com.zavtech.morpheus.viz.chart.ChartException;
+
+/**
+ * A fixed capacity ring buffer of domain keys and primitive series values that backs an XyDataset which is appended to.
+ *
+ * Items are addressed by a logical index where zero is the oldest item, and once the buffer is full each appended
+ * item evicts the oldest one. Storage grows on demand up to the capacity, so a large capacity costs nothing until used.
+ *
+ * @param <X>   the domain key type
+ * @param <S>   the series key type
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class XyBuffer<X,S> implements XySource<X,S> {
+
+    /** The default capacity of buffers created for appendable datasets */
+    public static final int DEFAULT_CAPACITY = 100000;
+
+    private int capacity;
+    private int start;
+    private int size;
+    private Class<X> keyType;
+    private Object[] keys;
+    private double[] domain;
+    private double[][] values;
+    private List<S> seriesKeys;
+    private ToDoubleFunction<X> domainFunction;
+    private DataFrame<Integer,S> frame;
+
+
+    /**
+     * Constructor
+     * @param capacity          the maximum number of items retained by this buffer
+     * @param keyType           the domain key type
+     * @param seriesKeys        the series keys for this buffer
+     * @param domainFunction    the function to convert domain keys to doubles, null if not required
+     */
+    public XyBuffer(int capacity, Class<X> keyType, Iterable<S> seriesKeys, ToDoubleFunction<X> domainFunction) {
+        if (capacity <= 0) {
+            throw new ChartException("The capacity of an XyBuffer must be > 0, found " + capacity);
+        } else {
+            this.capacity = capacity;
+            this.keyType = keyType;
+            this.seriesKeys = new ArrayList<>();
+            this.domainFunction = domainFunction;
+            seriesKeys.forEach(this.seriesKeys::add);
+            this.keys = new Object[0];
+            this.domain = new double[0];
+            this.values = new double[this.seriesKeys.size()][0];
+        }
+    }
+
+
+    /**
+     * Returns the maximum number of items retained by this buffer
+     * @return  the capacity of this buffer
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+
+    /**
+     * Returns the number of items currently in this buffer
+     * @return  the number of items
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns true if this buffer contains no items
+     * @return  true if empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+
+    @Override
+    public Class<X> keyType() {
+        return keyType;
+    }
+
+
+    /**
+     * Returns the number of series in this buffer
+     * @return  the number of series
+     */
+    @Override
+    public int seriesCount() {
+        return seriesKeys.size();
+    }
+
+
+    /**
+     * Returns the series keys for this buffer
+     * @return  the series keys
+     */
+    @Override
+    public List<S> seriesKeys() {
+        return seriesKeys;
+    }
+
+
+    /**
+     * Returns the series key for the series index specified
+     * @param series    the series index
+     * @return          the series key
+     */
+    @Override
+    public S seriesKey(int series) {
+        return seriesKeys.get(series);
+    }
+
+
+    /**
+     * Returns the series index for the key specified
+     * @param seriesKey the series key
+     * @return          the series index, -1 if no match
+     */
+    @Override
+    public int seriesIndex(S seriesKey) {
+        return seriesKeys.indexOf(seriesKey);
+    }
+
+
+    /**
+     * Returns the domain key for the item specified
+     * @param item  the logical item index, where zero is the oldest item
+     * @return      the domain key
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public X key(int item) {
+        return (X)keys[slot(item)];
+    }
+
+
+    /**
+     * Returns the numeric domain value for the item specified
+     * @param item  the logical item index, where zero is the oldest item
+     * @return      the numeric domain value, NaN if this buffer has no domain function
+     */
+    @Override
+    public double domain(int item) {
+        return domainFunction != null ? domain[slot(item)] : Double.NaN;
+    }
+
+
+    /**
+     * Returns the value for the series and item specified
+     * @param series    the series index
+     * @param item      the logical item index, where zero is the oldest item
+     * @return          the series value
+     */
+    @Override
+    public double value(int series, int item) {
+        return values[series][slot(item)];
+    }
+
+
+    /**
+     * Returns a DataFrame view of this buffer keyed by logical item index, which is cached until the buffer changes
+     * @return  the DataFrame of series values in this buffer
+     */
+    @Override
+    public DataFrame<Integer,S> frame() {
+        if (frame == null) {
+            this.frame = DataFrame.ofDoubles(Range.of(0, size), seriesKeys, v -> value(v.colOrdinal(), v.rowOrdinal()));
+        }
+        return frame;
+    }
+
+
+    /**
+     * Returns the number of items held by this buffer that would be evicted by appending the number of rows specified
+     * The evicted items are always the oldest, so they occupy logical indexes zero through to the result minus one.
+     * @param rowCount  the number of rows to append
+     * @return          the number of items that would be evicted
+     */
+    public int evictions(int rowCount) {
+        return Math.min(size, Math.max(0, size + rowCount - capacity));
+    }
+
+
+    /**
+     * Appends the rows of a DataFrame to this buffer, matching columns to series by key
+     * Series that are not present in the frame are assigned NaN, and columns that are not series are ignored.
+     * @param rows          the DataFrame of rows to append
+     * @param keyFunction   the function that yields the domain key for a row ordinal in the frame
+     * @return              the number of previously held items evicted to make room for the new rows
+     */
+    public int append(DataFrame<?,S> rows, IntFunction<X> keyFunction) {
+        final int rowCount = rows.rowCount();
+        final int seriesCount = seriesKeys.size();
+        final int[] colOrdinals = new int[seriesCount];
+        for (int j=0; j<seriesCount; ++j) {
+            final S seriesKey = seriesKeys.get(j);
+            colOrdinals[j] = rows.cols().contains(seriesKey) ? rows.cols().ordinalOf(seriesKey) : -1;
+        }
+        final int evicted = evictions(rowCount);
+        final int first = Math.max(0, rowCount - capacity);
+        this.ensureCapacity(Math.min(capacity, size + rowCount));
+        for (int i=first; i<rowCount; ++i) {
+            final int slot = next();
+            final X key = keyFunction.apply(i);
+            this.keys[slot] = key;
+            if (domainFunction != null) {
+                this.domain[slot] = key != null ? domainFunction.applyAsDouble(key) : Double.NaN;
+            }
+            for (int j=0; j<seriesCount; ++j) {
+                final int colOrdinal = colOrdinals[j];
+                this.values[j][slot] = colOrdinal < 0 ? Double.NaN : rows.data().getDouble(i, colOrdinal);
+            }
+        }
+        this.frame = null;
+        return evicted;
+    }
+
+
+    /**
+     * Changes the capacity of this buffer, evicting the oldest items if the new capacity is smaller than the size
+     * @param capacity  the new capacity for this buffer
+     * @return          the number of items evicted
+     */
+    public int resize(int capacity) {
+        if (capacity <= 0) {
+            throw new ChartException("The capacity of an XyBuffer must be > 0, found " + capacity);
+        } else {
+            final int newSize = Math.min(size, capacity);
+            final int evicted = size - newSize;
+            final Object[] newKeys = new Object[newSize];
+            final double[] newDomain = new double[domainFunction != null ? newSize : 0];
+            final double[][] newValues = new double[values.length][newSize];
+            for (int i=0; i<newSize; ++i) {
+                final int slot = slot(evicted + i);
+                newKeys[i] = keys[slot];
+                if (domainFunction != null) {
+                    newDomain[i] = domain[slot];
+                }
+                for (int j=0; j<values.length; ++j) {
+                    newValues[j][i] = values[j][slot];
+                }
+            }
+            this.capacity = capacity;
+            this.start = 0;
+            this.size = newSize;
+            this.keys = newKeys;
+            this.domain = newDomain;
+            this.values = newValues;
+            this.frame = null;
+            return evicted;
+        }
+    }
+
+
+    /**
+     * Removes all items from this buffer and releases storage
+     */
+    public void clear() {
+        this.start = 0;
+        this.size = 0;
+        this.keys = new Object[0];
+        this.domain = new double[0];
+        this.values = new double[seriesKeys.size()][0];
+        this.frame = null;
+    }
+
+
+    /**
+     * Returns the physical array slot for the logical item index
+     * @param item  the logical item index
+     * @return      the array slot
+     */
+    private int slot(int item) {
+        final int slot = start + item;
+        return slot < capacity ? slot : slot - capacity;
+    }
+
+
+    /**
+     * Returns the slot for the next item to append, evicting the oldest item if the buffer is full
+     * @return  the array slot to write the next item to
+     */
+    private int next() {
+        if (size < capacity) {
+            return slot(size++);
+        } else {
+            final int slot = start;
+            this.start = start + 1 < capacity ? start + 1 : 0;
+            return slot;
+        }
+    }
+
+
+    /**
+     * Ensures the arrays in this buffer can hold the number of items specified
+     * Arrays only grow while the buffer has not wrapped, so existing items stay at the front of the arrays.
+     * @param required  the required number of slots
+     */
+    private void ensureCapacity(int required) {
+        if (keys.length < required) {
+            final int length = (int)Math.min(capacity, Math.max(required, Math.max(1024L, keys.length * 2L)));
+            final Object[] newKeys = new Object[length];
+            System.arraycopy(keys, 0, newKeys, 0, size);
+            this.keys = newKeys;
+            if (domainFunction != null) {
+                final double[] newDomain = new double[length];
+                System.arraycopy(domain, 0, newDomain, 0, size);
+                this.domain = newDomain;
+            }
+            for (int j=0; j<values.length; ++j) {
+                final double[] newValues = new double[length];
+                System.arraycopy(values[j], 0, newValues, 0, size);
+                this.values[j] = newValues;
+            }
+        }
+    }
+}
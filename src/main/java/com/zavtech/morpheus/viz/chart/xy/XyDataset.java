@@ -87,4 +87,21 @@ public interface XyDataset<X extends Comparable,S extends Comparable> {
      */
     XyDataset<X,S> withUpperDomainInterval(Function<X,X> upperIntervalFunction);
 
+    /**
+     * Sets whether this dataset should materialize its domain and series values into primitive arrays on refresh
+     * Snapshot mode trades memory for faster access to values, which is useful when plotting very large frames
+     * @param snapshot  true to capture a primitive snapshot of the data on each refresh
+     * @return  this model reference
+     */
+    XyDataset<X,S> withSnapshot(boolean snapshot);
+
+    /**
+     * Sets the maximum number of rows this dataset retains once rows are appended to it
+     * When appended to, the dataset copies its data into a ring buffer of this capacity and the oldest rows age out.
+     * @param capacity  the maximum number of rows to retain, which must be > 0
+     * @return  this model reference
+     * @see XyModel#append(int, DataFrame)
+     */
+    XyDataset<X,S> withCapacity(int capacity);
+
 }
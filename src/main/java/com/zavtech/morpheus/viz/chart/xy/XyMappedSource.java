@@ -0,0 +1,407 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.chart.xy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.range.Range;
+import com.zavtech.morpheus.viz.chart.ChartException;
+
+/**
+ * An XySource that reads fixed width binary records directly from a memory mapped file, so that files far larger
+ * than the heap can be plotted without first loading them into a DataFrame.
+ *
+ * Each record holds an optional domain column and one or more series columns at fixed offsets as described by a
+ * Schema. Files larger than 2GB are mapped as several regions, and a trailing partial record is ignored, which
+ * allows a file that is still being written to be opened. Records are read on demand by absolute index, so the
+ * source is safe to read from multiple threads.
+ *
+ * @param <X>   the domain key type, which is Double or Long depending on the domain column type, or Integer if none
+ * @param <S>   the series key type
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class XyMappedSource<X,S> implements XySource<X,S> {
+
+    /**
+     * The binary types supported for columns in a mapped record
+     */
+    public enum Type {
+
+        DOUBLE(8) {
+            @Override
+            double read(ByteBuffer buffer, int index) {
+                return buffer.getDouble(index);
+            }
+            @Override
+            Object key(ByteBuffer buffer, int index) {
+                return buffer.getDouble(index);
+            }
+        },
+
+        FLOAT(4) {
+            @Override
+            double read(ByteBuffer buffer, int index) {
+                return buffer.getFloat(index);
+            }
+            @Override
+            Object key(ByteBuffer buffer, int index) {
+                return (double)buffer.getFloat(index);
+            }
+        },
+
+        LONG(8) {
+            @Override
+            double read(ByteBuffer buffer, int index) {
+                return buffer.getLong(index);
+            }
+            @Override
+            Object key(ByteBuffer buffer, int index) {
+                return buffer.getLong(index);
+            }
+        },
+
+        INT(4) {
+            @Override
+            double read(ByteBuffer buffer, int index) {
+                return buffer.getInt(index);
+            }
+            @Override
+            Object key(ByteBuffer buffer, int index) {
+                return (long)buffer.getInt(index);
+            }
+        };
+
+        private int bytes;
+
+        /**
+         * Constructor
+         * @param bytes the number of bytes occupied by this type
+         */
+        Type(int bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Returns the number of bytes occupied by this type
+         * @return  the number of bytes
+         */
+        public int bytes() {
+            return bytes;
+        }
+
+        /**
+         * Returns the value at the absolute byte index in the buffer as a double
+         * @param buffer    the buffer to read from
+         * @param index     the absolute byte index
+         * @return          the value as a double
+         */
+        abstract double read(ByteBuffer buffer, int index);
+
+        /**
+         * Returns the value at the absolute byte index in the buffer as a domain key without loss of precision
+         * @param buffer    the buffer to read from
+         * @param index     the absolute byte index
+         * @return          the domain key
+         */
+        abstract Object key(ByteBuffer buffer, int index);
+    }
+
+
+    private Schema<S> schema;
+    private int size;
+    private int shift;
+    private int mask;
+    private ByteBuffer[] regions;
+    private DataFrame<Integer,S> frame;
+
+
+    /**
+     * Constructor
+     * @param channel   the file channel to map
+     * @param schema    the schema describing the records in the file
+     * @throws IOException  if the file cannot be mapped
+     */
+    private XyMappedSource(FileChannel channel, Schema<S> schema) throws IOException {
+        if (schema.seriesKeys.isEmpty()) {
+            throw new ChartException("A mapped source schema must define at least one series column");
+        } else {
+            final int recordSize = schema.recordSize;
+            final long recordCount = Math.max(0L, (channel.size() - schema.offset) / recordSize);
+            if (recordCount > Integer.MAX_VALUE) {
+                throw new ChartException("Mapped source has too many records to plot: " + recordCount);
+            } else {
+                this.schema = schema;
+                this.size = (int)recordCount;
+                while ((2L << shift) * recordSize <= Integer.MAX_VALUE && (1 << shift) < size) {
+                    this.shift++;
+                }
+                this.mask = (1 << shift) - 1;
+                this.regions = new ByteBuffer[size == 0 ? 0 : ((size - 1) >>> shift) + 1];
+                for (int i=0; i<regions.length; ++i) {
+                    final long first = (long)i << shift;
+                    final long count = Math.min(1L << shift, size - first);
+                    final long position = schema.offset + first * recordSize;
+                    this.regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, count * recordSize).order(schema.byteOrder);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns a newly created source that maps the file specified
+     * The file is closed once mapped, and the mapping remains valid until the source is garbage collected.
+     * @param file      the file to map
+     * @param schema    the schema describing the records in the file
+     * @param <X>       the domain key type
+     * @param <S>       the series key type
+     * @return          the newly created source
+     */
+    public static <X,S> XyMappedSource<X,S> of(File file, Schema<S> schema) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new XyMappedSource<>(channel, schema);
+        } catch (IOException ex) {
+            throw new ChartException("Failed to map file for chart source: " + file.getAbsolutePath(), ex);
+        }
+    }
+
+
+    /**
+     * Returns a newly created source that maps the file channel specified
+     * The channel is not closed by this source, but the mapping remains valid after the caller closes it.
+     * @param channel   the file channel to map
+     * @param schema    the schema describing the records in the channel
+     * @param <X>       the domain key type
+     * @param <S>       the series key type
+     * @return          the newly created source
+     */
+    public static <X,S> XyMappedSource<X,S> of(FileChannel channel, Schema<S> schema) {
+        try {
+            return new XyMappedSource<>(channel, schema);
+        } catch (IOException ex) {
+            throw new ChartException("Failed to map file channel for chart source", ex);
+        }
+    }
+
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Class<X> keyType() {
+        if (schema.domainType == null) {
+            return (Class<X>)Integer.class;
+        } else {
+            switch (schema.domainType) {
+                case DOUBLE:    return (Class<X>)Double.class;
+                case FLOAT:     return (Class<X>)Double.class;
+                default:        return (Class<X>)Long.class;
+            }
+        }
+    }
+
+
+    @Override
+    public int seriesCount() {
+        return schema.seriesKeys.size();
+    }
+
+
+    @Override
+    public List<S> seriesKeys() {
+        return Collections.unmodifiableList(schema.seriesKeys);
+    }
+
+
+    @Override
+    public S seriesKey(int series) {
+        return schema.seriesKeys.get(series);
+    }
+
+
+    @Override
+    public int seriesIndex(S seriesKey) {
+        return schema.seriesKeys.indexOf(seriesKey);
+    }
+
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public X key(int item) {
+        if (schema.domainType == null) {
+            return (X)Integer.valueOf(item);
+        } else {
+            final ByteBuffer region = regions[item >>> shift];
+            final int index = (item & mask) * schema.recordSize + schema.domainOffset;
+            return (X)schema.domainType.key(region, index);
+        }
+    }
+
+
+    @Override
+    public double domain(int item) {
+        if (schema.domainType == null) {
+            return item;
+        } else {
+            final ByteBuffer region = regions[item >>> shift];
+            final int index = (item & mask) * schema.recordSize + schema.domainOffset;
+            return schema.domainType.read(region, index);
+        }
+    }
+
+
+    @Override
+    public double value(int series, int item) {
+        final ByteBuffer region = regions[item >>> shift];
+        final int index = (item & mask) * schema.recordSize + schema.seriesOffsets.get(series);
+        return schema.seriesTypes.get(series).read(region, index);
+    }
+
+
+    @Override
+    public DataFrame<Integer,S> frame() {
+        if (frame == null) {
+            this.frame = DataFrame.ofDoubles(Range.of(0, size), schema.seriesKeys, v -> value(v.colOrdinal(), v.rowOrdinal()));
+        }
+        return frame;
+    }
+
+
+
+    /**
+     * A schema that describes the layout of fixed width records in a mapped file
+     *
+     * Columns are laid out in the order they are declared, and padding can be declared to skip unused bytes.
+     * If no domain column is declared, the record index is used as the domain.
+     *
+     * @param <S>   the series key type
+     */
+    public static class Schema<S> {
+
+        private long offset;
+        private int recordSize;
+        private int domainOffset = -1;
+        private Type domainType;
+        private ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+        private List<S> seriesKeys = new ArrayList<>();
+        private List<Type> seriesTypes = new ArrayList<>();
+        private List<Integer> seriesOffsets = new ArrayList<>();
+
+        /**
+         * Constructor
+         */
+        public Schema() {
+            super();
+        }
+
+        /**
+         * Sets the number of header bytes at the start of the file that precede the first record
+         * @param offset    the header length in bytes
+         * @return          this schema
+         */
+        public Schema<S> withOffset(long offset) {
+            if (offset < 0) {
+                throw new ChartException("The offset of a mapped source must be >= 0, found " + offset);
+            } else {
+                this.offset = offset;
+                return this;
+            }
+        }
+
+        /**
+         * Sets the byte order of values in the file, which defaults to big endian
+         * @param byteOrder the byte order
+         * @return          this schema
+         */
+        public Schema<S> withByteOrder(ByteOrder byteOrder) {
+            this.byteOrder = byteOrder;
+            return this;
+        }
+
+        /**
+         * Declares the domain column at the current position in the record
+         * @param type  the binary type of the domain column
+         * @return      this schema
+         */
+        public Schema<S> withDomain(Type type) {
+            if (domainType != null) {
+                throw new ChartException("A mapped source schema can only define one domain column");
+            } else {
+                this.domainType = type;
+                this.domainOffset = recordSize;
+                this.recordSize += type.bytes();
+                return this;
+            }
+        }
+
+        /**
+         * Declares a series column at the current position in the record
+         * @param seriesKey the series key
+         * @param type      the binary type of the series column
+         * @return          this schema
+         */
+        public Schema<S> withSeries(S seriesKey, Type type) {
+            if (seriesKeys.contains(seriesKey)) {
+                throw new ChartException("Duplicate series key in mapped source schema: " + seriesKey);
+            } else {
+                this.seriesKeys.add(seriesKey);
+                this.seriesTypes.add(type);
+                this.seriesOffsets.add(recordSize);
+                this.recordSize += type.bytes();
+                return this;
+            }
+        }
+
+        /**
+         * Declares unused bytes at the current position in the record
+         * @param bytes the number of bytes to skip
+         * @return      this schema
+         */
+        public Schema<S> withPadding(int bytes) {
+            if (bytes < 0) {
+                throw new ChartException("The padding in a mapped source schema must be >= 0, found " + bytes);
+            } else {
+                this.recordSize += bytes;
+                return this;
+            }
+        }
+
+        /**
+         * Returns the number of bytes in each record described by this schema
+         * @return  the record size in bytes
+         */
+        public int recordSize() {
+            return recordSize;
+        }
+    }
+
+}
@@ -72,6 +72,14 @@ public interface XyModel<X extends Comparable,S extends Comparable> {
      */
     int add(DataFrame<?,S> frame, S domainKey);
 
+    /**
+     * Adds a source of XY data that the plot reads from directly, such as a memory mapped file, without a DataFrame
+     * @param source    the source of domain and series values
+     * @return          the index assigned to the newly added dataset
+     * @see XyMappedSource
+     */
+    int add(XySource<X,S> source);
+
     /**
      * Applies an updated DataFrame to the model at the specified index
      * @param index the index of the data model to update with the specified frame
@@ -88,4 +96,23 @@ public interface XyModel<X extends Comparable,S extends Comparable> {
      * @return  the index assigned to the newly added dataset
      */
     XyDataset<X,S> update(int index, DataFrame<?,S> frame, S domainKey);
+
+    /**
+     * Appends rows to the dataset at the specified index, evicting the oldest rows beyond the dataset capacity
+     * The rows are keyed the same way as the dataset, either by row key or by the domain column the dataset was added with,
+     * and columns are matched to existing series by key. Change notifications describe the appended range and evictions,
+     * so renderers that downsample can extend a cached sample over the appended items rather than resample the series.
+     * @param index the index of the dataset to append to
+     * @param rows  the data frame containing the rows to append
+     * @return      the dataset appended to
+     * @see XyDataset#withCapacity(int)
+     */
+    XyDataset<X,S> append(int index, DataFrame<?,S> rows);
+
+    /**
+     * Refreshes all datasets in this model from their sources, along with any trend lines derived from them
+     * Datasets are independent of one another so implementations may rebuild them concurrently, and listeners
+     * are notified of a single change once every dataset has been refreshed.
+     */
+    void refreshAll();
 }
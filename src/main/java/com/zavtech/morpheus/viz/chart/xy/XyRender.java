@@ -47,6 +47,12 @@ public interface XyRender {
      */
     void withLines(boolean shapes, boolean dashed);
 
+    /**
+     * Configures the renderer to draw lines for very dense series, where each pixel column is reduced to
+     * the first, minimum, maximum and last values it covers so that spikes are always preserved
+     */
+    void withDenseLines();
+
     /**
      * Configures the renderer to draw splines with optional shapes and dashes
      * @param shapes    if true, include shapes at each datum
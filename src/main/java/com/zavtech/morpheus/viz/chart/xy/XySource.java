@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.chart.xy;
+
+import java.util.List;
+
+import com.zavtech.morpheus.frame.DataFrame;
+
+/**
+ * Interface to a source of XY data addressed by item index, which datasets can read from directly without a DataFrame
+ *
+ * @param <X>   the domain key type
+ * @param <S>   the series key type
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public interface XySource<X,S> {
+
+    /**
+     * Returns the number of items in this source
+     * @return  the number of items
+     */
+    int size();
+
+    /**
+     * Returns true if this source contains no items
+     * @return  true if empty
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the type of the domain keys in this source
+     * @return  the domain key type
+     */
+    Class<X> keyType();
+
+    /**
+     * Returns the number of series in this source
+     * @return  the number of series
+     */
+    int seriesCount();
+
+    /**
+     * Returns the series keys for this source
+     * @return  the series keys
+     */
+    List<S> seriesKeys();
+
+    /**
+     * Returns the series key for the series index specified
+     * @param series    the series index
+     * @return          the series key
+     */
+    S seriesKey(int series);
+
+    /**
+     * Returns the series index for the key specified
+     * @param seriesKey the series key
+     * @return          the series index, -1 if no match
+     */
+    int seriesIndex(S seriesKey);
+
+    /**
+     * Returns the domain key for the item specified
+     * @param item  the item index
+     * @return      the domain key
+     */
+    X key(int item);
+
+    /**
+     * Returns the numeric domain value for the item specified
+     * @param item  the item index
+     * @return      the numeric domain value, NaN if this source has no numeric domain
+     */
+    double domain(int item);
+
+    /**
+     * Returns the value for the series and item specified
+     * @param series    the series index
+     * @param item      the item index
+     * @return          the series value
+     */
+    double value(int series, int item);
+
+    /**
+     * Returns a DataFrame of the series values in this source keyed by item index
+     * This materializes every value on heap, so it should be avoided for very large sources.
+     * @return  the DataFrame of series values
+     */
+    DataFrame<Integer,S> frame();
+
+}
@@ -16,9 +16,15 @@
 package com.zavtech.morpheus.viz.google;
 
 import java.awt.*;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.UUID;
 import java.util.stream.Stream;
 
@@ -50,6 +56,7 @@ class GChart<P> implements Chart<P> {
     private LegendAdapter legend = new LegendAdapter();
     private GChartLabel title = new GChartLabel(Color.BLACK, new Font("Arial", Font.BOLD, 16));
     private GChartLabel subtitle = new GChartLabel(Color.BLACK, new Font("Arial", Font.BOLD, 14));
+    private long version;
 
     /**
      * Constructor
@@ -66,11 +73,13 @@ class GChart<P> implements Chart<P> {
 
     @Override
     public ChartLabel title() {
+        this.version++;
         return title;
     }
 
     @Override
     public ChartLabel subtitle() {
+        this.version++;
         return subtitle;
     }
 
@@ -86,6 +95,7 @@ class GChart<P> implements Chart<P> {
 
     @Override
     public ChartLegend legend() {
+        this.version++;
         return legend;
     }
 
@@ -98,39 +108,44 @@ class GChart<P> implements Chart<P> {
     @SuppressWarnings("unchecked")
     public Chart show(int width, int height) {
         try {
+            final GChartServer server = GChartServer.current();
+            if (server != null) {
+                Desktop.getDesktop().browse(server.publish(1, Collections.singletonList(this)));
+                return this;
+            }
             final String divName = "chart1";
             final String functionName = "drawChart1";
-            final HtmlCode writer = new HtmlCode();
-            writer.newElement("html", html -> {
-                html.newElement("head", head -> {
-                    head.newElement("script", script -> {
-                        script.newAttribute("type", "text/javascript");
-                        script.newAttribute("src", "https://www.gstatic.com/charts/loader.js");
-                    });
-                    head.newElement("script", script -> {
-                        script.newAttribute("type", "text/javascript");
-                        script.text(JsCode.create(js -> {
-                            js.newLine().write("google.charts.load('current', {'packages':['corechart']});");
-                            js.newLine().write("google.charts.setOnLoadCallback(%s);", functionName);
-                            this.accept(js, functionName, divName);
-                        }));
-                    });
-                });
-                html.newElement("body", body -> {
-                    body.newElement("div", div -> {
-                        div.newAttribute("id", divName);
-                        div.newAttribute("style", "width:100%;height:100%;");
-                    });
-                });
-            });
-
             final File dir = new File(System.getProperty("user.home"), ".morpheus/charts");
             final File file = new File(dir, UUID.randomUUID().toString() + ".html");
             if (file.getParentFile().mkdirs()) System.out.println("Created directory: " + dir.getAbsolutePath());
 
-            System.out.println(writer.toString());
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                HtmlCode.createHtml(writer, htmlCode -> {
+                    htmlCode.newElement("html", html -> {
+                        html.newElement("head", head -> {
+                            head.newElement("script", script -> {
+                                script.newAttribute("type", "text/javascript");
+                                script.newAttribute("src", "https://www.gstatic.com/charts/loader.js");
+                            });
+                            head.newElement("script", script -> {
+                                script.newAttribute("type", "text/javascript");
+                                script.javascript(js -> {
+                                    js.newLine().write("google.charts.load('current', {'packages':['corechart']});");
+                                    js.newLine().write("google.charts.setOnLoadCallback(%s);", functionName);
+                                    this.accept(js, functionName, divName);
+                                });
+                            });
+                        });
+                        html.newElement("body", body -> {
+                            body.newElement("div", div -> {
+                                div.newAttribute("id", divName);
+                                div.newAttribute("style", "width:100%;height:100%;");
+                            });
+                        });
+                    });
+                });
+            }
 
-            writer.flush(file);
             Desktop.getDesktop().browse(file.toURI());
             return this;
         } catch (Exception ex) {
@@ -153,69 +168,183 @@ class GChart<P> implements Chart<P> {
     }
 
 
+    @Override
+    public Chart writeSvg(File file, int width, int height) {
+        throw new UnsupportedOperationException("Google Charts are drawn in the browser and cannot be written as SVG, use a JFreeChart chart factory");
+    }
+
+
+    @Override
+    public Chart writeSvg(OutputStream os, int width, int height) {
+        throw new UnsupportedOperationException("Google Charts are drawn in the browser and cannot be written as SVG, use a JFreeChart chart factory");
+    }
+
+
+    @Override
+    public Chart withLiveRefresh(int maxPerSecond) {
+        return this;
+    }
+
+
     @Override
     public void accept(JsCode jsCode, String functionName, String divId) {
+        this.accept(jsCode, functionName, divId, null);
+    }
+
+
+    /**
+     * Writes the Javascript function that draws this chart, optionally publishing the chart objects for later updates
+     * @param jsCode        the code to write the function to
+     * @param functionName  the function name
+     * @param divId         the ID of the div element in which to draw chart
+     * @param handle        the variable to assign {data, options, chart} to once drawn, null for none
+     */
+    void accept(JsCode jsCode, String functionName, String divId, String handle) {
         jsCode.write("/** This is code generation by the Morpheus Visualization library */");
         jsCode.newFunction(functionName, func -> {
-            if (plot() instanceof GXyPlot) {
-                final GXyModel model = (GXyModel)((GXyPlot)plot).data();
-                final GXyDataset dataset = model.getUnifiedDataset();
-                func.write("var data = google.visualization.arrayToDataTable(");
-                dataset.accept(func);
-                func.write(");");
-            } else if (plot instanceof GPiePlot) {
-                final GPiePlot plot = (GPiePlot)plot();
-                final GPieModel model = (GPieModel)plot.data();
-                func.write("var data = google.visualization.arrayToDataTable(");
-                model.accept(func);
-                func.write(");");
-            }
+            this.acceptData(func);
             func.newLine(2);
-            func.write("var options = ");
-            func.newObject(options -> {
-                options.setIgnoreNulls(true);
-                options.newAttribute("fontSize", "automatic");
-                options.newAttribute("fontName", "Arial");
-                options.newAttribute("title", createTitle());
-                options.newAttribute("titlePosition", "out");
-                options.newObject("titleTextStyle", title);
-                options.newObject("backgroundColor", background -> {
-                    //background.newAttribute("stroke", "");
-                    background.newAttribute("strokeWidth", 0);
-                    //background.newAttribute("fill", "");
-                });
-                options.newObject("chartArea", area -> {
-                    area.newAttribute("left", "auto");
-                    area.newAttribute("top", "auto");
-                    area.newAttribute("width", "80%");
-                    area.newAttribute("height", "auto");
+            this.acceptDraw(func, divId, handle);
+        });
+    }
+
+
+    /**
+     * Writes statements that assign the Google DataTable for this chart to a variable named data
+     * @param jsCode    the code to write the statements to
+     */
+    void acceptData(JsCode jsCode) {
+        if (plot() instanceof GXyPlot) {
+            final GXyModel model = (GXyModel)((GXyPlot)plot).data();
+            final GXyDataset dataset = model.getUnifiedDataset();
+            if (options.getDataEncoding() == ChartOptions.DataEncoding.TYPED_ARRAY) {
+                GXyDataset.acceptDecoder(jsCode);
+                jsCode.newLine(2);
+                jsCode.write("var data = ");
+                dataset.acceptTypedArrays(jsCode, sample(dataset));
+                jsCode.write(";");
+            } else {
+                jsCode.write("var data = ");
+                this.acceptDataTable(jsCode);
+                jsCode.write(";");
+            }
+        } else if (plot instanceof GPiePlot) {
+            jsCode.write("var data = ");
+            this.acceptDataTable(jsCode);
+            jsCode.write(";");
+        }
+    }
+
+
+    /**
+     * Writes statements that draw this chart from the Google DataTable held in a variable named data
+     * @param jsCode    the code to write the statements to
+     * @param divId     the ID of the div element in which to draw chart
+     * @param handle    the variable to assign {data, options, chart} to once drawn, null for none
+     */
+    void acceptDraw(JsCode jsCode, String divId, String handle) {
+        jsCode.write("var options = ");
+        this.acceptOptions(jsCode);
+        jsCode.write(";");
+        jsCode.newLine();
+        jsCode.newLine().write("var target = document.getElementById('%s');", divId);
+        jsCode.newLine().write("var chart = new google.visualization.%s(target);", getChartType());
+        jsCode.newLine().write("chart.draw(data, options);");
+        if (handle != null) {
+            jsCode.newLine().write("%s = {data: data, options: options, chart: chart};", handle);
+        }
+    }
+
+
+    /**
+     * Returns the rows of the dataset to embed given the downsampling options for this chart
+     * @param dataset   the dataset to sample
+     * @return          the sorted row indexes to embed, null to embed all rows
+     */
+    private int[] sample(GXyDataset dataset) {
+        return options.isDownsampled() ? dataset.sample(options.getPreferredSize().map(size -> size.width).orElse(800)) : null;
+    }
+
+
+    /**
+     * Writes a Javascript expression that creates a Google DataTable of the data for this chart from an array literal
+     * @param jsCode    the code to write the expression to
+     */
+    void acceptDataTable(JsCode jsCode) {
+        jsCode.write("google.visualization.arrayToDataTable(");
+        if (plot instanceof GXyPlot) {
+            final GXyModel model = (GXyModel)((GXyPlot)plot).data();
+            final GXyDataset dataset = model.getUnifiedDataset();
+            dataset.accept(jsCode, sample(dataset));
+        } else if (plot instanceof GPiePlot) {
+            ((GPiePlot)plot).model().accept(jsCode);
+        }
+        jsCode.write(")");
+    }
+
+
+    /**
+     * Returns the sum of the modification counters of this chart, its options, its plot and its data
+     * Each counter only ever increases, so the sum changes with any one of them, and is cheap enough to poll. A style
+     * change is counted when the accessor for the styled component is called, so styles must be changed through the
+     * chart rather than through references retained from an earlier call.
+     * @return  the modification version of this chart
+     */
+    @Override
+    public long version() {
+        if (plot instanceof GXyPlot) {
+            final GXyPlot<?> xyPlot = (GXyPlot<?>)plot;
+            return version + options.getVersion() + xyPlot.version() + ((GXyModel<?,?>)xyPlot.data()).version();
+        } else if (plot instanceof GPiePlot) {
+            return version + options.getVersion() + ((GPiePlot<?,?>)plot).version();
+        } else {
+            return version + options.getVersion();
+        }
+    }
+
+
+    /**
+     * Writes the Google chart options object for this chart, which covers all styling, axes and legend properties
+     * @param jsCode    the code to write the options object to
+     */
+    void acceptOptions(JsCode jsCode) {
+        jsCode.newObject(options -> {
+            options.setIgnoreNulls(true);
+            options.newAttribute("fontSize", "automatic");
+            options.newAttribute("fontName", "Arial");
+            options.newAttribute("title", createTitle());
+            options.newAttribute("titlePosition", "out");
+            options.newObject("titleTextStyle", title);
+            options.newObject("backgroundColor", background -> {
+                //background.newAttribute("stroke", "");
+                background.newAttribute("strokeWidth", 0);
+                //background.newAttribute("fill", "");
+            });
+            options.newObject("chartArea", area -> {
+                area.newAttribute("left", "auto");
+                area.newAttribute("top", "auto");
+                area.newAttribute("width", "80%");
+                area.newAttribute("height", "auto");
+            });
+            if (legend.enabled) {
+                options.newObject("legend", legend -> {
+                    legend.newAttribute("position", this.legend.position);
+                    legend.newAttribute("alignment", this.legend.alignment);
+                    legend.newObject("textStyle", this.legend.style);
                 });
-                if (legend.enabled) {
-                    options.newObject("legend", legend -> {
-                        legend.newAttribute("position", this.legend.position);
-                        legend.newAttribute("alignment", this.legend.alignment);
-                        legend.newObject("textStyle", this.legend.style);
-                    });
-                }
-                if (plot instanceof GXyPlot) {
-                    ((GXyPlot)plot).accept(options);
-                    options.newObject("explorer", explorer -> {
-                        explorer.newAttribute("keepInBounds", true);
-                        explorer.newArray("actions", true, a -> {
-                            a.append("dragToZoom");
-                            a.append("rightClickToReset");
-                        });
+            }
+            if (plot instanceof GXyPlot) {
+                ((GXyPlot)plot).accept(options);
+                options.newObject("explorer", explorer -> {
+                    explorer.newAttribute("keepInBounds", true);
+                    explorer.newArray("actions", true, a -> {
+                        a.append("dragToZoom");
+                        a.append("rightClickToReset");
                     });
-                } else if (plot instanceof GPiePlot) {
-                    ((GPiePlot)plot).accept(options);
-                }
-            });
-
-            func.write(";");
-            func.newLine();
-            func.newLine().write("var target = document.getElementById('%s');", divId);
-            func.newLine().write("var chart = new google.visualization.%s(target);", getChartType());
-            func.newLine().write("chart.draw(data, options);");
+                });
+            } else if (plot instanceof GPiePlot) {
+                ((GPiePlot)plot).accept(options);
+            }
         });
     }
 
@@ -246,7 +375,7 @@ class GChart<P> implements Chart<P> {
             return "PieChart";
         }  else if (plot instanceof GXyPlot) {
             final GXyPlot gxyPlot = (GXyPlot)plot;
-            final GXyRender render = (GXyRender)gxyPlot.render(0);
+            final GXyRender render = gxyPlot.renderAt(0);
             final boolean vertical = gxyPlot.isVertical();
             switch (render.getChartType()) {
                 case LINES:     return "LineChart";
@@ -16,19 +16,46 @@
 package com.zavtech.morpheus.viz.google;
 
 import java.awt.*;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.zavtech.morpheus.util.Collect;
 import com.zavtech.morpheus.viz.chart.Chart;
+import com.zavtech.morpheus.viz.chart.ChartException;
 import com.zavtech.morpheus.viz.chart.ChartFactory;
+import com.zavtech.morpheus.viz.chart.ChartScriptCache;
 import com.zavtech.morpheus.viz.chart.pie.PiePlot;
 import com.zavtech.morpheus.viz.chart.xy.XyPlot;
 import com.zavtech.morpheus.viz.html.HtmlCode;
 import com.zavtech.morpheus.viz.js.JsCode;
+import com.zavtech.morpheus.viz.util.GzipOutput;
 
 /**
  * A ChartEngine implementation used to create Google chart instances based on the Morpheus charting API.
@@ -41,6 +68,10 @@ import com.zavtech.morpheus.viz.js.JsCode;
  */
 public class GChartFactory implements ChartFactory {
 
+    private boolean lazy;
+    private int compressionLevel = GzipOutput.DEFAULT_LEVEL;
+    private Executor executor;
+    private ChartScriptCache scriptCache = new ChartScriptCache(0, 0L);
 
     /**
      * Constructor
@@ -64,24 +95,84 @@ public class GChartFactory implements ChartFactory {
 
     @Override
     public String javascript(Chart... charts) {
-        return JsCode.create(jsCode -> {
-            jsCode.newLine().write("google.charts.load('current', {'packages':['corechart']});");
-            jsCode.newLine().write("google.charts.setOnLoadCallback(%s);", "drawCharts");
-            jsCode.newLine();
+        return JsCode.create(jsCode -> javascript(jsCode, charts));
+    }
+
+
+    @Override
+    public void javascript(Writer writer, Iterable<Chart<?>> charts) {
+        JsCode.create(writer, jsCode -> javascript(jsCode, Collect.asStream(charts).toArray(Chart[]::new)));
+    }
+
+
+    @Override
+    public ChartFactory withScriptCache(int maxEntries, long maxBytes) {
+        this.scriptCache.withLimits(maxEntries, maxBytes);
+        return this;
+    }
+
+
+    @Override
+    public ChartFactory withImageCache(long maxBytes, File directory, long maxDiskBytes) {
+        return this;
+    }
+
+
+    @Override
+    public ChartFactory withExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+
+    @Override
+    public ChartFactory withLazyRendering(boolean lazy) {
+        this.lazy = lazy;
+        return this;
+    }
+
+
+    @Override
+    public ChartFactory withCompressionLevel(int level) {
+        if (level < 0 || level > 9) {
+            throw new ChartException("The compression level must be in the range 0-9, found " + level);
+        } else {
+            this.compressionLevel = level;
+            return this;
+        }
+    }
+
+
+    /**
+     * Writes Javascript to plot the charts specified to the code provided
+     * @param jsCode    the code to write Javascript to
+     * @param charts    the charts to generate Javascript from
+     */
+    private void javascript(JsCode jsCode, Chart... charts) {
+        this.javascriptLoader(jsCode, charts);
+        this.scriptCache.accept(jsCode, executor, charts);
+    }
+
+
+    /**
+     * Writes Javascript to load the Google charting library and call drawCharts(), which draws the charts specified
+     * @param jsCode    the code to write Javascript to
+     * @param charts    the charts to be drawn, whose drawChart_i functions are written separately
+     */
+    private void javascriptLoader(JsCode jsCode, Chart... charts) {
+        jsCode.newLine().write("google.charts.load('current', {'packages':['corechart']});");
+        jsCode.newLine().write("google.charts.setOnLoadCallback(%s);", "drawCharts");
+        jsCode.newLine();
+        if (lazy) {
+            this.scriptCache.acceptLazyDraw(jsCode, "drawCharts", charts);
+        } else {
             jsCode.newFunction("drawCharts", init -> {
                 for (int i=0; i<charts.length; ++i) {
                     init.write("drawChart_%s()", i);
                     init.newLine();
                 }
             });
-            for (int i=0; i<charts.length; ++i) {
-                final Chart chart = charts[i];
-                final String functionName = String.format("drawChart_%s", i);
-                final String divId = chart.options().getId().orElse(String.format("chart_%s", i));
-                jsCode.newLine().newLine();
-                chart.accept(jsCode, functionName, divId);
-            }
-        });
+        }
     }
 
 
@@ -94,8 +185,114 @@ public class GChartFactory implements ChartFactory {
     @Override
     public void show(int columns, Iterable<Chart<?>> charts) {
         try {
-            final HtmlCode htmlCode = new HtmlCode();
-            final AtomicInteger chartIndex = new AtomicInteger(-1);
+            final GChartServer server = GChartServer.current();
+            if (server != null) {
+                Desktop.getDesktop().browse(server.publish(columns, charts));
+                return;
+            }
+            final File dir = new File(System.getProperty("user.home"), ".morpheus/charts");
+            final File file = new File(dir, UUID.randomUUID().toString() + ".html");
+            if (file.getParentFile().mkdirs()) System.out.println("Created directory: " + dir.getAbsolutePath());
+
+            final Chart[] chartArray = Collect.asStream(charts).toArray(Chart[]::new);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                this.html(writer, columns, chartArray, null);
+            }
+            Desktop.getDesktop().browse(file.toURI());
+        } catch (Exception ex) {
+            throw new RuntimeException("Failed to generate Google chart", ex);
+        }
+    }
+
+
+    @Override
+    public File export(File file, int columns, Iterable<Chart<?>> charts) {
+        try {
+            final Chart[] chartArray = Collect.asStream(charts).toArray(Chart[]::new);
+            if (GzipOutput.isGzip(file)) {
+                try (Writer writer = new OutputStreamWriter(GzipOutput.open(file, compressionLevel), StandardCharsets.UTF_8)) {
+                    this.html(writer, columns, chartArray, null);
+                }
+                return file;
+            }
+            final String[] dataUrls = writeData(file, chartArray);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                this.html(writer, columns, chartArray, dataUrls);
+            }
+            this.pruneData(file, dataUrls);
+            return file;
+        } catch (IOException ex) {
+            throw new ChartException("Failed to export charts to " + file.getAbsolutePath(), ex);
+        }
+    }
+
+
+    /**
+     * Writes the data of each Google chart to a directory named after the page file, from which the page loads it on demand
+     * Data files are written concurrently on the executor of this factory, or the common ForkJoinPool if none is set.
+     * @param file      the page file the data files accompany
+     * @param charts    the charts in the page, which may include charts that are not Google charts
+     * @return          the relative URL of the data file for each chart, null for charts that are not Google charts
+     */
+    public String[] writeData(File file, Chart[] charts) {
+        try {
+            final File parent = file.getAbsoluteFile().getParentFile();
+            final File dataDir = new File(parent, file.getName().replaceFirst("\\.[^.]*$", "") + "_files");
+            if (!dataDir.isDirectory() && !dataDir.mkdirs()) {
+                throw new ChartException("Failed to create directory for chart data: " + dataDir.getAbsolutePath());
+            }
+            final Executor target = executor != null ? executor : ForkJoinPool.commonPool();
+            final List<CompletableFuture<String>> futures = new ArrayList<>(charts.length);
+            for (Chart chart : charts) {
+                if (chart instanceof GChart) {
+                    futures.add(CompletableFuture.supplyAsync(() -> writeData(dataDir, (GChart<?>)chart), target));
+                } else {
+                    futures.add(CompletableFuture.completedFuture(null));
+                }
+            }
+            final String[] dataUrls = new String[charts.length];
+            for (int i=0; i<dataUrls.length; ++i) {
+                final String name = futures.get(i).join();
+                dataUrls[i] = name != null ? dataDir.getName() + "/" + name : null;
+            }
+            return dataUrls;
+        } catch (CompletionException ex) {
+            throw new ChartException("Failed to write chart data for " + file.getAbsolutePath(), ex.getCause());
+        }
+    }
+
+
+    /**
+     * Deletes the data files of a page that were written by previous exports but are not referenced by the latest one
+     * This should only be called once the page has been written, so a failed export leaves the previous page intact.
+     * @param file      the page file the data files accompany
+     * @param dataUrls  the relative URLs of the data files referenced by the page, as returned by writeData()
+     */
+    public void pruneData(File file, String[] dataUrls) {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        final File dataDir = new File(parent, file.getName().replaceFirst("\\.[^.]*$", "") + "_files");
+        final Set<String> referenced = Stream.of(dataUrls).filter(Objects::nonNull).collect(Collectors.toSet());
+        final File[] files = dataDir.listFiles((dir, name) -> name.endsWith(".js"));
+        if (files != null) {
+            for (File dataFile : files) {
+                final String url = dataDir.getName() + "/" + dataFile.getName();
+                if (!referenced.contains(url) && !dataFile.delete()) {
+                    throw new ChartException("Failed to delete unreferenced chart data: " + dataFile.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Writes an HTML page that lays out the charts in columns, with chart data either inline or loaded from data files
+     * @param writer        the writer to write the page to
+     * @param columns       the number of columns
+     * @param charts        the charts to include in the page
+     * @param dataUrls      the relative URLs of the data file for each chart, null to embed data in the page
+     */
+    private void html(Writer writer, int columns, Chart[] charts, String[] dataUrls) {
+        HtmlCode.createHtml(writer, htmlCode -> {
             htmlCode.newElement("html", html -> {
                 html.newElement("head", head -> {
                     head.newElement("script", script -> {
@@ -104,33 +301,156 @@ public class GChartFactory implements ChartFactory {
                     });
                     head.newElement("script", script -> {
                         script.newAttribute("type", "text/javascript");
-                        script.text(javascript(charts));
+                        script.javascript(jsCode -> {
+                            this.javascriptLoader(jsCode, charts);
+                            if (dataUrls != null) {
+                                this.acceptDataLoader(jsCode);
+                            }
+                            if (!lazy && dataUrls == null) {
+                                this.scriptCache.accept(jsCode, executor, charts);
+                            } else if (!lazy) {
+                                for (int i=0; i<charts.length; ++i) {
+                                    jsCode.newLine().newLine();
+                                    this.acceptChart(jsCode, charts, i, dataUrls);
+                                }
+                            }
+                        });
                     });
                 });
 
                 final String width = String.valueOf((int)(100d / columns)) + "%";
                 final String height = String.valueOf((int)(100d / columns * 0.9d)) + "%";
                 html.newElement("body", body -> {
-                    chartIndex.set(-1);
-                    charts.forEach(chart -> {
+                    for (int i=0; i<charts.length; ++i) {
+                        final String divId = charts[i].options().getId().orElse(String.format("chart_%s", i));
                         body.newElement("div", div -> {
-                            div.newAttribute("id", String.format("chart_%s", chartIndex.incrementAndGet()));
+                            div.newAttribute("id", divId);
                             div.newAttribute("style", String.format("width:%s;height:%s;float:left;", width, height));
                         });
-                    });
+                    }
+                    if (lazy) {
+                        for (int i=0; i<charts.length; ++i) {
+                            final int index = i;
+                            body.newElement("script", script -> {
+                                script.newAttribute("type", "text/javascript");
+                                script.javascript(jsCode -> acceptChart(jsCode, charts, index, dataUrls));
+                            });
+                        }
+                    }
                 });
             });
+        });
+    }
 
-            final File dir = new File(System.getProperty("user.home"), ".morpheus/charts");
-            final File file = new File(dir, UUID.randomUUID().toString() + ".html");
-            if (file.getParentFile().mkdirs()) System.out.println("Created directory: " + dir.getAbsolutePath());
 
-            System.out.println(htmlCode.toString());
+    /**
+     * Writes the drawChart_i function for a chart, which loads its data from a data file if a data URL is given
+     * @param jsCode    the code to write the function to
+     * @param charts    the charts in the page
+     * @param index     the index of the chart to write
+     * @param dataUrls  the relative URLs of the data file for each chart, null to embed data in the function
+     */
+    public void acceptChart(JsCode jsCode, Chart[] charts, int index, String[] dataUrls) {
+        final Chart<?> chart = charts[index];
+        final String functionName = String.format("drawChart_%s", index);
+        final String divId = chart.options().getId().orElse(String.format("chart_%s", index));
+        if (dataUrls == null) {
+            this.scriptCache.accept(jsCode, chart, functionName, divId);
+        } else {
+            jsCode.write("/** This is code generation by the Morpheus Visualization library */");
+            jsCode.newFunction(functionName, func -> {
+                func.write("morpheusLoad('%s', function(data) {", dataUrls[index]);
+                func.newLine();
+                func.indent(4);
+                ((GChart<?>)chart).acceptDraw(func, divId, null);
+                func.unident(4);
+                func.newLine();
+                func.write("});");
+            });
+        }
+    }
+
 
-            htmlCode.flush(file);
-            Desktop.getDesktop().browse(file.toURI());
+    /**
+     * Writes the functions that load chart data files on demand by adding script elements to the page
+     * Script elements are used rather than fetch() so that pages work when opened directly from local disk.
+     * Each data file calls morpheusData() with a function that builds its DataTable, which is then passed to
+     * every callback waiting on that file. The function is kept per file, so charts that share a data file and
+     * are drawn after it has loaded are called back immediately.
+     * @param jsCode    the code to write the functions to
+     */
+    public void acceptDataLoader(JsCode jsCode) {
+        jsCode.newLine().write("var morpheusPending = {};");
+        jsCode.newLine().write("var morpheusLoaded = {};");
+        jsCode.newLine();
+        jsCode.newFunction("morpheusLoad", "url, callback", func -> {
+            func.write("if (morpheusLoaded[url]) {");
+            func.newLine().write("    callback(morpheusLoaded[url]());");
+            func.newLine().write("} else if (morpheusPending[url]) {");
+            func.newLine().write("    morpheusPending[url].push(callback);");
+            func.newLine().write("} else {");
+            func.newLine().write("    morpheusPending[url] = [callback];");
+            func.newLine().write("    var script = document.createElement('script');");
+            func.newLine().write("    script.setAttribute('src', url);");
+            func.newLine().write("    document.head.appendChild(script);");
+            func.newLine().write("}");
+        });
+        jsCode.newLine();
+        jsCode.newFunction("morpheusData", "create", func -> {
+            func.write("var url = document.currentScript.getAttribute('src');");
+            func.newLine().write("var callbacks = morpheusPending[url] || [];");
+            func.newLine().write("morpheusLoaded[url] = create;");
+            func.newLine().write("delete morpheusPending[url];");
+            func.newLine().write("callbacks.forEach(function(callback) { callback(create()); });");
+        });
+    }
+
+
+    /**
+     * Writes the data file for a chart into the directory, naming it by a hash of its content
+     * A file of the same name that already exists holds the same data, so it is kept and the new copy discarded.
+     * @param dir       the directory to write the data file to
+     * @param chart     the chart to write data for
+     * @return          the name of the data file
+     */
+    private String writeData(File dir, GChart<?> chart) {
+        File temp = null;
+        try {
+            temp = File.createTempFile("chart", ".tmp", dir);
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final OutputStream os = new DigestOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), digest);
+                final JsCode jsCode = new JsCode(os);
+                jsCode.write("morpheusData(function() {");
+                jsCode.newLine();
+                jsCode.indent(4);
+                chart.acceptData(jsCode);
+                jsCode.newLine().write("return data;");
+                jsCode.unident(4);
+                jsCode.newLine();
+                jsCode.write("});");
+                jsCode.newLine();
+                jsCode.flush();
+                os.flush();
+            }
+            final StringBuilder name = new StringBuilder();
+            for (byte value : Arrays.copyOf(digest.digest(), 16)) {
+                name.append(Character.forDigit((value >> 4) & 0xF, 16));
+                name.append(Character.forDigit(value & 0xF, 16));
+            }
+            name.append(".js");
+            final File file = new File(dir, name.toString());
+            if (file.exists()) {
+                Files.delete(temp.toPath());
+            } else {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            return name.toString();
         } catch (Exception ex) {
-            throw new RuntimeException("Failed to generate Google chart", ex);
+            if (temp != null && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+            throw new ChartException("Failed to write chart data to " + dir.getAbsolutePath(), ex);
         }
     }
 
@@ -0,0 +1,572 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.google;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import com.zavtech.morpheus.util.Collect;
+import com.zavtech.morpheus.viz.chart.Chart;
+import com.zavtech.morpheus.viz.chart.ChartException;
+import com.zavtech.morpheus.viz.html.HtmlCode;
+import com.zavtech.morpheus.viz.js.JsCode;
+import com.zavtech.morpheus.viz.util.GzipOutput;
+
+/**
+ * An embedded HTTP server that serves Google chart pages from memory and pushes live updates to them over Server-Sent Events
+ *
+ * Each published page is generated on request, and the page then opens an event stream over which the server sends
+ * only what has changed in each chart. Rows appended to a dataset are sent as a delta that removes rows evicted from
+ * the front of the table and adds the new rows at the end, while any other change to the data sends the table in
+ * full. Changes to styling, axes or titles send the chart options. The server binds to the loopback address only.
+ *
+ * While a server is running, calls to show() on Google charts publish to the most recently started server and open
+ * the page in a browser, rather than writing an HTML file.
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class GChartServer {
+
+    private static final long PENDING_EXPIRY_MILLIS = 60000L;
+
+    private static volatile GChartServer current;
+
+    private int port;
+    private int maxPerSecond = 4;
+    private int compressionLevel = GzipOutput.DEFAULT_LEVEL;
+    private HttpServer server;
+    private ExecutorService executor;
+    private AtomicInteger pageCount = new AtomicInteger();
+    private AtomicInteger tokenCount = new AtomicInteger();
+    private Map<String,Page> pageMap = new ConcurrentHashMap<>();
+
+
+    /**
+     * Constructor
+     * @param port  the port to listen on, zero to choose a free port when started
+     */
+    public GChartServer(int port) {
+        this.port = port;
+    }
+
+
+    /**
+     * Returns the most recently started server if it is still running
+     * @return  the running server, null if none
+     */
+    static GChartServer current() {
+        return current;
+    }
+
+
+    /**
+     * Returns true if this server is running
+     * @return  true if running
+     */
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+
+    /**
+     * Returns the base URI of this server
+     * @return  the base URI, which is only valid while the server is running
+     */
+    public synchronized URI getUri() {
+        if (server == null) {
+            throw new ChartException("The chart server has not been started");
+        } else {
+            return URI.create(String.format("http://localhost:%s/", server.getAddress().getPort()));
+        }
+    }
+
+
+    /**
+     * Sets the gzip level used to compress pages for browsers that accept gzip content encoding
+     * Event streams are not compressed, since each update is small and must be flushed as soon as it is written.
+     * @param level     the compression level from 0 (none) to 9 (best)
+     * @return          this server
+     */
+    public GChartServer withCompressionLevel(int level) {
+        if (level < 0 || level > 9) {
+            throw new ChartException("The chart server compression level must be in the range 0-9, found " + level);
+        } else {
+            this.compressionLevel = level;
+            return this;
+        }
+    }
+
+
+    /**
+     * Sets the maximum rate at which updates are pushed to each open page
+     * @param maxPerSecond  the maximum updates per second
+     * @return              this server
+     */
+    public GChartServer withRefreshRate(int maxPerSecond) {
+        if (maxPerSecond <= 0) {
+            throw new ChartException("The chart server refresh rate must be > 0, found " + maxPerSecond);
+        } else {
+            this.maxPerSecond = maxPerSecond;
+            return this;
+        }
+    }
+
+
+    /**
+     * Starts this server and makes it the server used by show() on Google charts
+     * @return  this server
+     */
+    public synchronized GChartServer start() {
+        if (server == null) {
+            try {
+                this.executor = Executors.newCachedThreadPool(runnable -> {
+                    final Thread thread = new Thread(runnable, "GChartServer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+                this.server.setExecutor(executor);
+                this.server.createContext("/charts/", this::handlePage);
+                this.server.createContext("/events/", this::handleEvents);
+                this.server.start();
+                current = this;
+            } catch (IOException ex) {
+                this.server = null;
+                this.executor.shutdownNow();
+                throw new ChartException("Failed to start chart server on port " + port, ex);
+            }
+        }
+        return this;
+    }
+
+
+    /**
+     * Stops this server, closing all event streams and discarding published pages
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            this.server.stop(0);
+            this.executor.shutdownNow();
+            this.server = null;
+            this.executor = null;
+            this.pageMap.clear();
+            if (current == this) {
+                current = null;
+            }
+        }
+    }
+
+
+    /**
+     * Publishes a page of charts to this server, which are laid out in the number of columns specified
+     * @param columns   the number of columns in the page
+     * @param charts    the Google charts to publish
+     * @return          the URI of the published page
+     */
+    public URI publish(int columns, Iterable<Chart<?>> charts) {
+        final GChart<?>[] chartArray = Collect.asStream(charts).map(chart -> {
+            if (chart instanceof GChart) {
+                return (GChart<?>)chart;
+            } else {
+                throw new ChartException("The chart server only supports Google charts, found " + chart.getClass().getSimpleName());
+            }
+        }).toArray(GChart<?>[]::new);
+        final String pageId = String.valueOf(pageCount.incrementAndGet());
+        this.pageMap.put(pageId, new Page(pageId, Math.max(1, columns), chartArray));
+        return getUri().resolve("charts/" + pageId);
+    }
+
+
+    /**
+     * Removes a page published to this server, closing any event streams for it
+     * @param page  the URI of the page
+     */
+    public void remove(URI page) {
+        final String path = page.getPath();
+        this.pageMap.remove(path.substring(path.lastIndexOf('/') + 1));
+    }
+
+
+    /**
+     * Handles a request for a chart page, recording the state of each chart against a token for the event stream
+     * @param exchange  the HTTP exchange
+     */
+    private void handlePage(HttpExchange exchange) throws IOException {
+        try {
+            final String path = exchange.getRequestURI().getPath();
+            final Page page = pageMap.get(path.substring("/charts/".length()));
+            if (page == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                page.expire(System.currentTimeMillis() - PENDING_EXPIRY_MILLIS);
+                final String token = String.valueOf(tokenCount.incrementAndGet());
+                final ChartState[] states = new ChartState[page.charts.length];
+                final String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                final boolean gzip = encoding != null && encoding.toLowerCase().contains("gzip");
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                exchange.getResponseHeaders().set("Cache-Control", "no-store");
+                exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+                if (gzip) {
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.sendResponseHeaders(200, 0);
+                final OutputStream body = exchange.getResponseBody();
+                final OutputStream os = gzip ? GzipOutput.compress(body, compressionLevel) : new BufferedOutputStream(body);
+                try (Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
+                    page.html(writer, token, states);
+                    page.pendingMap.put(token, new Pending(states));
+                } catch (RuntimeException | IOException ex) {
+                    page.pendingMap.remove(token);
+                    ex.printStackTrace();
+                }
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+
+    /**
+     * Handles an event stream request, pushing changes to each chart until the page closes or the server stops
+     * A stream without a pending token, such as a browser reconnecting after a dropped connection, is told to reload.
+     * @param exchange  the HTTP exchange
+     */
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        final String[] path = exchange.getRequestURI().getPath().substring("/events/".length()).split("/");
+        final Page page = path.length == 2 ? pageMap.get(path[0]) : null;
+        final Pending pending = page != null ? page.pendingMap.remove(path[1]) : null;
+        final ChartState[] states = pending != null ? pending.states : null;
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            if (states == null) {
+                writer.write("event: reload\ndata: \n\n");
+                writer.flush();
+            } else {
+                long lastWrite = System.currentTimeMillis();
+                while (pageMap.get(page.id) == page && !Thread.currentThread().isInterrupted()) {
+                    for (int i=0; i<states.length; ++i) {
+                        final String update = states[i].update(page.charts[i], i);
+                        if (update != null) {
+                            writer.write("event: update\n");
+                            for (String line : update.split("\n")) {
+                                writer.write("data: ");
+                                writer.write(line);
+                                writer.write("\n");
+                            }
+                            writer.write("\n");
+                            lastWrite = System.currentTimeMillis();
+                        }
+                    }
+                    if (System.currentTimeMillis() - lastWrite > 15000L) {
+                        writer.write(": keep-alive\n\n");
+                        lastWrite = System.currentTimeMillis();
+                    }
+                    writer.flush();
+                    Thread.sleep(1000L / maxPerSecond);
+                }
+            }
+        } catch (IOException | InterruptedException ex) {
+            // The page was closed or the server stopped
+        } finally {
+            exchange.close();
+        }
+    }
+
+
+
+    /**
+     * A page of charts published to this server
+     */
+    private static class Page {
+
+        private String id;
+        private int columns;
+        private GChart<?>[] charts;
+        private Map<String,Pending> pendingMap = new ConcurrentHashMap<>();
+
+        /**
+         * Constructor
+         * @param id        the page id
+         * @param columns   the number of columns in the page
+         * @param charts    the charts in the page
+         */
+        Page(String id, int columns, GChart<?>[] charts) {
+            this.id = id;
+            this.columns = columns;
+            this.charts = charts;
+        }
+
+        /**
+         * Discards chart states recorded for page requests whose event stream never connected, such as pages fetched
+         * without running their script, or closed before they loaded. A page opened after its state has expired reloads.
+         * @param cutoff    the time in epoch millis before which pending states are discarded
+         */
+        void expire(long cutoff) {
+            this.pendingMap.values().removeIf(pending -> pending.created < cutoff);
+        }
+
+        /**
+         * Writes the HTML for this page, which opens an event stream for the token specified once drawn
+         * @param writer    the writer to stream the page to
+         * @param token     the token that identifies the chart states recorded for this page request
+         * @param states    the array to populate with the state of each chart as written to the page
+         */
+        void html(Writer writer, String token, ChartState[] states) {
+            HtmlCode.createHtml(writer, htmlCode -> {
+                htmlCode.newElement("html", html -> {
+                    html.newElement("head", head -> {
+                        head.newElement("script", script -> {
+                            script.newAttribute("type", "text/javascript");
+                            script.newAttribute("src", "https://www.gstatic.com/charts/loader.js");
+                        });
+                        head.newElement("script", script -> {
+                            script.newAttribute("type", "text/javascript");
+                            script.javascript(jsCode -> {
+                                jsCode.newLine().write("google.charts.load('current', {'packages':['corechart']});");
+                                jsCode.newLine().write("google.charts.setOnLoadCallback(%s);", "drawCharts");
+                                jsCode.newLine().write("var morpheusCharts = [];");
+                                jsCode.newLine();
+                                jsCode.newFunction("drawCharts", init -> {
+                                    for (int i=0; i<charts.length; ++i) {
+                                        init.write("drawChart_%s();", i);
+                                        init.newLine();
+                                    }
+                                    init.write("var source = new EventSource('/events/%s/%s');", id, token);
+                                    init.newLine().write("source.addEventListener('reload', function() {");
+                                    init.newLine().write("    source.close();");
+                                    init.newLine().write("    location.reload();");
+                                    init.newLine().write("});");
+                                    init.newLine().write("source.addEventListener('update', function(event) {");
+                                    init.newLine().write("    var update = Function('return ' + event.data)();");
+                                    init.newLine().write("    var target = morpheusCharts[update.chart];");
+                                    init.newLine().write("    if (update.table) target.data = update.table;");
+                                    init.newLine().write("    if (update.remove) target.data.removeRows(0, update.remove);");
+                                    init.newLine().write("    if (update.rows) target.data.addRows(update.rows);");
+                                    init.newLine().write("    if (update.options) target.options = update.options;");
+                                    init.newLine().write("    target.chart.draw(target.data, target.options);");
+                                    init.newLine().write("});");
+                                });
+                                for (int i=0; i<charts.length; ++i) {
+                                    final GChart<?> chart = charts[i];
+                                    final String functionName = String.format("drawChart_%s", i);
+                                    final String divId = chart.options().getId().orElse(String.format("chart_%s", i));
+                                    final String handle = String.format("morpheusCharts[%s]", i);
+                                    states[i] = new ChartState();
+                                    jsCode.newLine().newLine();
+                                    jsCode.write(states[i].script(chart, functionName, divId, handle));
+                                }
+                            });
+                        });
+                    });
+                    final String width = String.valueOf((int)(100d / columns)) + "%";
+                    final String height = String.valueOf((int)(100d / columns * 0.9d)) + "%";
+                    html.newElement("body", body -> {
+                        for (int i=0; i<charts.length; ++i) {
+                            final String divId = charts[i].options().getId().orElse(String.format("chart_%s", i));
+                            body.newElement("div", div -> {
+                                div.newAttribute("id", divId);
+                                div.newAttribute("style", String.format("width:%s;height:%s;float:left;", width, height));
+                            });
+                        }
+                    });
+                });
+            });
+        }
+    }
+
+
+    /**
+     * The chart states recorded for a page request, held until the page connects its event stream or the states expire
+     */
+    private static class Pending {
+
+        private long created;
+        private ChartState[] states;
+
+        /**
+         * Constructor
+         * @param states    the state of each chart as written to the page
+         */
+        Pending(ChartState[] states) {
+            this.created = System.currentTimeMillis();
+            this.states = states;
+        }
+    }
+
+
+    /**
+     * The state of a chart as last sent to a page, from which the next update for that page is derived
+     *
+     * The data of a chart is always read while holding the lock of its dataset, which appends also hold, and the rows,
+     * base version and append count recorded are those of the same consistent state that was serialized. Rows appended
+     * concurrently are therefore either in the page or in the next update, but never lost or sent twice.
+     */
+    private static class ChartState {
+
+        private long version;
+        private String options;
+        private GXyDataset<?,?> dataset;
+        private long baseVersion;
+        private long appendCount;
+        private int rowCount;
+
+        /**
+         * Returns the script that draws the chart in a page, and records the state it was generated from
+         * The script for a single chart is generated in memory so the dataset lock is not held while writing to the network.
+         * @param chart         the chart
+         * @param functionName  the name of the function that draws the chart
+         * @param divId         the ID of the div element in which to draw the chart
+         * @param handle        the variable to assign the chart objects to once drawn
+         * @return              the script for the chart
+         */
+        String script(GChart<?> chart, String functionName, String divId, String handle) {
+            return locked(chart, current -> {
+                this.version = chart.version();
+                this.options = JsCode.create(chart::acceptOptions);
+                final String script = JsCode.create(js -> chart.accept(js, functionName, divId, handle));
+                this.record(chart, current);
+                return script;
+            });
+        }
+
+        /**
+         * Returns a Javascript object describing the changes to the chart since the last update, or null if unchanged
+         * The state is only advanced once the update has been generated, so a failed attempt is retried on the next call.
+         * @param chart the chart
+         * @param index the index of the chart in the page
+         * @return      the update expression, null if the chart is unchanged
+         */
+        String update(GChart<?> chart, int index) {
+            try {
+                return locked(chart, current -> {
+                    final long version = chart.version();
+                    if (version == this.version) {
+                        return null;
+                    } else {
+                        final String options = JsCode.create(chart::acceptOptions);
+                        final String update = JsCode.create(js -> {
+                            js.write("{chart: ").append(index);
+                            if (!acceptRows(js, chart, current)) {
+                                js.write(", table: ");
+                                chart.acceptDataTable(js);
+                            }
+                            if (!options.equals(this.options)) {
+                                js.write(", options: ").write(options);
+                            }
+                            js.write("}");
+                        });
+                        this.version = version;
+                        this.options = options;
+                        this.record(chart, current);
+                        return update;
+                    }
+                });
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                return null;
+            }
+        }
+
+        /**
+         * Applies the function to the dataset of the chart while holding the dataset lock, if the chart has a dataset
+         * For a chart with one dataset this is the lock appends hold, so the function sees a consistent state. A chart
+         * with several datasets has a union that is never appended to, since appends reset the model and the next call
+         * gets a new union, so row deltas only ever apply to charts with a single dataset.
+         * @param chart     the chart
+         * @param function  the function to apply to the dataset, which is null for charts without an XY dataset
+         * @param <T>       the result type
+         * @return          the result of the function
+         */
+        private static <T> T locked(GChart<?> chart, Function<GXyDataset<?,?>,T> function) {
+            if (!(chart.plot() instanceof GXyPlot)) {
+                return function.apply(null);
+            } else {
+                final GXyDataset<?,?> current = ((GXyModel<?,?>)((GXyPlot<?>)chart.plot()).data()).getUnifiedDataset();
+                synchronized (current) {
+                    return function.apply(current);
+                }
+            }
+        }
+
+        /**
+         * Records the data state of the chart, as sent in full or brought up to date by a delta
+         * This must be called while holding the lock of the dataset, in the same critical section that serialized it.
+         * @param chart     the chart
+         * @param current   the current dataset of the chart, null if none
+         */
+        private void record(GChart<?> chart, GXyDataset<?,?> current) {
+            if (current != null && !chart.options().isDownsampled()) {
+                this.dataset = current;
+                this.baseVersion = current.baseVersion();
+                this.appendCount = current.appendCount();
+                this.rowCount = current.getDomainSize();
+            } else {
+                this.dataset = null;
+            }
+        }
+
+        /**
+         * Writes the rows appended to the chart dataset since the last update, if the change is limited to appended rows
+         * This must be called while holding the lock of the dataset, so the rows written match the state then recorded.
+         * @param js        the code to write to
+         * @param chart     the chart
+         * @param current   the current dataset of the chart, null if none
+         * @return          true if the change was written as a row delta, false if the table must be sent in full
+         */
+        private boolean acceptRows(JsCode js, GChart<?> chart, GXyDataset<?,?> current) {
+            if (dataset == null || current != dataset || chart.options().isDownsampled()) {
+                return false;
+            } else if (current.baseVersion() != baseVersion || current.appendCount() < appendCount) {
+                return false;
+            } else {
+                final int size = current.getDomainSize();
+                final int added = (int)Math.min(current.appendCount() - appendCount, size);
+                final int removed = Math.max(0, rowCount + added - size);
+                if (added > 0) {
+                    js.write(", remove: ").append(removed);
+                    js.write(", rows: ");
+                    current.acceptRows(js, size - added, size);
+                }
+                return true;
+            }
+        }
+    }
+
+}
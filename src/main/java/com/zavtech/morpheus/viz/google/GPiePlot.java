@@ -44,6 +44,7 @@ class GPiePlot<X extends Comparable,S extends Comparable> implements PiePlot<X,S
     private ColorModel colorModel = ColorModel.DEFAULT.get();
     private Color sectionOutlineColor = Color.WHITE;
     private Map<X,GPieSection> sectionMap = new HashMap<>();
+    private long version;
 
     /**
      * Constructor
@@ -56,29 +57,28 @@ class GPiePlot<X extends Comparable,S extends Comparable> implements PiePlot<X,S
 
     @Override
     public PieModel<X,S> data() {
+        this.version++;
         return model;
     }
 
 
     @Override
     public PieLabels labels() {
+        this.version++;
         return labels;
     }
 
 
     @Override
     public PieSection section(X itemKey) {
-        GPieSection section = sectionMap.get(itemKey);
-        if (section == null) {
-            section = new GPieSection();
-            sectionMap.put(itemKey, section);
-        }
-        return section;
+        this.version++;
+        return sectionAt(itemKey);
     }
 
 
     @Override
     public PiePlot<X,S> withStartAngle(double degrees) {
+        this.version++;
         this.startAngle = degrees;
         return this;
     }
@@ -86,6 +86,7 @@ class GPiePlot<X extends Comparable,S extends Comparable> implements PiePlot<X,S
 
     @Override
     public PiePlot<X,S> withPieHole(double percent) {
+        this.version++;
         this.pieHole = percent;
         return this;
     }
@@ -93,11 +94,46 @@ class GPiePlot<X extends Comparable,S extends Comparable> implements PiePlot<X,S
 
     @Override
     public PiePlot<X, S> withSectionOutlineColor(Color color) {
+        this.version++;
         this.sectionOutlineColor = color;
         return this;
     }
 
 
+    /**
+     * Returns the modification version of this plot, including its data
+     * The version changes whenever a mutable component of this plot is handed out, as it may then be modified.
+     * @return  the modification version of this plot
+     */
+    long version() {
+        return version;
+    }
+
+
+    /**
+     * Returns the data model for this plot, without counting as a modification
+     * @return  the data model
+     */
+    GPieModel<X,S> model() {
+        return model;
+    }
+
+
+    /**
+     * Returns the section for the item, without counting as a modification
+     * @param itemKey   the item key
+     * @return          the section for item
+     */
+    private GPieSection sectionAt(X itemKey) {
+        GPieSection section = sectionMap.get(itemKey);
+        if (section == null) {
+            section = new GPieSection();
+            sectionMap.put(itemKey, section);
+        }
+        return section;
+    }
+
+
     /**
      * Enriches the JsObject with options for these axes
      * @param options   the options to enrich
@@ -119,7 +155,7 @@ class GPiePlot<X extends Comparable,S extends Comparable> implements PiePlot<X,S
             options.newArray("slices", slices -> {
                 model.getFrame().rows().forEach(row -> {
                     final X item = itemFunction.apply(row.ordinal());
-                    final GPieSection section = (GPieSection)section(item);
+                    final GPieSection section = sectionAt(item);
                     final Color color = section.color != null ? section.color : colorModel.getColor(item);
                     slices.appendObject(slice -> {
                         slice.newAttribute("color", ColorModel.toHexString(color));
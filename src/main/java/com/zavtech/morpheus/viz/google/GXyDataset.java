@@ -15,25 +15,41 @@
  */
 package com.zavtech.morpheus.viz.google;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntFunction;
 import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import com.zavtech.morpheus.array.Array;
 import com.zavtech.morpheus.frame.DataFrame;
 import com.zavtech.morpheus.range.Range;
 import com.zavtech.morpheus.util.IO;
+import com.zavtech.morpheus.viz.chart.ChartException;
+import com.zavtech.morpheus.viz.chart.xy.XyBuffer;
 import com.zavtech.morpheus.viz.chart.xy.XyDataset;
+import com.zavtech.morpheus.viz.chart.xy.XySource;
+import com.zavtech.morpheus.viz.js.JsArray;
 import com.zavtech.morpheus.viz.js.JsCode;
+import com.zavtech.morpheus.viz.js.JsObject;
 
 /**
  * An implementation of the XyDataset interface to be used with Google charts
@@ -44,18 +60,30 @@ import com.zavtech.morpheus.viz.js.JsCode;
  */
 class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset<X,S> {
 
+    static final String DECODER_NAME = "morpheusDataTable";
+
+    private static final AtomicLong versionSequence = new AtomicLong();
+
+    private S domainKey;
     private DataFrame<?,S> frame;
     private Array<Integer> colOrdinals;
     private Supplier<Class<X>> domainType;
     private IntFunction<X> domainValueFunction;
     private Consumer<GXyDataset<X,S>> refreshHandler;
+    private XySource<X,S> source;
+    private int capacity = XyBuffer.DEFAULT_CAPACITY;
+    private volatile long version;
+    private long baseVersion;
+    private long appendCount;
 
 
     /**
      * Constructor
+     * @param domainKey         the column key for the domain, null if the domain is presented by the row keys
      * @param refreshHandler    the refresh handler
      */
-    private GXyDataset(Consumer<GXyDataset<X,S>> refreshHandler) {
+    private GXyDataset(S domainKey, Consumer<GXyDataset<X,S>> refreshHandler) {
+        this.domainKey = domainKey;
         this.refreshHandler = refreshHandler;
         this.refresh();
     }
@@ -69,7 +97,7 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
      * @return                  the newly created model
      */
     static <X extends Comparable,S extends Comparable> GXyDataset<X,S> of(Supplier<DataFrame<X,S>> frameSupplier) {
-        return new GXyDataset<>(dataset -> {
+        return new GXyDataset<>(null, dataset -> {
             try {
                 final DataFrame<X,S> frame = frameSupplier.get();
                 if (frame != null) {
@@ -96,7 +124,7 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
      */
     @SuppressWarnings("unchecked")
     static <X extends Comparable,S extends Comparable> GXyDataset<X,S> of(S domainAxisKey, Supplier<DataFrame<?,S>> frameSupplier) {
-        return new GXyDataset<>(dataset -> {
+        return new GXyDataset<>(domainAxisKey, dataset -> {
             try {
                 final DataFrame<?,S> frame = frameSupplier.get();
                 if (frame != null) {
@@ -114,17 +142,86 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
     }
 
 
+    /**
+     * Returns a newly created model that reads directly from the XySource specified
+     * @param source    the source of domain and series values
+     * @param <X>       the domain key type
+     * @param <S>       the series key type
+     * @return          the newly created model
+     */
+    static <X extends Comparable,S extends Comparable> GXyDataset<X,S> of(XySource<X,S> source) {
+        return new GXyDataset<>(null, dataset -> dataset.update(source));
+    }
+
+
     /**
      * Updates this model with the DataFrame, series column ordinals and domain value function
      * @param frame                 the DataFrame to accept
      * @param colOrdinals           the series column ordinals
      * @param domainValueFunction   the domain value function
      */
-    private void update(DataFrame<?,S> frame, Array<Integer> colOrdinals, Supplier<Class<X>> domainType, IntFunction<X> domainValueFunction) {
+    private synchronized void update(DataFrame<?,S> frame, Array<Integer> colOrdinals, Supplier<Class<X>> domainType, IntFunction<X> domainValueFunction) {
+        this.source = null;
         this.frame = frame;
         this.colOrdinals = colOrdinals;
         this.domainType = domainType;
         this.domainValueFunction = domainValueFunction;
+        this.version = nextVersion();
+        this.baseVersion = version;
+        this.appendCount = 0L;
+    }
+
+
+    /**
+     * Updates this model to read from the XySource specified
+     * @param source    the source of domain and series values
+     */
+    private synchronized void update(XySource<X,S> source) {
+        this.source = source;
+        this.frame = null;
+        this.colOrdinals = null;
+        this.domainType = source::keyType;
+        this.domainValueFunction = null;
+        this.version = nextVersion();
+        this.baseVersion = version;
+        this.appendCount = 0L;
+    }
+
+
+    /**
+     * Appends rows to this dataset, switching it to a ring buffer of the configured capacity on the first append
+     * Changes to the content of this dataset synchronize on the dataset, so a reader on another thread that holds the
+     * same lock sees the rows, size, base version and append count of a single consistent state.
+     * @param rows  the DataFrame of rows to append, keyed the same way as this dataset
+     */
+    @SuppressWarnings("unchecked")
+    synchronized void append(DataFrame<?,S> rows) {
+        if (rows != null && rows.rowCount() > 0) {
+            if (source == null) {
+                final Class<X> domainClass = isEmpty() ? (Class<X>)(domainKey != null ? rows.cols().type(domainKey) : rows.rows().keyType()) : domainType();
+                final Iterable<S> seriesKeys = isEmpty() ? rows.cols().keys().filter(k -> !k.equals(domainKey)).collect(Collectors.toList()) : getSeriesKeys();
+                final XyBuffer<X,S> buffer = new XyBuffer<>(capacity, domainClass, seriesKeys, null);
+                if (!isEmpty()) {
+                    buffer.append(frame, domainValueFunction);
+                }
+                this.source = buffer;
+                this.frame = null;
+                this.colOrdinals = null;
+                this.domainValueFunction = null;
+                this.domainType = buffer::keyType;
+            } else if (!(source instanceof XyBuffer)) {
+                throw new ChartException("Rows cannot be appended to a dataset backed by " + source.getClass().getSimpleName());
+            }
+            final XyBuffer<X,S> buffer = (XyBuffer<X,S>)source;
+            if (domainKey == null) {
+                buffer.append(rows, rowOrdinal -> (X)rows.rows().key(rowOrdinal));
+            } else {
+                final int domainColOrdinal = rows.cols().ordinalOf(domainKey);
+                buffer.append(rows, rowOrdinal -> rows.data().getValue(rowOrdinal, domainColOrdinal));
+            }
+            this.version = nextVersion();
+            this.appendCount += rows.rowCount();
+        }
     }
 
 
@@ -136,22 +233,68 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
 
     @Override
     public boolean isEmpty() {
-        return frame == null || frame.rowCount() == 0;
+        if (source != null) {
+            return source.isEmpty();
+        } else {
+            return frame == null || frame.rowCount() == 0;
+        }
     }
 
 
     @Override
-    public void clear(boolean notify) {
+    public synchronized void clear(boolean notify) {
+        this.source = null;
         this.frame = null;
         this.colOrdinals = null;
         this.domainValueFunction = null;
+        this.version = nextVersion();
+        this.baseVersion = version;
+        this.appendCount = 0L;
+    }
+
+
+    /**
+     * Returns a counter that is incremented whenever this dataset is updated, appended to or cleared
+     * @return  the modification version of this dataset
+     */
+    long version() {
+        return version;
+    }
+
+
+    /**
+     * Returns the next version from a sequence shared by all datasets and models
+     * Versions are unique and increasing, so a dataset that replaces another can never report the version of its predecessor.
+     * @return  the next version
+     */
+    static long nextVersion() {
+        return versionSequence.incrementAndGet();
+    }
+
+
+    /**
+     * Returns the version at which the content of this dataset was last replaced rather than appended to
+     * A client holding rows from this base version can be brought up to date with the rows appended since.
+     * @return  the base version of this dataset
+     */
+    long baseVersion() {
+        return baseVersion;
+    }
+
+
+    /**
+     * Returns the total number of rows appended since the base version, including any since evicted
+     * @return  the number of rows appended since the base version
+     */
+    long appendCount() {
+        return appendCount;
     }
 
 
     @Override
     @SuppressWarnings("unchecked")
     public <R> DataFrame<R,S> frame() {
-        return (DataFrame<R,S>)frame;
+        return source != null ? (DataFrame<R,S>)source.frame() : (DataFrame<R,S>)frame;
     }
 
 
@@ -163,13 +306,17 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
 
     @Override
     public boolean contains(S seriesKey) {
-        return !isEmpty() && frame.cols().contains(seriesKey);
+        if (source != null) {
+            return source.seriesIndex(seriesKey) >= 0;
+        } else {
+            return !isEmpty() && frame.cols().contains(seriesKey);
+        }
     }
 
 
     @Override
     public IntFunction<X> domainFunction() {
-        return domainValueFunction;
+        return source != null ? source::key : domainValueFunction;
     }
 
 
@@ -185,6 +332,30 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
     }
 
 
+    @Override
+    public XyDataset<X,S> withSnapshot(boolean snapshot) {
+        return this;
+    }
+
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized XyDataset<X,S> withCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new ChartException("The dataset capacity must be > 0, found " + capacity);
+        } else {
+            this.capacity = capacity;
+            if (source instanceof XyBuffer) {
+                ((XyBuffer<X,S>)source).resize(capacity);
+                this.version = nextVersion();
+                this.baseVersion = version;
+                this.appendCount = 0L;
+            }
+            return this;
+        }
+    }
+
+
     /**
      * Returns the class of the domain values in this dataset
      * @return  the class of the domain values in this dataset
@@ -194,8 +365,8 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
         if (isEmpty()) {
             return (Class<X>)Double.class;
         } else {
-            for (int i=0; i<frame.rowCount(); ++i) {
-                final X value = domainValueFunction.apply(i);
+            for (int i=0; i<getDomainSize(); ++i) {
+                final X value = getDomainValue(i);
                 if (value != null) {
                     return (Class<X>)value.getClass();
                 }
@@ -213,7 +384,7 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
         if (isEmpty()) {
             return Collections.emptyList();
         } else {
-            return Range.of(0, frame.rowCount()).map(domainValueFunction::apply);
+            return Range.of(0, getDomainSize()).map(this::getDomainValue);
         }
     }
 
@@ -224,6 +395,8 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
     public Iterable<S> getSeriesKeys() {
         if (isEmpty()) {
             return Collections.emptyList();
+        } else if (source != null) {
+            return source.seriesKeys();
         } else {
             return colOrdinals.map(v -> frame.cols().key(v.getInt()));
         }
@@ -235,7 +408,11 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
      * @return      the number of series
      */
     public int getSeriesCount() {
-        return isEmpty() ? 0 : colOrdinals.length();
+        if (source != null) {
+            return source.seriesCount();
+        } else {
+            return isEmpty() ? 0 : colOrdinals.length();
+        }
     }
 
 
@@ -245,7 +422,11 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
      * @return          the series key
      */
     public S getSeriesKey(int series) {
-        return isEmpty() ? null : frame.cols().key(colOrdinals.getInt(series));
+        if (source != null) {
+            return source.seriesKey(series);
+        } else {
+            return isEmpty() ? null : frame.cols().key(colOrdinals.getInt(series));
+        }
     }
 
 
@@ -254,7 +435,11 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
      * @return      the number of values per series
      */
     public int getDomainSize() {
-        return isEmpty() ? 0 : frame.rowCount();
+        if (source != null) {
+            return source.size();
+        } else {
+            return isEmpty() ? 0 : frame.rowCount();
+        }
     }
 
 
@@ -264,7 +449,11 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
      * @return      the corresponding domain value
      */
     public X getDomainValue(int item) {
-        return isEmpty() ? null : domainValueFunction.apply(item);
+        if (source != null) {
+            return source.key(item);
+        } else {
+            return isEmpty() ? null : domainValueFunction.apply(item);
+        }
     }
 
 
@@ -275,7 +464,9 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
      * @return          the range value
      */
     public double getRangeValue(int item, int series) {
-        if (isEmpty()) {
+        if (source != null) {
+            return source.value(series, item);
+        } else if (isEmpty()) {
             return Double.NaN;
         } else {
             final int colOrdinal = colOrdinals.getInt(series);
@@ -284,7 +475,137 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
     }
 
 
+    /**
+     * Returns the sorted indexes of the rows that preserve the shape of every series when reduced to the buckets specified
+     * Number and date domains are divided into buckets of equal width across the range of the domain, as the pixel
+     * columns of a continuous axis are, and each bucket contributes its first and last row, plus the rows holding the
+     * minimum and maximum of each series, which is enough to draw the same pixels as the full data when there is one
+     * bucket per pixel column and the axis spans the domain. Other domains are drawn on a discrete axis that spaces rows
+     * evenly, so they are divided into buckets of equal row count instead. Rows with a null domain value are always kept,
+     * and the first NaN in a bucket is kept for each series so that gaps in a line survive the reduction. Series are
+     * scanned in parallel.
+     * @param buckets   the number of buckets, typically the width of the chart in pixels
+     * @return          the sorted row indexes to write, null if the dataset is small enough to write in full
+     */
+    int[] sample(int buckets) {
+        final int rowCount = getDomainSize();
+        if (buckets <= 0 || rowCount <= buckets * 4) {
+            return null;
+        } else {
+            final int[] bucketIndexes = bucketIndexes(rowCount, buckets);
+            final BitSet selected = IntStream.range(0, getSeriesCount()).parallel().mapToObj(series -> {
+                final BitSet rows = new BitSet(rowCount);
+                final int[] firstIndex = new int[buckets];
+                final int[] lastIndex = new int[buckets];
+                final int[] minIndex = new int[buckets];
+                final int[] maxIndex = new int[buckets];
+                final int[] nullIndex = new int[buckets];
+                final double[] min = new double[buckets];
+                final double[] max = new double[buckets];
+                Arrays.fill(firstIndex, -1);
+                Arrays.fill(minIndex, -1);
+                Arrays.fill(maxIndex, -1);
+                Arrays.fill(nullIndex, -1);
+                for (int i=0; i<rowCount; ++i) {
+                    final int bucket = bucketIndexes[i];
+                    if (bucket < 0) {
+                        rows.set(i);
+                    } else {
+                        final double value = getRangeValue(i, series);
+                        firstIndex[bucket] = firstIndex[bucket] < 0 ? i : firstIndex[bucket];
+                        lastIndex[bucket] = i;
+                        if (Double.isNaN(value)) {
+                            nullIndex[bucket] = nullIndex[bucket] < 0 ? i : nullIndex[bucket];
+                        } else {
+                            if (minIndex[bucket] < 0 || value < min[bucket]) {
+                                min[bucket] = value;
+                                minIndex[bucket] = i;
+                            }
+                            if (maxIndex[bucket] < 0 || value > max[bucket]) {
+                                max[bucket] = value;
+                                maxIndex[bucket] = i;
+                            }
+                        }
+                    }
+                }
+                for (int bucket=0; bucket<buckets; ++bucket) {
+                    if (firstIndex[bucket] >= 0) {
+                        rows.set(firstIndex[bucket]);
+                        rows.set(lastIndex[bucket]);
+                    }
+                    if (minIndex[bucket] >= 0) {
+                        rows.set(minIndex[bucket]);
+                    }
+                    if (maxIndex[bucket] >= 0) {
+                        rows.set(maxIndex[bucket]);
+                    }
+                    if (nullIndex[bucket] >= 0) {
+                        rows.set(nullIndex[bucket]);
+                    }
+                }
+                return rows;
+            }).collect(() -> new BitSet(rowCount), BitSet::or, BitSet::or);
+            return selected.stream().toArray();
+        }
+    }
+
+
+    /**
+     * Returns the bucket index of each row, by domain value for number and date domains, otherwise by row position
+     * @param rowCount  the number of rows in this dataset
+     * @param buckets   the number of buckets
+     * @return          the bucket index of each row, -1 for rows with a null domain value
+     */
+    private int[] bucketIndexes(int rowCount, int buckets) {
+        final int[] bucketIndexes = new int[rowCount];
+        final Class<?> domainClass = domainType();
+        final GDataType domainType = GDataType.getDataType(domainClass, GDataType.STRING);
+        final ToLongFunction<Object> epochMillis = createEpochMillisFunction(domainClass);
+        if (domainType == GDataType.NUMBER || (epochMillis != null && domainType != GDataType.STRING)) {
+            final double[] coordinates = new double[rowCount];
+            double lower = Double.POSITIVE_INFINITY, upper = Double.NEGATIVE_INFINITY;
+            for (int i=0; i<rowCount; ++i) {
+                final X value = getDomainValue(i);
+                if (value == null) {
+                    coordinates[i] = Double.NaN;
+                } else if (epochMillis != null) {
+                    coordinates[i] = epochMillis.applyAsLong(value);
+                } else {
+                    coordinates[i] = ((Number)value).doubleValue();
+                }
+                if (coordinates[i] < lower) lower = coordinates[i];
+                if (coordinates[i] > upper) upper = coordinates[i];
+            }
+            final double width = upper > lower ? (upper - lower) / buckets : 1d;
+            for (int i=0; i<rowCount; ++i) {
+                final double coordinate = coordinates[i];
+                bucketIndexes[i] = Double.isNaN(coordinate) ? -1 : Math.min(buckets - 1, (int)((coordinate - lower) / width));
+            }
+        } else {
+            for (int i=0; i<rowCount; ++i) {
+                bucketIndexes[i] = (int)((long)i * buckets / rowCount);
+            }
+        }
+        return bucketIndexes;
+    }
+
+
+    /**
+     * Writes a javascript array literal of the rows in this dataset, with a header row describing the columns
+     * @param script    the script to write to
+     */
     public void accept(JsCode script) {
+        this.accept(script, null);
+    }
+
+
+    /**
+     * Writes a javascript array literal of the rows specified, with a header row describing the columns
+     * @param script    the script to write to
+     * @param rows      the sorted indexes of the rows to write, null to write all rows
+     */
+    public void accept(JsCode script, int[] rows) {
+        final int rowCount = rows != null ? rows.length : getDomainSize();
         final Class<?> domainClass = domainType();
         final GDataType domainType = GDataType.getDataType(domainClass, GDataType.STRING);
         script.newArray(array -> {
@@ -303,47 +624,302 @@ class GXyDataset<X extends Comparable,S extends Comparable> implements XyDataset
                     });
                 }
             });
-            final Function<Object,String> domainValueFunc = createDomainFunction(domainClass);
-            for (int i = 0; i<getDomainSize(); ++i) {
-                final int index = i;
-                final X domainValue = getDomainValue(i);
-                final String stringValue = domainValueFunc.apply(domainValue);
-                array.appendArray(true, series -> {
-                    series.append(stringValue, false);
-                    for (int j=0; j<getSeriesCount(); ++j) {
-                        final double value = getRangeValue(index, j);
-                        if (Double.isNaN(value)) {
-                            series.append(null);
-                        } else {
-                            series.append(value);
+            final BiConsumer<JsArray,Object> domainWriter = createDomainWriter(domainClass);
+            for (int i = 0; i<rowCount; ++i) {
+                this.acceptRow(array, domainWriter, rows != null ? rows[i] : i);
+            }
+        });
+    }
+
+
+    /**
+     * Writes a javascript array literal of the rows in the range specified, without a header row
+     * @param script    the script to write to
+     * @param from      the index of the first row, inclusive
+     * @param to        the index of the last row, exclusive
+     */
+    public void acceptRows(JsCode script, int from, int to) {
+        final BiConsumer<JsArray,Object> domainWriter = createDomainWriter(domainType());
+        script.newArray(array -> {
+            for (int i=from; i<to; ++i) {
+                this.acceptRow(array, domainWriter, i);
+            }
+        });
+    }
+
+
+    /**
+     * Writes a single row as an inline javascript array of the domain value followed by the series values
+     * @param array         the array to append the row to
+     * @param domainWriter  the writer for non-null domain values
+     * @param index         the row index
+     */
+    private void acceptRow(JsArray array, BiConsumer<JsArray,Object> domainWriter, int index) {
+        final X domainValue = getDomainValue(index);
+        array.appendArray(true, series -> {
+            if (domainValue == null) {
+                series.append("null", false);
+            } else {
+                domainWriter.accept(series, domainValue);
+            }
+            for (int j=0; j<getSeriesCount(); ++j) {
+                final double value = getRangeValue(index, j);
+                if (Double.isNaN(value)) {
+                    series.append(null);
+                } else {
+                    series.append(value);
+                }
+            }
+        });
+    }
 
+    /**
+     * Writes a javascript expression that builds a Google DataTable from base64 encoded typed array columns
+     * The expression calls the decoder function written by acceptDecoder(), which must be in scope.
+     * Numeric and date domains are packed as Int32Array or Float64Array columns, and other domains fall back to
+     * an array literal. Series are packed as Float64Array columns, with NaN values flagged in a null bitmap.
+     * @param script    the script to write to
+     * @param rows      the sorted indexes of the rows to write, null to write all rows
+     */
+    public void acceptTypedArrays(JsCode script, int[] rows) {
+        final int rowCount = rows != null ? rows.length : getDomainSize();
+        final Class<?> domainClass = domainType();
+        final GDataType domainType = GDataType.getDataType(domainClass, GDataType.STRING);
+        script.write(DECODER_NAME).write("(").append(rowCount).write(", ");
+        script.newArray(columns -> {
+            columns.appendObject(true, column -> {
+                column.newAttribute("id", "domain");
+                column.newAttribute("label", "Domain");
+                column.newAttribute("type", domainType.getLabel());
+                this.acceptDomainColumn(column, domainClass, domainType, rows);
+            });
+            for (int i=0; i<getSeriesCount(); ++i) {
+                final int series = i;
+                final Comparable seriesKey = getSeriesKey(i);
+                columns.appendObject(true, column -> {
+                    final byte[] nulls = new byte[(rowCount + 7) / 8];
+                    final boolean[] hasNulls = new boolean[1];
+                    column.newAttribute("id", seriesKey.toString());
+                    column.newAttribute("label", seriesKey.toString());
+                    column.newAttribute("type", "number");
+                    column.newBase64("float64", os -> {
+                        final ColumnOutput values = new ColumnOutput(os);
+                        for (int j=0; j<rowCount; ++j) {
+                            final double value = getRangeValue(rows != null ? rows[j] : j, series);
+                            values.putDouble(value);
+                            if (Double.isNaN(value)) {
+                                nulls[j >> 3] |= 1 << (j & 7);
+                                hasNulls[0] = true;
+                            }
                         }
+                        values.flush();
+                    });
+                    if (hasNulls[0]) {
+                        column.newBase64("nulls", os -> new ColumnOutput(os).put(nulls));
                     }
                 });
             }
         });
+        script.write(")");
     }
 
+
     /**
-     * Creates a function that yields a long time value in epoch millis given some input
+     * Writes the values of the domain column into the column object using the most compact encoding for the type
+     * Typed array values are base64 encoded straight into the script, so only the null bitmap is held in memory.
+     * @param column        the javascript column object
+     * @param domainClass   the domain key type
+     * @param domainType    the Google data type for the domain
+     * @param rows          the sorted indexes of the rows to write, null to write all rows
+     */
+    private void acceptDomainColumn(JsObject column, Class<?> domainClass, GDataType domainType, int[] rows) {
+        final int rowCount = rows != null ? rows.length : getDomainSize();
+        final byte[] nulls = new byte[(rowCount + 7) / 8];
+        final ToLongFunction<Object> epochMillis = createEpochMillisFunction(domainClass);
+        final boolean[] hasNulls = new boolean[1];
+        if (domainType == GDataType.NUMBER && (domainClass == Integer.class || domainClass == Short.class || domainClass == Byte.class)) {
+            column.newBase64("int32", os -> {
+                final ColumnOutput values = new ColumnOutput(os);
+                for (int i=0; i<rowCount; ++i) {
+                    final X value = getDomainValue(rows != null ? rows[i] : i);
+                    values.putInt(value != null ? ((Number)value).intValue() : 0);
+                    if (value == null) {
+                        nulls[i >> 3] |= 1 << (i & 7);
+                        hasNulls[0] = true;
+                    }
+                }
+                values.flush();
+            });
+        } else if (domainType == GDataType.NUMBER || (epochMillis != null && domainType != GDataType.STRING)) {
+            column.newBase64("float64", os -> {
+                final ColumnOutput values = new ColumnOutput(os);
+                for (int i=0; i<rowCount; ++i) {
+                    final X value = getDomainValue(rows != null ? rows[i] : i);
+                    if (value == null) {
+                        values.putDouble(Double.NaN);
+                        nulls[i >> 3] |= 1 << (i & 7);
+                        hasNulls[0] = true;
+                    } else if (epochMillis != null) {
+                        values.putDouble(epochMillis.applyAsLong(value));
+                    } else {
+                        values.putDouble(((Number)value).doubleValue());
+                    }
+                }
+                values.flush();
+            });
+        } else {
+            final BiConsumer<JsArray,Object> domainWriter = createDomainWriter(domainClass);
+            column.newArray("values", true, values -> {
+                for (int i=0; i<rowCount; ++i) {
+                    final X value = getDomainValue(rows != null ? rows[i] : i);
+                    if (value == null) {
+                        values.append("null", false);
+                    } else {
+                        domainWriter.accept(values, value);
+                    }
+                }
+            });
+        }
+        if (hasNulls[0]) {
+            column.newBase64("nulls", os -> new ColumnOutput(os).put(nulls));
+        }
+    }
+
+
+    /**
+     * Writes the javascript function that decodes the typed array columns written by acceptTypedArrays()
+     * Typed arrays are written in little endian order, which is the native order of all mainstream browsers.
+     * @param script    the script to write to
+     */
+    static void acceptDecoder(JsCode script) {
+        script.newFunction(DECODER_NAME, "rowCount, columns", func -> {
+            func.write("var bytes = function(text) {");
+            func.newLine().write("    var chars = atob(text), result = new Uint8Array(chars.length);");
+            func.newLine().write("    for (var i=0; i<chars.length; ++i) result[i] = chars.charCodeAt(i);");
+            func.newLine().write("    return result.buffer;");
+            func.newLine().write("};");
+            func.newLine().write("var data = new google.visualization.DataTable();");
+            func.newLine().write("var rows = new Array(rowCount);");
+            func.newLine().write("for (var i=0; i<rowCount; ++i) rows[i] = new Array(columns.length);");
+            func.newLine().write("columns.forEach(function(column, j) {");
+            func.newLine().write("    data.addColumn({id: column.id, label: column.label, type: column.type});");
+            func.newLine().write("    var values = column.values || (column.int32 ? new Int32Array(bytes(column.int32)) : new Float64Array(bytes(column.float64)));");
+            func.newLine().write("    var nulls = column.nulls ? new Uint8Array(bytes(column.nulls)) : null;");
+            func.newLine().write("    var dates = !column.values && (column.type === 'date' || column.type === 'datetime');");
+            func.newLine().write("    for (var i=0; i<rowCount; ++i) {");
+            func.newLine().write("        rows[i][j] = nulls && (nulls[i >> 3] & (1 << (i & 7))) ? null : dates ? new Date(values[i]) : values[i];");
+            func.newLine().write("    }");
+            func.newLine().write("});");
+            func.newLine().write("data.addRows(rows);");
+            func.newLine().write("return data;");
+        });
+    }
+
+
+    /**
+     * Creates a function that writes a non-null domain value into a javascript array, avoiding intermediate strings where possible
      * @param dataType      the data type
-     * @return              the function to resolve epoch millis
+     * @return              the function to write domain values
      */
-    private Function<Object,String> createDomainFunction(Class<?> dataType) {
-        if (Number.class.isAssignableFrom(dataType)) {
-            return value -> value == null ? "null" : String.valueOf(value);
-        } else if (Date.class.isAssignableFrom(dataType)) {
-            return value -> value == null ? "null" : "new Date(" + ((Date)value).getTime() + ")";
+    private BiConsumer<JsArray,Object> createDomainWriter(Class<?> dataType) {
+        final ToLongFunction<Object> epochMillis = createEpochMillisFunction(dataType);
+        if (Double.class.isAssignableFrom(dataType)) {
+            return (array, value) -> array.append((double)(Double)value);
+        } else if (Long.class.isAssignableFrom(dataType) || Integer.class.isAssignableFrom(dataType)) {
+            return (array, value) -> array.append(((Number)value).longValue());
+        } else if (Number.class.isAssignableFrom(dataType)) {
+            return (array, value) -> array.append(String.valueOf(value), false);
+        } else if (epochMillis != null) {
+            return (array, value) -> array.appendDate(epochMillis.applyAsLong(value));
+        } else {
+            return (array, value) -> array.append("'" + value.toString() + "'", false);
+        }
+    }
+
+
+    /**
+     * Creates a function that yields a long time value in epoch millis given a non-null temporal value
+     * @param dataType      the data type
+     * @return              the function to resolve epoch millis, null if the type is not temporal
+     */
+    private ToLongFunction<Object> createEpochMillisFunction(Class<?> dataType) {
+        if (Date.class.isAssignableFrom(dataType)) {
+            return value -> ((Date)value).getTime();
         } else if (LocalDate.class.isAssignableFrom(dataType)) {
-            return value -> value == null ? "null" : "new Date(" + ((LocalDate)value).toEpochDay() * 86400 * 1000 + ")";
+            return value -> ((LocalDate)value).toEpochDay() * 86400 * 1000;
         } else if (LocalDateTime.class.isAssignableFrom(dataType)) {
-            return value -> value == null ? "null" : "new Date(" + ((LocalDateTime)value).toInstant(ZoneOffset.UTC).toEpochMilli() + ")";
+            return value -> ((LocalDateTime)value).toInstant(ZoneOffset.UTC).toEpochMilli();
         } else if (ZonedDateTime.class.isAssignableFrom(dataType)) {
-            return value -> value == null ? "null" : "new Date(" + ((ZonedDateTime)value).toInstant().toEpochMilli() + ")";
+            return value -> ((ZonedDateTime)value).toInstant().toEpochMilli();
         } else if (Calendar.class.isAssignableFrom(dataType)) {
-            return value -> value == null ? "null" : "new Date(" + ((Calendar)value).getTimeInMillis() + ")";
+            return value -> ((Calendar)value).getTimeInMillis();
         } else {
-            return value -> value == null ? "null" : "'" + value.toString() + "'";
+            return null;
+        }
+    }
+
+
+    /**
+     * A small little endian buffer that drains typed array values to a stream, so a column is never held in memory in full
+     */
+    private static class ColumnOutput {
+
+        private OutputStream os;
+        private ByteBuffer buffer = ByteBuffer.allocate(1024 * 8).order(ByteOrder.LITTLE_ENDIAN);
+
+        /**
+         * Constructor
+         * @param os    the stream to drain values to
+         */
+        ColumnOutput(OutputStream os) {
+            this.os = os;
+        }
+
+        /**
+         * Writes a 32-bit integer value
+         * @param value the value to write
+         */
+        void putInt(int value) {
+            if (buffer.remaining() < 4) {
+                this.flush();
+            }
+            this.buffer.putInt(value);
+        }
+
+        /**
+         * Writes a 64-bit floating point value
+         * @param value the value to write
+         */
+        void putDouble(double value) {
+            if (buffer.remaining() < 8) {
+                this.flush();
+            }
+            this.buffer.putDouble(value);
+        }
+
+        /**
+         * Writes the bytes directly to the stream
+         * @param bytes the bytes to write
+         */
+        void put(byte[] bytes) {
+            try {
+                this.flush();
+                this.os.write(bytes);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to write column values", ex);
+            }
+        }
+
+        /**
+         * Drains any buffered values to the stream
+         */
+        void flush() {
+            try {
+                this.os.write(buffer.array(), 0, buffer.position());
+                this.buffer.clear();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to write column values", ex);
+            }
         }
     }
 
@@ -15,18 +15,30 @@
  */
 package com.zavtech.morpheus.viz.google;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import com.zavtech.morpheus.frame.DataFrame;
-import com.zavtech.morpheus.index.Index;
+import com.zavtech.morpheus.range.Range;
 import com.zavtech.morpheus.viz.chart.ChartException;
 import com.zavtech.morpheus.viz.chart.xy.XyDataset;
 import com.zavtech.morpheus.viz.chart.xy.XyModel;
+import com.zavtech.morpheus.viz.chart.xy.XySource;
 
 /**
  * Class summary goes here...
@@ -39,6 +51,7 @@ class GXyModel<X extends Comparable,S extends Comparable> implements XyModel<X,S
 
     private GXyPlot<X> plot;
     private GXyDataset<X,S> unified;
+    private volatile long resetVersion;
     private Map<Integer,Integer> rangeAxisMap = new HashMap<>();
     private Map<Integer,GXyDataset<X,S>> datasetMap = new HashMap<>();
 
@@ -55,8 +68,19 @@ class GXyModel<X extends Comparable,S extends Comparable> implements XyModel<X,S
     /**
      * Resets the unified to force a rebuild next time requested
      */
-    private void reset() {
+    private synchronized void reset() {
         this.unified = null;
+        this.resetVersion = GXyDataset.nextVersion();
+    }
+
+
+    /**
+     * Returns a version that changes whenever datasets are added, removed, updated or accessed for modification
+     * Every change draws a new version from a shared increasing sequence, so the latest is always the maximum.
+     * @return  the modification version of this model
+     */
+    synchronized long version() {
+        return Math.max(resetVersion, datasetMap.values().stream().mapToLong(GXyDataset::version).max().orElse(0L));
     }
 
 
@@ -72,7 +96,7 @@ class GXyModel<X extends Comparable,S extends Comparable> implements XyModel<X,S
         } else {
             for (int index=0; index<100; ++index) {
                 final GXyDataset<X,S> dataset = datasetMap.get(index);
-                if (dataset != null && !dataset.isEmpty() && dataset.frame().cols().contains(seriesKey)) {
+                if (dataset != null && !dataset.isEmpty() && dataset.contains(seriesKey)) {
                     return index;
                 }
             }
@@ -104,64 +128,286 @@ class GXyModel<X extends Comparable,S extends Comparable> implements XyModel<X,S
 
     /**
      * Returns a unified XyDataset based on all the datasets in this model
+     * Several datasets are combined outside the lock of this model while holding the lock of each dataset, so appends
+     * are excluded for the duration. A union is only cached if no reset happened while it was being built, so one built
+     * from data that was appended to in the meantime is returned to the caller but rebuilt on the next request.
      * @return      the unified dataset
      */
-    @SuppressWarnings("unchecked")
     GXyDataset<X,S> getUnifiedDataset() {
-        if (unified != null) {
-            return unified;
-        } else if (datasetMap.size() == 0) {
-            this.unified = GXyDataset.of(() -> null);
-        } else if (datasetMap.size() == 1) {
-            this.unified = datasetMap.values().iterator().next();
+        final long stamp;
+        final List<GXyDataset<X,S>> datasets;
+        synchronized (this) {
+            if (unified != null) {
+                return unified;
+            } else {
+                stamp = resetVersion;
+                datasets = new ArrayList<>(datasetMap.values());
+            }
+        }
+        final GXyDataset<X,S> result;
+        if (datasets.size() == 0) {
+            result = GXyDataset.of(() -> null);
+        } else if (datasets.size() == 1) {
+            result = datasets.get(0);
+        } else {
+            result = locked(datasets, 0, () -> combine(datasets));
+        }
+        synchronized (this) {
+            if (resetVersion == stamp) {
+                this.unified = result;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Calls the supplier while holding the lock of each dataset from the index specified, acquired in list order
+     * @param datasets  the datasets to lock
+     * @param index     the index of the next dataset to lock
+     * @param supplier  the supplier to call once all datasets are locked
+     * @param <T>       the result type
+     * @return          the result of the supplier
+     */
+    private static <T> T locked(List<? extends GXyDataset<?,?>> datasets, int index, Supplier<T> supplier) {
+        if (index == datasets.size()) {
+            return supplier.get();
         } else {
-            this.unified = combine(datasetMap.values());
+            synchronized (datasets.get(index)) {
+                return locked(datasets, index + 1, supplier);
+            }
         }
-        return unified;
     }
 
 
     /**
      * Combines multiple chart datasets into a single dataset
+     * The domain keys of each dataset are merged into a sorted union, and each series is then copied by row ordinal
+     * into primitive columns, which avoids a keyed lookup per cell. Datasets with unsorted domains are first ordered
+     * with a stable sort, and where datasets share a domain key or series key, the last value takes precedence.
      * @param datasets  the datasets to combine
      * @return          the combined dataset
      */
-    @SuppressWarnings("unchecked")
     private GXyDataset<X,S> combine(Collection<GXyDataset<X,S>> datasets) {
-        return GXyDataset.of(() -> {
-            final Set<Class<X>> domainKeyTypeSet = datasets.stream().map(GXyDataset::getDomainKeyType).collect(Collectors.toSet());
-            final Set<Class<S>> seriesKeyTypeSet = datasets.stream().map(d -> d.frame().cols().keyType()).collect(Collectors.toSet());
-            if (domainKeyTypeSet.size() > 1) {
-                throw new ChartException("Non-homogeneous key types for domain dimension: " + domainKeyTypeSet);
+        final Set<Class<X>> domainKeyTypeSet = datasets.stream().map(GXyDataset::getDomainKeyType).collect(Collectors.toSet());
+        if (domainKeyTypeSet.size() > 1) {
+            throw new ChartException("Non-homogeneous key types for domain dimension: " + domainKeyTypeSet);
+        } else {
+            final Class<X> domainKeyType = domainKeyTypeSet.iterator().next();
+            final List<GXyDataset<X,S>> inputs = new ArrayList<>(datasets);
+            final int[][] rowOrdinals = new int[inputs.size()][];
+            final Object[] domainKeys = merge(inputs, domainKeyType, rowOrdinals);
+            final List<S> seriesKeys = new ArrayList<>();
+            final List<double[]> values = new ArrayList<>();
+            for (int k=0; k<inputs.size(); ++k) {
+                final GXyDataset<X,S> dataset = inputs.get(k);
+                final int[] ordinals = rowOrdinals[k];
+                for (int j=0; j<dataset.getSeriesCount(); ++j) {
+                    final S seriesKey = dataset.getSeriesKey(j);
+                    final int index = seriesKeys.indexOf(seriesKey);
+                    final double[] column = index >= 0 ? values.get(index) : new double[domainKeys.length];
+                    if (index < 0) {
+                        Arrays.fill(column, Double.NaN);
+                        seriesKeys.add(seriesKey);
+                        values.add(column);
+                    }
+                    for (int i=0; i<ordinals.length; ++i) {
+                        column[ordinals[i]] = dataset.getRangeValue(i, j);
+                    }
+                }
+            }
+            return GXyDataset.of(new Union<>(domainKeyType, domainKeys, seriesKeys, values.toArray(new double[values.size()][])));
+        }
+    }
+
+
+    /**
+     * Performs a k-way merge of the dataset domains and returns the sorted union of domain keys
+     * Keys are compared as primitive longs, either mapped directly for numeric and date types, or as ranks
+     * assigned by a sort of all keys for other comparable types.
+     * @param datasets      the datasets to merge
+     * @param keyType       the domain key type
+     * @param rowOrdinals   populated with the union row ordinal for each item of each dataset
+     * @return              the sorted union of domain keys, with duplicates collapsed
+     */
+    private Object[] merge(List<GXyDataset<X,S>> datasets, Class<X> keyType, int[][] rowOrdinals) {
+        final int count = datasets.size();
+        final Object[][] keys = new Object[count][];
+        final long[][] codes = new long[count][];
+        final int[][] orders = new int[count][];
+        final int[] heads = new int[count];
+        boolean hasNulls = false;
+        for (int k=0; k<count; ++k) {
+            final GXyDataset<X,S> dataset = datasets.get(k);
+            keys[k] = new Object[dataset.getDomainSize()];
+            rowOrdinals[k] = new int[keys[k].length];
+            for (int i=0; i<keys[k].length; ++i) {
+                keys[k][i] = dataset.getDomainValue(i);
+                hasNulls |= keys[k][i] == null;
+            }
+        }
+        final ToLongFunction<Object> codeFunction = hasNulls ? null : createCodeFunction(keyType);
+        if (codeFunction == null) {
+            this.rank(keys, codes);
+        } else {
+            for (int k=0; k<count; ++k) {
+                codes[k] = new long[keys[k].length];
+                for (int i=0; i<keys[k].length; ++i) {
+                    codes[k][i] = codeFunction.applyAsLong(keys[k][i]);
+                }
+            }
+        }
+        final long[][] sorted = new long[count][];
+        for (int k=0; k<count; ++k) {
+            orders[k] = order(codes[k]);
+            sorted[k] = new long[codes[k].length];
+            for (int i=0; i<sorted[k].length; ++i) {
+                sorted[k][i] = codes[k][orders[k][i]];
+            }
+        }
+        final Object[] union = new Object[Stream.of(keys).mapToInt(v -> v.length).sum()];
+        int size = 0;
+        while (true) {
+            int first = -1;
+            long next = 0L;
+            for (int k=0; k<count; ++k) {
+                if (heads[k] < sorted[k].length) {
+                    final long code = sorted[k][heads[k]];
+                    if (first < 0 || code < next) {
+                        first = k;
+                        next = code;
+                    }
+                }
+            }
+            if (first < 0) {
+                return size < union.length ? Arrays.copyOf(union, size) : union;
             } else {
-                final Class<X> domainKeyType = domainKeyTypeSet.iterator().next();
-                final Class<S> seriesKeyType = seriesKeyTypeSet.size() > 1 ? (Class<S>)Comparable.class : seriesKeyTypeSet.iterator().next();
-                final int rowCount = datasets.stream().mapToInt(GXyDataset::getDomainSize).max().orElse(0);
-                final int colCount = datasets.stream().mapToInt(GXyDataset::getSeriesCount).sum();
-                final Index<X> rows = Index.of(domainKeyType, rowCount);
-                final Index<S> columns = Index.of(seriesKeyType, colCount);
-                final DataFrame<X,S> frame = DataFrame.ofDoubles(rows, columns);
-                datasets.forEach(dataset -> {
-                    final Iterable<X> domainKeys = dataset.getDomainValues();
-                    frame.rows().addAll(domainKeys);
-                    for (int j=0; j<dataset.getSeriesCount(); ++j) {
-                        final S seriesKey = dataset.getSeriesKey(j);
-                        final int colOrdinal = frame.cols().add(seriesKey, Double.class).ordinal();
-                        for (int i=0; i<dataset.getDomainSize(); ++i) {
-                            final X domainKey = dataset.getDomainValue(i);
-                            final double value = dataset.getRangeValue(i, j);
-                            frame.data().setDouble(domainKey, colOrdinal, value);
+                union[size] = keys[first][orders[first][heads[first]]];
+                for (int k=0; k<count; ++k) {
+                    final long[] codeArray = sorted[k];
+                    final int[] order = orders[k];
+                    final int[] ordinals = rowOrdinals[k];
+                    int head = heads[k];
+                    while (head < codeArray.length && codeArray[head] == next) {
+                        ordinals[order[head++]] = size;
+                    }
+                    heads[k] = head;
+                }
+                size++;
+            }
+        }
+    }
+
+
+    /**
+     * Assigns each key a code equal to its rank among the distinct keys of all datasets, with nulls first
+     * A stable sort over the concatenated keys is close to linear when each dataset is already sorted.
+     * @param keys      the domain keys for each dataset
+     * @param codes     populated with the rank code for each key of each dataset
+     */
+    @SuppressWarnings("unchecked")
+    private void rank(Object[][] keys, long[][] codes) {
+        final Comparator<Object> comparator = Comparator.nullsFirst((k1, k2) -> ((Comparable<Object>)k1).compareTo(k2));
+        final List<int[]> entries = new ArrayList<>();
+        for (int k=0; k<keys.length; ++k) {
+            codes[k] = new long[keys[k].length];
+            for (int i=0; i<keys[k].length; ++i) {
+                entries.add(new int[] {k, i});
+            }
+        }
+        entries.sort((e1, e2) -> comparator.compare(keys[e1[0]][e1[1]], keys[e2[0]][e2[1]]));
+        long rank = 0L;
+        for (int i=0; i<entries.size(); ++i) {
+            final int[] entry = entries.get(i);
+            if (i > 0) {
+                final int[] prior = entries.get(i-1);
+                if (comparator.compare(keys[prior[0]][prior[1]], keys[entry[0]][entry[1]]) != 0) {
+                    rank++;
+                }
+            }
+            codes[entry[0]][entry[1]] = rank;
+        }
+    }
+
+
+    /**
+     * Returns a function that maps keys to longs with the same ordering as the keys, or null if not supported
+     * @param keyType   the domain key type
+     * @return          the code function, null if keys must be ranked
+     */
+    private ToLongFunction<Object> createCodeFunction(Class<X> keyType) {
+        if (keyType == Integer.class || keyType == Long.class || keyType == Short.class || keyType == Byte.class) {
+            return key -> ((Number)key).longValue();
+        } else if (keyType == Double.class || keyType == Float.class) {
+            return key -> {
+                final long bits = Double.doubleToLongBits(((Number)key).doubleValue());
+                return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+            };
+        } else if (keyType == LocalDate.class) {
+            return key -> ((LocalDate)key).toEpochDay();
+        } else if (keyType == Date.class) {
+            return key -> ((Date)key).getTime();
+        } else {
+            return null;
+        }
+    }
+
+
+    /**
+     * Returns the item indexes in ascending code order
+     * This is the identity when the codes are already sorted, otherwise a stable bottom up merge sort is used so
+     * that the last of any duplicate keys still takes precedence.
+     * @param codes     the key codes
+     * @return          the item indexes in code order
+     */
+    private static int[] order(long[] codes) {
+        final int length = codes.length;
+        final int[] order = IntStream.range(0, length).toArray();
+        for (int i=1; i<length; ++i) {
+            if (codes[i-1] > codes[i]) {
+                long[] keys = codes.clone();
+                long[] keyBuffer = new long[length];
+                int[] items = order;
+                int[] itemBuffer = new int[length];
+                for (int width=1; width<length; width *= 2) {
+                    for (int start=0; start<length; start += 2 * width) {
+                        final int middle = Math.min(start + width, length);
+                        final int end = Math.min(start + 2 * width, length);
+                        int left = start, right = middle, target = start;
+                        while (left < middle && right < end) {
+                            if (keys[right] < keys[left]) {
+                                keyBuffer[target] = keys[right];
+                                itemBuffer[target++] = items[right++];
+                            } else {
+                                keyBuffer[target] = keys[left];
+                                itemBuffer[target++] = items[left++];
+                            }
+                        }
+                        while (left < middle) {
+                            keyBuffer[target] = keys[left];
+                            itemBuffer[target++] = items[left++];
+                        }
+                        while (right < end) {
+                            keyBuffer[target] = keys[right];
+                            itemBuffer[target++] = items[right++];
                         }
                     }
-                });
-                return frame.rows().sort(true);
+                    final long[] swapKeys = keys;
+                    final int[] swapItems = items;
+                    keys = keyBuffer;
+                    items = itemBuffer;
+                    keyBuffer = swapKeys;
+                    itemBuffer = swapItems;
+                }
+                return items;
             }
-        });
+        }
+        return order;
     }
 
 
     @Override
-    public void setRangeAxis(int dataset, int axis) {
+    public synchronized void setRangeAxis(int dataset, int axis) {
         this.rangeAxisMap.put(dataset, axis);
         this.plot.axes().range(axis);
     }
@@ -179,7 +425,7 @@ class GXyModel<X extends Comparable,S extends Comparable> implements XyModel<X,S
 
     @Override
     @SuppressWarnings("unchecked")
-    public XyDataset<X,S> at(int index) {
+    public synchronized XyDataset<X,S> at(int index) {
         try {
             final XyDataset<X,S> dataset = datasetMap.get(index);
             if (dataset == null) {
@@ -194,7 +440,7 @@ class GXyModel<X extends Comparable,S extends Comparable> implements XyModel<X,S
 
 
     @Override
-    public int add(DataFrame<X,S> frame) {
+    public synchronized int add(DataFrame<X,S> frame) {
         try {
             final int index = datasetMap.size();
             final GXyDataset<X,S> dataset = GXyDataset.of(() -> frame);
@@ -207,7 +453,7 @@ class GXyModel<X extends Comparable,S extends Comparable> implements XyModel<X,S
 
 
     @Override
-    public int add(DataFrame<?,S> frame, S domainKey) {
+    public synchronized int add(DataFrame<?,S> frame, S domainKey) {
         try {
             final int index = datasetMap.size();
             final GXyDataset<X,S> dataset = GXyDataset.of(domainKey, () -> frame);
@@ -220,7 +466,20 @@ class GXyModel<X extends Comparable,S extends Comparable> implements XyModel<X,S
 
 
     @Override
-    public XyDataset<X,S> update(int index, DataFrame<X,S> frame) {
+    public synchronized int add(XySource<X,S> source) {
+        try {
+            final int index = datasetMap.size();
+            final GXyDataset<X,S> dataset = GXyDataset.of(source);
+            this.datasetMap.put(index, dataset);
+            return index;
+        } finally {
+            reset();
+        }
+    }
+
+
+    @Override
+    public synchronized XyDataset<X,S> update(int index, DataFrame<X,S> frame) {
         try {
             if (!datasetMap.containsKey(index)) {
                 throw new ChartException("No dataset exist at index: " + index);
@@ -236,7 +495,7 @@ class GXyModel<X extends Comparable,S extends Comparable> implements XyModel<X,S
 
 
     @Override
-    public XyDataset<X,S> update(int index, DataFrame<?,S> frame, S domainKey) {
+    public synchronized XyDataset<X,S> update(int index, DataFrame<?,S> frame, S domainKey) {
         try {
             if (!datasetMap.containsKey(index)) {
                 throw new ChartException("No dataset exist at index: " + index);
@@ -252,7 +511,40 @@ class GXyModel<X extends Comparable,S extends Comparable> implements XyModel<X,S
 
 
     @Override
-    public void removeAll() {
+    public XyDataset<X,S> append(int index, DataFrame<?,S> rows) {
+        try {
+            final GXyDataset<X,S> dataset;
+            synchronized (this) {
+                dataset = datasetMap.get(index);
+            }
+            if (dataset == null) {
+                throw new ChartException("No dataset exist at index: " + index);
+            } else {
+                dataset.append(rows);
+                return dataset;
+            }
+        } finally {
+            reset();
+        }
+    }
+
+
+    @Override
+    public void refreshAll() {
+        try {
+            final List<GXyDataset<X,S>> datasets;
+            synchronized (this) {
+                datasets = new ArrayList<>(datasetMap.values());
+            }
+            datasets.parallelStream().forEach(GXyDataset::refresh);
+        } finally {
+            reset();
+        }
+    }
+
+
+    @Override
+    public synchronized void removeAll() {
         try {
             this.datasetMap.clear();
         } finally {
@@ -262,7 +554,7 @@ class GXyModel<X extends Comparable,S extends Comparable> implements XyModel<X,S
 
 
     @Override
-    public void remove(int index) {
+    public synchronized void remove(int index) {
         try {
             if (!datasetMap.containsKey(index)) {
                 throw new ChartException("No dataset exists for index: " + index);
@@ -274,4 +566,88 @@ class GXyModel<X extends Comparable,S extends Comparable> implements XyModel<X,S
         }
     }
 
+
+
+    /**
+     * An XySource over the sorted union of domain keys and primitive series columns of several datasets
+     * @param <X>   the domain key type
+     * @param <S>   the series key type
+     */
+    private static class Union<X,S> implements XySource<X,S> {
+
+        private Class<X> keyType;
+        private Object[] keys;
+        private List<S> seriesKeys;
+        private double[][] values;
+        private DataFrame<Integer,S> frame;
+
+        /**
+         * Constructor
+         * @param keyType       the domain key type
+         * @param keys          the sorted domain keys
+         * @param seriesKeys    the series keys
+         * @param values        the series values, one column per series
+         */
+        Union(Class<X> keyType, Object[] keys, List<S> seriesKeys, double[][] values) {
+            this.keyType = keyType;
+            this.keys = keys;
+            this.seriesKeys = seriesKeys;
+            this.values = values;
+        }
+
+        @Override
+        public int size() {
+            return keys.length;
+        }
+
+        @Override
+        public Class<X> keyType() {
+            return keyType;
+        }
+
+        @Override
+        public int seriesCount() {
+            return seriesKeys.size();
+        }
+
+        @Override
+        public List<S> seriesKeys() {
+            return Collections.unmodifiableList(seriesKeys);
+        }
+
+        @Override
+        public S seriesKey(int series) {
+            return seriesKeys.get(series);
+        }
+
+        @Override
+        public int seriesIndex(S seriesKey) {
+            return seriesKeys.indexOf(seriesKey);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public X key(int item) {
+            return (X)keys[item];
+        }
+
+        @Override
+        public double domain(int item) {
+            return keys[item] instanceof Number ? ((Number)keys[item]).doubleValue() : Double.NaN;
+        }
+
+        @Override
+        public double value(int series, int item) {
+            return values[series][item];
+        }
+
+        @Override
+        public DataFrame<Integer,S> frame() {
+            if (frame == null) {
+                this.frame = DataFrame.ofDoubles(Range.of(0, keys.length), seriesKeys, v -> values[v.colOrdinal()][v.rowOrdinal()]);
+            }
+            return frame;
+        }
+    }
+
 }
@@ -25,8 +25,10 @@ import com.zavtech.morpheus.viz.chart.ChartShape;
 import com.zavtech.morpheus.viz.chart.xy.XyAxes;
 import com.zavtech.morpheus.viz.chart.xy.XyModel;
 import com.zavtech.morpheus.viz.chart.xy.XyOrient;
+import com.zavtech.morpheus.viz.chart.xy.XyPlot;
 import com.zavtech.morpheus.viz.chart.xy.XyPlotBase;
 import com.zavtech.morpheus.viz.chart.xy.XyRender;
+import com.zavtech.morpheus.viz.chart.xy.XyStyle;
 import com.zavtech.morpheus.viz.chart.xy.XyTrend;
 import com.zavtech.morpheus.viz.js.JsObject;
 import com.zavtech.morpheus.viz.util.ColorModel;
@@ -46,6 +48,7 @@ class GXyPlot<X extends Comparable> extends XyPlotBase<X> {
     private Map<Integer,GXyRender> renderMap = new HashMap<>();
     private Map<Comparable,GTrendLine> trendLineMap = new HashMap<>();
     private ChartShape.Provider shapeProvider = new ChartShape.DefaultProvider();
+    private long version;
 
 
     /**
@@ -58,6 +61,7 @@ class GXyPlot<X extends Comparable> extends XyPlotBase<X> {
 
     @Override
     public XyAxes axes() {
+        this.version++;
         return axes;
     }
 
@@ -71,12 +75,14 @@ class GXyPlot<X extends Comparable> extends XyPlotBase<X> {
 
     @Override
     public XyOrient orient() {
+        this.version++;
         return orient;
     }
 
 
     @Override
     public <S extends Comparable> XyTrend trend(S seriesKey) {
+        this.version++;
         GTrendLine trend = trendLineMap.get(seriesKey);
         if (trend == null) {
             trend = new GTrendLine(seriesKey);
@@ -88,22 +94,47 @@ class GXyPlot<X extends Comparable> extends XyPlotBase<X> {
 
     @Override
     public XyRender render(int index) {
-        GXyRender render = renderMap.get(index);
-        if (render == null) {
-            render = new GXyRender(this);
-            renderMap.put(index, render);
-        }
-        return render;
+        this.version++;
+        return renderAt(index);
+    }
+
+
+    @Override
+    public XyPlot<X> withColorModel(ColorModel colorModel) {
+        this.version++;
+        return super.withColorModel(colorModel);
+    }
+
+
+    @Override
+    public XyStyle style(Comparable seriesKey) {
+        this.version++;
+        return super.style(seriesKey);
+    }
+
+
+    /**
+     * Returns the modification version of the styling of this plot, excluding its data
+     * The version changes whenever a mutable component of this plot is handed out, as it may then be modified.
+     * @return  the modification version of this plot
+     */
+    long version() {
+        return version;
     }
 
 
     /**
-     * Returns the render with a more specific type
+     * Returns the render with a more specific type, without counting as a modification
      * @param index the dataset index
      * @return      the renderer
      */
-    private GXyRender renderAt(int index) {
-        return (GXyRender)render(index);
+    GXyRender renderAt(int index) {
+        GXyRender render = renderMap.get(index);
+        if (render == null) {
+            render = new GXyRender(this);
+            renderMap.put(index, render);
+        }
+        return render;
     }
 
 
@@ -143,7 +174,7 @@ class GXyPlot<X extends Comparable> extends XyPlotBase<X> {
         final String range2 = renderAt(0).isBars() && isHorizontal() ? "hAxes" : "vAxes";
         options.newObject(domain, axis -> {
             final GXyDataset dataset = model.getUnifiedDataset();
-            final GXyAxis domainAxis = (GXyAxis)axes().domain();
+            final GXyAxis domainAxis = (GXyAxis)axes.domain();
             domainAxis.accept(axis, dataset);
         });
         if (axes.rangeAxisCount() == 1) {
@@ -177,6 +177,11 @@ class GXyRender implements XyRender {
 
     }
 
+    @Override
+    public void withDenseLines() {
+        this.withLines(false, false);
+    }
+
     @Override
     public void withShapes() {
         this.type = Type.SHAPES;
@@ -16,25 +16,37 @@
 package com.zavtech.morpheus.viz.html;
 
 import java.awt.*;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.function.Consumer;
 
 import com.zavtech.morpheus.util.IO;
+import com.zavtech.morpheus.viz.util.GzipOutput;
+import com.zavtech.morpheus.viz.js.JsCode;
 
 /**
  * A convenience API for programmatically creating simple HTML pages in the absence of a template engine such as Freemarker.
  *
+ * HTML is accumulated in memory by default, or if constructed with a Writer, it is streamed to that writer through
+ * a small bounded buffer, in which case embedded scripts should be written with HtmlElement.javascript() so they stream too.
+ *
  * @author Xavier Witdouck
  *
  * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
  */
 public class HtmlCode {
 
+    private static final int BUFFER_SIZE = 8192;
+
     private String indent = "";
     private StringBuilder html = new StringBuilder();
+    private Writer writer;
+    private char[] chars;
 
     /**
      * Constructor
@@ -43,6 +55,23 @@ public class HtmlCode {
         super();
     }
 
+    /**
+     * Constructor
+     * @param writer    the writer to stream HTML to, which is not closed by this object
+     */
+    public HtmlCode(Writer writer) {
+        this.writer = writer;
+        this.chars = new char[BUFFER_SIZE * 2];
+    }
+
+    /**
+     * Constructor
+     * @param os    the output stream to stream UTF-8 encoded HTML to, which is not closed by this object
+     */
+    public HtmlCode(OutputStream os) {
+        this(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+    }
+
     /**
      * Convenience method to generate an HTML string given a writer
      * @param consumer  the consumer to call on the writer
@@ -55,6 +84,18 @@ public class HtmlCode {
     }
 
 
+    /**
+     * Convenience method to stream HTML generated by the consumer to the writer specified
+     * @param writer    the writer to stream HTML to, which is flushed but not closed
+     * @param consumer  the consumer to call on the HTML code
+     */
+    public static void createHtml(Writer writer, Consumer<HtmlCode> consumer) {
+        final HtmlCode html = new HtmlCode(writer);
+        consumer.accept(html);
+        html.flush();
+    }
+
+
     /**
      * Increases the indentation for the current line by a certain number of spaces
      * @param count     the number of spaces to indent by
@@ -89,7 +130,7 @@ public class HtmlCode {
     public HtmlCode newLine() {
         this.html.append("\n");
         this.html.append(indent);
-        return this;
+        return drain(false);
     }
 
     /**
@@ -101,14 +142,33 @@ public class HtmlCode {
     public HtmlCode write(String line, Object... args) {
         if (args == null || args.length == 0) {
             this.html.append(line);
-            return this;
+            return drain(false);
         } else {
             this.html.append(String.format(line, args));
-            return this;
+            return drain(false);
         }
     }
 
 
+    /**
+     * Writes Javascript generated by the consumer at the current position, streaming it if this code is streaming
+     * @param consumer  the consumer to write Javascript programmatically
+     * @return          this writer
+     */
+    public HtmlCode javascript(Consumer<JsCode> consumer) {
+        final JsCode js = writer != null ? new JsCode(writer) : new JsCode();
+        this.drain(true);
+        js.indent(indent.length());
+        consumer.accept(js);
+        if (writer != null) {
+            js.flush();
+        } else {
+            this.html.append(js.toString());
+        }
+        return this;
+    }
+
+
     /**
      * Creates a new element with the name specified
      * @param name      the HTML element name
@@ -123,13 +183,70 @@ public class HtmlCode {
     }
 
     /**
-     * Flushes the contents of the buffer to a file
+     * Writes any buffered HTML to the writer and flushes it, which has no effect if this code is not streaming
+     * @return  this writer
+     */
+    public HtmlCode flush() {
+        try {
+            if (writer != null) {
+                this.drain(true);
+                this.writer.flush();
+            }
+            return this;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to flush HTML code to writer", ex);
+        }
+    }
+
+
+    /**
+     * Writes the buffered HTML to the writer if streaming, and either forced or the buffer is full
+     * @param force true to write the buffer regardless of how much HTML it holds
+     * @return      this writer
+     */
+    private HtmlCode drain(boolean force) {
+        final int length = html.length();
+        if (writer != null && length > 0 && (force || length >= BUFFER_SIZE)) {
+            try {
+                if (chars.length < length) {
+                    this.chars = new char[length];
+                }
+                this.html.getChars(0, length, chars, 0);
+                this.html.setLength(0);
+                this.writer.write(chars, 0, length);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to write HTML code to writer", ex);
+            }
+        }
+        return this;
+    }
+
+
+    /**
+     * Flushes the contents of the buffer to a file, which is gzip compressed if the file name ends with .gz
      * @param file      the file to flush the HTML buffer to
      * @throws IOException  if there is an IO Exception
      */
     public void flush(File file) throws IOException {
-        try (BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(file))) {
-            bos.write(html.toString().getBytes());
+        this.flush(file, GzipOutput.DEFAULT_LEVEL);
+    }
+
+
+    /**
+     * Flushes the contents of the buffer to a file, which is gzip compressed at the level specified if the file name ends with .gz
+     * The buffer is encoded in chunks, so no copy of the whole HTML is made along the way.
+     * @param file      the file to flush the HTML buffer to
+     * @param level     the gzip compression level from 0 to 9
+     * @throws IOException  if there is an IO Exception
+     */
+    public void flush(File file, int level) throws IOException {
+        try (Writer output = new OutputStreamWriter(GzipOutput.open(file, level), StandardCharsets.UTF_8)) {
+            final char[] buffer = new char[BUFFER_SIZE];
+            for (int start=0; start<html.length(); start+=buffer.length) {
+                final int end = Math.min(html.length(), start + buffer.length);
+                this.html.getChars(start, end, buffer, 0);
+                output.write(buffer, 0, end - start);
+            }
         }
     }
 
@@ -156,6 +273,10 @@ public class HtmlCode {
     }
 
 
+    /**
+     * Returns the HTML in this buffer, which excludes any HTML already streamed to the writer
+     * @return  the HTML in this buffer
+     */
     @Override
     public String toString() {
         return html.toString();
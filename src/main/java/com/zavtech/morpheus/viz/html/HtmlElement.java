@@ -20,6 +20,7 @@ import java.util.Set;
 import java.util.function.Consumer;
 
 import com.zavtech.morpheus.util.Collect;
+import com.zavtech.morpheus.viz.js.JsCode;
 
 /**
  * A class that defines a convenience API for writing out element content using an HtmlWriter.
@@ -106,6 +107,24 @@ public class HtmlElement {
     }
 
 
+    /**
+     * Writes Javascript content to the body of this element, which is streamed if the underlying HtmlCode is streaming
+     * @param consumer  the consumer to write Javascript programmatically
+     * @return          this element
+     */
+    public HtmlElement javascript(Consumer<JsCode> consumer) {
+        if (attrs) {
+            this.writer.write(">");
+            this.attrs = false;
+        }
+        this.mixedContent = true;
+        this.writer.indent(4);
+        this.writer.javascript(consumer);
+        this.writer.unident(4);
+        return this;
+    }
+
+
     /**
      * Writes a new attribute key and value for the current element
      * @param name      the attribute name
@@ -0,0 +1,534 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.jfree;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.jfree.chart.ChartUtilities;
+
+import com.zavtech.morpheus.viz.chart.Chart;
+import com.zavtech.morpheus.viz.chart.ChartException;
+import com.zavtech.morpheus.viz.chart.ChartImageEncoder;
+
+/**
+ * A renderer that writes large batches of charts to PNG files on a bounded pool of worker threads
+ *
+ * Charts are drawn into offscreen images only, so no display is required, and each worker keeps a few images
+ * of recently used sizes to avoid allocating a new image per chart. Submitting a job blocks while the queue is
+ * full, so a lazily generated stream of jobs never gets far ahead of the workers. Draws of the same chart are
+ * serialized since JFreeChart is not thread safe, but distinct charts render fully in parallel.
+ *
+ * Server processes without a display should be started with -Djava.awt.headless=true. This class does not set
+ * it, since the property applies to the whole JVM and only takes effect before AWT is first initialized.
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class JFBatchRenderer implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1024 * 64;
+    private static final int IMAGES_PER_THREAD = 4;
+
+    private int permitCount;
+    private Semaphore permits;
+    private ExecutorService executor;
+    private ThreadLocal<Map<Long,BufferedImage>> imageCache = ThreadLocal.withInitial(() -> new LinkedHashMap<Long,BufferedImage>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long,BufferedImage> eldest) {
+            return size() > IMAGES_PER_THREAD;
+        }
+    });
+
+
+    /**
+     * Constructor
+     * @param threads   the number of worker threads to render with
+     * @param queueSize the number of jobs that can be queued before submit() blocks
+     */
+    public JFBatchRenderer(int threads, int queueSize) {
+        if (threads <= 0) {
+            throw new ChartException("The batch renderer thread count must be > 0, found " + threads);
+        } else if (queueSize < 0) {
+            throw new ChartException("The batch renderer queue size must be >= 0, found " + queueSize);
+        } else {
+            final AtomicInteger threadCount = new AtomicInteger();
+            this.permitCount = threads + queueSize;
+            this.permits = new Semaphore(permitCount);
+            this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+                final Thread thread = new Thread(runnable, "JFBatchRenderer-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+
+    /**
+     * Returns a newly created renderer with one thread per available processor
+     * @return  the newly created renderer
+     */
+    public static JFBatchRenderer create() {
+        final int threads = Runtime.getRuntime().availableProcessors();
+        return new JFBatchRenderer(threads, threads * 4);
+    }
+
+
+    /**
+     * Submits a job to this renderer, blocking while the queue is full
+     * The future always completes normally, with any failure to render recorded in the result.
+     * @param job   the job to render
+     * @return      the future result of the job
+     */
+    public CompletableFuture<Result> submit(Job job) {
+        try {
+            this.permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ChartException("Interrupted while waiting to submit chart to batch renderer", ex);
+        }
+        try {
+            final long submitted = System.nanoTime();
+            final CompletableFuture<Result> future = new CompletableFuture<>();
+            this.executor.execute(() -> {
+                try {
+                    future.complete(run(job, submitted));
+                } finally {
+                    permits.release();
+                }
+            });
+            return future;
+        } catch (RejectedExecutionException ex) {
+            this.permits.release();
+            throw new ChartException("The batch renderer has been closed", ex);
+        }
+    }
+
+
+    /**
+     * Renders all jobs in the stream and returns once they have completed
+     * @param jobs  the stream of jobs to render
+     * @return      the summary of the batch
+     */
+    public Summary render(Stream<Job> jobs) {
+        return render(jobs, result -> {});
+    }
+
+
+    /**
+     * Renders all jobs in the stream and returns once they have completed
+     * The consumer may be called on the worker threads and must be thread safe.
+     * @param jobs      the stream of jobs to render
+     * @param consumer  the consumer to receive the result of each job as it completes
+     * @return          the summary of the batch
+     */
+    public Summary render(Stream<Job> jobs, Consumer<Result> consumer) {
+        final Summary summary = new Summary();
+        jobs.forEach(job -> submit(job).thenAccept(result -> {
+            summary.add(result);
+            consumer.accept(result);
+        }));
+        try {
+            this.permits.acquire(permitCount);
+            this.permits.release(permitCount);
+            return summary.complete();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ChartException("Interrupted while waiting for batch renderer to complete", ex);
+        }
+    }
+
+
+    @Override
+    public void close() {
+        this.executor.shutdown();
+    }
+
+
+    /**
+     * Renders the job specified on the calling thread
+     * @param job       the job to render
+     * @param submitted the nano time at which the job was submitted
+     * @return          the result of the job
+     */
+    private Result run(Job job, long submitted) {
+        final long started = System.nanoTime();
+        try {
+            if (!(job.chart instanceof JFChartBase)) {
+                throw new ChartException("Only charts rendered in Java can be written as PNG, found " + job.chart.getClass().getSimpleName());
+            } else {
+                final BufferedImage image = image(job.width, job.height);
+                final Graphics2D graphics = image.createGraphics();
+                try {
+                    graphics.setComposite(AlphaComposite.Clear);
+                    graphics.fillRect(0, 0, job.width, job.height);
+                    graphics.setComposite(AlphaComposite.SrcOver);
+                    ((JFChartBase<?>)job.chart).draw(graphics, job.width, job.height, job.transparent);
+                } finally {
+                    graphics.dispose();
+                }
+                final long rendered = System.nanoTime();
+                final File parent = job.file.getAbsoluteFile().getParentFile();
+                if (parent != null && !parent.exists() && !parent.mkdirs() && !parent.exists()) {
+                    throw new ChartException("Unable to create directory for " + job.file.getAbsolutePath());
+                }
+                try (OutputStream os = new BufferedOutputStream(new FileOutputStream(job.file), BUFFER_SIZE)) {
+                    final ChartImageEncoder encoder = job.chart.options().getImageEncoder().orElse(null);
+                    if (encoder != null) {
+                        encoder.encode(image, job.transparent, os);
+                    } else {
+                        ChartUtilities.writeBufferedImageAsPNG(os, image, job.transparent, 0);
+                    }
+                }
+                final long written = System.nanoTime();
+                return new Result(job, started - submitted, rendered - started, written - rendered, job.file.length(), null);
+            }
+        } catch (Exception ex) {
+            return new Result(job, started - submitted, System.nanoTime() - started, 0L, 0L, ex);
+        }
+    }
+
+
+    /**
+     * Returns an image of the size specified, reused from recent jobs on the calling thread where possible
+     * Images always have an alpha channel, as with ChartUtilities, so output matches Chart.writerPng() exactly.
+     * @param width     the image width
+     * @param height    the image height
+     * @return          the image
+     */
+    private BufferedImage image(int width, int height) {
+        final Map<Long,BufferedImage> imageMap = imageCache.get();
+        final Long key = ((long)width << 32) | height;
+        return imageMap.computeIfAbsent(key, k -> new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+    }
+
+
+
+    /**
+     * A request to render a chart to a PNG file of a given size
+     */
+    public static class Job {
+
+        private Chart<?> chart;
+        private File file;
+        private int width;
+        private int height;
+        private boolean transparent;
+
+        /**
+         * Constructor
+         * @param chart         the chart to render
+         * @param file          the file to write the PNG image to
+         * @param width         the image width in pixels
+         * @param height        the image height in pixels
+         * @param transparent   true to render with a transparent background
+         */
+        private Job(Chart<?> chart, File file, int width, int height, boolean transparent) {
+            this.chart = chart;
+            this.file = file;
+            this.width = width;
+            this.height = height;
+            this.transparent = transparent;
+        }
+
+        /**
+         * Returns a newly created job to render a chart with an opaque background
+         * @param chart     the chart to render
+         * @param file      the file to write the PNG image to
+         * @param width     the image width in pixels
+         * @param height    the image height in pixels
+         * @return          the newly created job
+         */
+        public static Job of(Chart<?> chart, File file, int width, int height) {
+            return of(chart, file, width, height, false);
+        }
+
+        /**
+         * Returns a newly created job to render a chart
+         * @param chart         the chart to render
+         * @param file          the file to write the PNG image to
+         * @param width         the image width in pixels
+         * @param height        the image height in pixels
+         * @param transparent   true to render with a transparent background
+         * @return              the newly created job
+         */
+        public static Job of(Chart<?> chart, File file, int width, int height, boolean transparent) {
+            if (width <= 0 || height <= 0) {
+                throw new ChartException(String.format("The image size must be > 0, found %sx%s", width, height));
+            } else {
+                return new Job(chart, file, width, height, transparent);
+            }
+        }
+
+        /**
+         * Returns the chart to render
+         * @return  the chart to render
+         */
+        public Chart<?> getChart() {
+            return chart;
+        }
+
+        /**
+         * Returns the file to write the PNG image to
+         * @return  the target file
+         */
+        public File getFile() {
+            return file;
+        }
+    }
+
+
+
+    /**
+     * The result of a job, with timings for each stage
+     */
+    public static class Result {
+
+        private Job job;
+        private long queueNanos;
+        private long renderNanos;
+        private long encodeNanos;
+        private long bytes;
+        private Exception error;
+
+        /**
+         * Constructor
+         * @param job           the job
+         * @param queueNanos    the time the job waited in the queue
+         * @param renderNanos   the time taken to draw the chart
+         * @param encodeNanos   the time taken to encode and write the image
+         * @param bytes         the size of the file written
+         * @param error         the error that caused the job to fail, null if it succeeded
+         */
+        private Result(Job job, long queueNanos, long renderNanos, long encodeNanos, long bytes, Exception error) {
+            this.job = job;
+            this.queueNanos = queueNanos;
+            this.renderNanos = renderNanos;
+            this.encodeNanos = encodeNanos;
+            this.bytes = bytes;
+            this.error = error;
+        }
+
+        /**
+         * Returns the job for this result
+         * @return  the job
+         */
+        public Job getJob() {
+            return job;
+        }
+
+        /**
+         * Returns the error if the job failed
+         * @return  the optional error
+         */
+        public Optional<Exception> getError() {
+            return Optional.ofNullable(error);
+        }
+
+        /**
+         * Returns the number of bytes written to the target file
+         * @return  the file size in bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Returns the time the job waited in the queue before a worker picked it up
+         * @param unit  the time unit
+         * @return      the queue time
+         */
+        public long getQueueTime(TimeUnit unit) {
+            return unit.convert(queueNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Returns the time taken to draw the chart into an image
+         * @param unit  the time unit
+         * @return      the render time
+         */
+        public long getRenderTime(TimeUnit unit) {
+            return unit.convert(renderNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Returns the time taken to encode the image as a PNG and write it to file
+         * @param unit  the time unit
+         * @return      the encode time
+         */
+        public long getEncodeTime(TimeUnit unit) {
+            return unit.convert(encodeNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Returns the total latency of the job from submission to completion
+         * @param unit  the time unit
+         * @return      the latency
+         */
+        public long getLatency(TimeUnit unit) {
+            return unit.convert(queueNanos + renderNanos + encodeNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: queue=%sms, render=%sms, encode=%sms, bytes=%s%s",
+                job.file.getName(),
+                getQueueTime(TimeUnit.MILLISECONDS),
+                getRenderTime(TimeUnit.MILLISECONDS),
+                getEncodeTime(TimeUnit.MILLISECONDS),
+                bytes,
+                error != null ? ", error=" + error.getMessage() : ""
+            );
+        }
+    }
+
+
+
+    /**
+     * A summary of throughput and latency for a batch of jobs
+     */
+    public static class Summary {
+
+        private int count;
+        private int failures;
+        private long bytes;
+        private long startNanos = System.nanoTime();
+        private long elapsedNanos;
+        private long[] latencies = new long[1024];
+
+        /**
+         * Constructor
+         */
+        private Summary() {
+            super();
+        }
+
+        /**
+         * Records the result of a job in this summary
+         * @param result    the job result
+         */
+        private synchronized void add(Result result) {
+            if (count == latencies.length) {
+                this.latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            this.latencies[count++] = result.getLatency(TimeUnit.NANOSECONDS);
+            this.failures += result.error != null ? 1 : 0;
+            this.bytes += result.bytes;
+        }
+
+        /**
+         * Marks this summary as complete once all jobs have been recorded
+         * @return  this summary
+         */
+        private synchronized Summary complete() {
+            this.elapsedNanos = System.nanoTime() - startNanos;
+            this.latencies = Arrays.copyOf(latencies, count);
+            Arrays.sort(latencies);
+            return this;
+        }
+
+        /**
+         * Returns the number of jobs in the batch
+         * @return  the job count
+         */
+        public synchronized int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the number of jobs that failed
+         * @return  the failure count
+         */
+        public synchronized int getFailures() {
+            return failures;
+        }
+
+        /**
+         * Returns the total number of bytes written
+         * @return  the total bytes
+         */
+        public synchronized long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Returns the elapsed time for the batch
+         * @param unit  the time unit
+         * @return      the elapsed time
+         */
+        public synchronized long getElapsed(TimeUnit unit) {
+            return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Returns the throughput of the batch in jobs per second
+         * @return  the jobs per second
+         */
+        public synchronized double getThroughput() {
+            return elapsedNanos > 0 ? count * 1000000000d / elapsedNanos : 0d;
+        }
+
+        /**
+         * Returns the job latency at the percentile specified
+         * @param percentile    the percentile in the range 0-100
+         * @param unit          the time unit
+         * @return              the latency at the percentile
+         */
+        public synchronized long getLatency(double percentile, TimeUnit unit) {
+            if (percentile < 0d || percentile > 100d) {
+                throw new ChartException("The percentile must be in the range 0-100, found " + percentile);
+            } else if (count == 0) {
+                return 0L;
+            } else {
+                final int index = (int)Math.ceil(percentile / 100d * count) - 1;
+                return unit.convert(latencies[Math.max(0, index)], TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s jobs (%s failed) in %sms, %.1f jobs/sec, latency p50=%sms p95=%sms max=%sms",
+                getCount(),
+                getFailures(),
+                getElapsed(TimeUnit.MILLISECONDS),
+                getThroughput(),
+                getLatency(50d, TimeUnit.MILLISECONDS),
+                getLatency(95d, TimeUnit.MILLISECONDS),
+                getLatency(100d, TimeUnit.MILLISECONDS)
+            );
+        }
+    }
+
+}
@@ -15,12 +15,14 @@
  */
 package com.zavtech.morpheus.viz.jfree;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntFunction;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.jfree.data.category.CategoryDataset;
@@ -61,6 +63,15 @@ class JFCatDataset<X extends Comparable,S extends Comparable> extends AbstractDa
     }
 
 
+    /**
+     * Constructor for a detached copy of a dataset that is refreshed from the same source
+     * @param source    the dataset to copy settings from
+     */
+    private JFCatDataset(JFCatDataset<X,S> source) {
+        this(source.refreshHandler);
+    }
+
+
     /**
      * Returns a newly created model using a frame supplier where the domain is presented by the DataFrame row keys
      * @param frameSupplier     the DataFrame supplier for this model
@@ -139,6 +150,34 @@ class JFCatDataset<X extends Comparable,S extends Comparable> extends AbstractDa
     }
 
 
+    /**
+     * Refreshes a detached copy of this dataset on the calling thread, and returns a task that publishes it to this dataset
+     * @return  the task to publish the refreshed state, which should be run on the thread that owns the chart
+     */
+    final Runnable prepareRefresh() {
+        final JFCatDataset<X,S> detached = new JFCatDataset<>(this);
+        return () -> {
+            this.frame = detached.frame;
+            this.colOrdinals = detached.colOrdinals;
+            this.domainType = detached.domainType;
+            this.domainValueFunction = detached.domainValueFunction;
+            this.domainKeys = detached.domainKeys;
+            this.seriesKeys = detached.seriesKeys;
+            this.fireDatasetChanged();
+        };
+    }
+
+
+    /**
+     * Refreshes the datasets specified concurrently on the common ForkJoinPool, then publishes them on the calling thread
+     * @param datasets  the datasets to refresh
+     */
+    static void refreshAll(Collection<? extends JFCatDataset<?,?>> datasets) {
+        final List<Runnable> tasks = datasets.parallelStream().map(JFCatDataset::prepareRefresh).collect(Collectors.toList());
+        tasks.forEach(Runnable::run);
+    }
+
+
     @Override
     public boolean isEmpty() {
         return frame == null || seriesKeys == null || seriesKeys.size() == 0;
@@ -193,6 +232,18 @@ class JFCatDataset<X extends Comparable,S extends Comparable> extends AbstractDa
     }
 
 
+    @Override
+    public XyDataset<X,S> withSnapshot(boolean snapshot) {
+        return this;
+    }
+
+
+    @Override
+    public XyDataset<X,S> withCapacity(int capacity) {
+        return this;
+    }
+
+
     @Override
     public int getRowCount() {
         return isEmpty() ? 0 : seriesKeys.size();
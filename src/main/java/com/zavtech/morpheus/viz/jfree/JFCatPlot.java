@@ -38,6 +38,7 @@ import com.zavtech.morpheus.viz.chart.xy.XyOrient;
 import com.zavtech.morpheus.viz.chart.xy.XyPlot;
 import com.zavtech.morpheus.viz.chart.xy.XyPlotBase;
 import com.zavtech.morpheus.viz.chart.xy.XyRender;
+import com.zavtech.morpheus.viz.chart.xy.XySource;
 import com.zavtech.morpheus.viz.chart.xy.XyTrend;
 
 /**
@@ -203,6 +204,11 @@ class JFCatPlot<X extends Comparable> extends XyPlotBase<X> implements XyPlot<X>
             return index;
         }
 
+        @Override
+        public int add(XySource<X,S> source) {
+            throw new ChartException("Adding an XySource is not supported for category plots");
+        }
+
         @Override
         public XyDataset<X,S> update(int index, DataFrame<X, S> frame) {
             final JFCatDataset<X,S> dataset = JFCatDataset.of(() -> frame);
@@ -219,6 +225,22 @@ class JFCatPlot<X extends Comparable> extends XyPlotBase<X> implements XyPlot<X>
             return dataset;
         }
 
+        @Override
+        public XyDataset<X,S> append(int index, DataFrame<?,S> rows) {
+            throw new ChartException("Appending rows is not supported for category plots");
+        }
+
+        @Override
+        public void refreshAll() {
+            final boolean notify = plot.isNotify();
+            try {
+                plot.setNotify(false);
+                JFCatDataset.refreshAll(datasetMap.values());
+            } finally {
+                plot.setNotify(notify);
+            }
+        }
+
         @Override
         public void remove(int index) {
             final XyDataset<X,?> dataset = datasetMap.remove(index);
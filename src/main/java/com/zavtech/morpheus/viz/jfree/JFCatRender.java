@@ -86,6 +86,12 @@ class JFCatRender implements XyRender {
     }
 
 
+    @Override()
+    public void withDenseLines() {
+        this.withLines(false, false);
+    }
+
+
     @Override()
     public void withSpline(boolean shapes, boolean dashed) {
         throw new UnsupportedOperationException("Not supported for category plots");
@@ -16,14 +16,19 @@
 package com.zavtech.morpheus.viz.jfree;
 
 import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Base64;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.swing.JFrame;
 
 import org.jfree.chart.ChartMouseListener;
@@ -40,11 +45,14 @@ import org.jfree.ui.RectangleInsets;
 
 import com.zavtech.morpheus.viz.chart.Chart;
 import com.zavtech.morpheus.viz.chart.ChartException;
+import com.zavtech.morpheus.viz.chart.ChartImageEncoder;
 import com.zavtech.morpheus.viz.chart.ChartLabel;
 import com.zavtech.morpheus.viz.chart.ChartLegend;
 import com.zavtech.morpheus.viz.chart.ChartOptions;
 import com.zavtech.morpheus.viz.chart.ChartTheme;
 import com.zavtech.morpheus.viz.js.JsCode;
+import com.zavtech.morpheus.viz.util.GzipOutput;
+import com.zavtech.morpheus.viz.util.SvgGraphics2D;
 
 /**
  * A convenience base class for building various types of chart types
@@ -61,6 +69,10 @@ abstract class JFChartBase<P> implements Chart<P>, ChartMouseListener {
     private JFreeChart freeChart;
     private ChartPanel chartPanel;
     private ChartOptions options;
+    private JFRefreshScheduler refreshScheduler;
+    private JFImageCache imageCache;
+    private AtomicLong changeCount = new AtomicLong();
+    private volatile boolean ignoreChanges;
 
 
     /**
@@ -77,6 +89,11 @@ abstract class JFChartBase<P> implements Chart<P>, ChartMouseListener {
         this.chartPanel.setRefreshBuffer(true);
         this.chartPanel.addChartMouseListener(this);
         this.options = new ChartOptions.Default();
+        this.freeChart.addChangeListener(event -> {
+            if (!ignoreChanges) {
+                changeCount.incrementAndGet();
+            }
+        });
     }
 
 
@@ -107,6 +124,15 @@ abstract class JFChartBase<P> implements Chart<P>, ChartMouseListener {
     }
 
 
+    /**
+     * Sets the cache from which images of this chart embedded in generated Javascript are reused
+     * @param imageCache    the image cache, null to render images every time
+     */
+    void setImageCache(JFImageCache imageCache) {
+        this.imageCache = imageCache;
+    }
+
+
     /**
      * Returns the JFreeChart reference for this chart
      * @return  the JFreeChart reference
@@ -203,13 +229,24 @@ abstract class JFChartBase<P> implements Chart<P>, ChartMouseListener {
     @Override
     public Chart writerPng(OutputStream os, int width, int height, boolean transparent) {
         try {
-            if (transparent) {
-                freeChart().setBackgroundPaint(new Color(255, 255, 255, 0));
-                freeChart().setBackgroundImageAlpha(0.0f);
-                freeChart().getPlot().setBackgroundPaint( new Color(255, 255, 255, 0) );
-                freeChart().getPlot().setBackgroundImageAlpha(0f);
+            final ChartImageEncoder encoder = options.getImageEncoder().orElse(null);
+            if (encoder == null) {
+                synchronized (freeChart) {
+                    if (transparent) {
+                        this.makeTransparent();
+                    }
+                    ChartUtilities.writeChartAsPNG(os, freeChart, width, height, transparent, 0);
+                }
+            } else {
+                final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                final Graphics2D graphics = image.createGraphics();
+                try {
+                    this.draw(graphics, width, height, transparent);
+                } finally {
+                    graphics.dispose();
+                }
+                encoder.encode(image, transparent, os);
             }
-            ChartUtilities.writeChartAsPNG(os, freeChart, width, height, transparent, 0);
             return this;
         } catch (Exception ex) {
             throw new ChartException(ex.getMessage(), ex);
@@ -227,37 +264,130 @@ abstract class JFChartBase<P> implements Chart<P>, ChartMouseListener {
 
 
     @Override
-    public void accept(JsCode jsCode, String functionName, String divId) {
+    public Chart writeSvg(File file, int width, int height) {
+        OutputStream os = null;
         try {
-            final String base64Image = toBase64Image();
-            jsCode.newFunction(functionName, func -> {
-                func.write("var divElement = document.getElementById('%s');", divId);
-                func.newLine().write("var imageElement = document.createElement('img');");
-                func.newLine().write("imageElement.setAttribute('src', 'data:image/png;base64, %s');", base64Image);
-                func.newLine().write("imageElement.setAttribute('alt', 'Embedded Chart');");
-                func.newLine().write("imageElement.setAttribute('class', 'chart');");
-                func.newLine().write("divElement.appendChild(imageElement);");
-            });
-        } catch (IOException ex) {
-            throw new ChartException("Failed to generate base64 image of chart", ex);
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists()) {
+                if (!parent.mkdirs()) {
+                    System.err.printf("Unable to create directory for %s", file.getAbsolutePath());
+                }
+            }
+            os = GzipOutput.open(file, GzipOutput.DEFAULT_LEVEL);
+            writeSvg(os, width, height);
+            return this;
+        } catch (ChartException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new ChartException(ex.getMessage(), ex);
+        } finally {
+            try {
+                if (os != null) {
+                    os.close();
+                }
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+
+    @Override
+    public Chart writeSvg(OutputStream os, int width, int height) {
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 1024 * 64);
+            final SvgGraphics2D graphics = new SvgGraphics2D(writer, width, height);
+            this.draw(graphics, width, height, false);
+            graphics.dispose();
+            return this;
+        } catch (Exception ex) {
+            throw new ChartException("Failed to write chart as SVG: " + ex.getMessage(), ex);
+        } finally {
+            try {
+                if (writer != null) {
+                    writer.flush();
+                    writer.close();
+                }
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
         }
     }
 
 
     /**
-     * Returns a base64 encoded string of a PNG image generated from this chart
-     * @return          the base64 encoded image
-     * @throws IOException  if there is an I/O exception
+     * Draws this chart into the graphics context specified, which is serialized per chart as JFreeChart is not thread safe
+     * @param graphics      the graphics context to draw into
+     * @param width         the width of the drawing area
+     * @param height        the height of the drawing area
+     * @param transparent   true to make the chart background transparent
      */
-    String toBase64Image() throws IOException {
-        final double width = this.options().getPreferredSize().map(Dimension::getWidth).orElse(700d);
-        final double height = this.options().getPreferredSize().map(Dimension::getHeight).orElse(400d);
-        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        this.writerPng(baos, (int)width, (int)height, true);
-        final byte[] imageBytes = baos.toByteArray();
-        final Base64.Encoder encoder = Base64.getEncoder();
-        final byte[] base64 = encoder.encode(imageBytes);
-        return new String(base64);
+    void draw(Graphics2D graphics, int width, int height, boolean transparent) {
+        synchronized (freeChart) {
+            if (transparent) {
+                this.makeTransparent();
+            }
+            this.freeChart.draw(graphics, new Rectangle2D.Double(0, 0, width, height), null, null);
+        }
+    }
+
+
+    /**
+     * Makes the chart and plot backgrounds transparent without counting as a change to the chart
+     */
+    private void makeTransparent() {
+        this.ignoreChanges = true;
+        freeChart().setBackgroundPaint(new Color(255, 255, 255, 0));
+        freeChart().setBackgroundImageAlpha(0.0f);
+        freeChart().getPlot().setBackgroundPaint( new Color(255, 255, 255, 0) );
+        freeChart().getPlot().setBackgroundImageAlpha(0f);
+        this.ignoreChanges = false;
+    }
+
+
+    @Override
+    public long version() {
+        return changeCount.get() + options.getVersion();
+    }
+
+
+    @Override
+    public synchronized Chart withLiveRefresh(int maxPerSecond) {
+        if (refreshScheduler != null) {
+            this.refreshScheduler.stop();
+            this.refreshScheduler = null;
+        }
+        if (maxPerSecond > 0) {
+            this.refreshScheduler = new JFRefreshScheduler(freeChart.getPlot(), maxPerSecond);
+            this.refreshScheduler.start();
+        }
+        return this;
+    }
+
+
+    @Override
+    public void accept(JsCode jsCode, String functionName, String divId) {
+        final int width = this.options().getPreferredSize().map(size -> size.width).orElse(700);
+        final int height = this.options().getPreferredSize().map(size -> size.height).orElse(400);
+        jsCode.newFunction(functionName, func -> {
+            func.write("var divElement = document.getElementById('%s');", divId);
+            func.newLine().write("var imageElement = document.createElement('img');");
+            func.newLine().write("imageElement.setAttribute('src', 'data:image/png;base64, ");
+            try (OutputStream os = func.base64()) {
+                if (imageCache != null && imageCache.isEnabled()) {
+                    this.imageCache.write(this, width, height, os);
+                } else {
+                    this.writerPng(os, width, height, true);
+                }
+            } catch (IOException ex) {
+                throw new ChartException("Failed to generate base64 image of chart", ex);
+            }
+            func.write("');");
+            func.newLine().write("imageElement.setAttribute('alt', 'Embedded Chart');");
+            func.newLine().write("imageElement.setAttribute('class', 'chart');");
+            func.newLine().write("divElement.appendChild(imageElement);");
+        });
     }
 
 
@@ -16,6 +16,11 @@
 package com.zavtech.morpheus.viz.jfree;
 
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.security.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -25,6 +30,7 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -32,9 +38,13 @@ import javax.swing.*;
 
 import com.zavtech.morpheus.util.Collect;
 import com.zavtech.morpheus.viz.chart.Chart;
+import com.zavtech.morpheus.viz.chart.ChartException;
 import com.zavtech.morpheus.viz.chart.ChartFactory;
+import com.zavtech.morpheus.viz.chart.ChartScriptCache;
 import com.zavtech.morpheus.viz.chart.pie.PiePlot;
 import com.zavtech.morpheus.viz.chart.xy.XyPlot;
+import com.zavtech.morpheus.viz.html.HtmlCode;
+import com.zavtech.morpheus.viz.util.GzipOutput;
 import com.zavtech.morpheus.viz.js.JsCode;
 
 import org.jfree.chart.axis.CategoryAxis;
@@ -53,6 +63,12 @@ public class JFChartFactory implements ChartFactory {
 
     private static final Set<Class<?>> timeTypeSet = new HashSet<>();
 
+    private boolean lazy;
+    private int compressionLevel = GzipOutput.DEFAULT_LEVEL;
+    private Executor executor;
+    private ChartScriptCache scriptCache = new ChartScriptCache(0, 0L);
+    private JFImageCache imageCache = new JFImageCache(0L, null, 0L);
+
     /**
      * Static initializer
      */
@@ -106,9 +122,97 @@ public class JFChartFactory implements ChartFactory {
 
     @Override
     public String javascript(Chart... charts) {
-        return JsCode.create(jsCode -> {
-            jsCode.newLine().write("window.onload = drawCharts");
-            jsCode.newLine();
+        return JsCode.create(jsCode -> javascript(jsCode, charts));
+    }
+
+
+    @Override
+    public void javascript(Writer writer, Iterable<Chart<?>> charts) {
+        JsCode.create(writer, jsCode -> javascript(jsCode, Collect.asStream(charts).toArray(Chart[]::new)));
+    }
+
+
+    @Override
+    public ChartFactory withScriptCache(int maxEntries, long maxBytes) {
+        this.scriptCache.withLimits(maxEntries, maxBytes);
+        return this;
+    }
+
+
+    @Override
+    public ChartFactory withImageCache(long maxBytes, File directory, long maxDiskBytes) {
+        this.imageCache.withLimits(maxBytes, directory, maxDiskBytes);
+        return this;
+    }
+
+
+    @Override
+    public ChartFactory withExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+
+    @Override
+    public ChartFactory withLazyRendering(boolean lazy) {
+        this.lazy = lazy;
+        return this;
+    }
+
+
+    @Override
+    public ChartFactory withCompressionLevel(int level) {
+        if (level < 0 || level > 9) {
+            throw new ChartException("The compression level must be in the range 0-9, found " + level);
+        } else {
+            this.compressionLevel = level;
+            return this;
+        }
+    }
+
+
+    @Override
+    public File export(File file, int columns, Iterable<Chart<?>> charts) {
+        final Chart[] chartArray = Collect.asStream(charts).toArray(Chart[]::new);
+        try (Writer writer = new OutputStreamWriter(GzipOutput.open(file, compressionLevel), StandardCharsets.UTF_8)) {
+            HtmlCode.createHtml(writer, htmlCode -> {
+                htmlCode.newElement("html", html -> {
+                    html.newElement("head", head -> {
+                        head.newElement("script", script -> {
+                            script.newAttribute("type", "text/javascript");
+                            script.javascript(jsCode -> javascript(jsCode, chartArray));
+                        });
+                    });
+                    final String width = String.valueOf((int)(100d / Math.max(1, columns))) + "%";
+                    html.newElement("body", body -> {
+                        for (int i=0; i<chartArray.length; ++i) {
+                            final String divId = chartArray[i].options().getId().orElse(String.format("chart_%s", i));
+                            body.newElement("div", div -> {
+                                div.newAttribute("id", divId);
+                                div.newAttribute("style", String.format("width:%s;float:left;", width));
+                            });
+                        }
+                    });
+                });
+            });
+            return file;
+        } catch (IOException ex) {
+            throw new ChartException("Failed to export charts to " + file.getAbsolutePath(), ex);
+        }
+    }
+
+
+    /**
+     * Writes Javascript to plot the charts specified to the code provided
+     * @param jsCode    the code to write Javascript to
+     * @param charts    the charts to generate Javascript from
+     */
+    private void javascript(JsCode jsCode, Chart... charts) {
+        jsCode.newLine().write("window.onload = drawCharts");
+        jsCode.newLine();
+        if (lazy) {
+            this.scriptCache.acceptLazyDraw(jsCode, "drawCharts", charts);
+        } else {
             jsCode.newFunction("drawCharts", init -> {
                 jsCode.write("console.info('Writing charts...');");
                 for (int i=0; i<charts.length; ++i) {
@@ -116,14 +220,8 @@ public class JFChartFactory implements ChartFactory {
                     init.write("drawChart_%s();", i);
                 }
             });
-            for (int i=0; i<charts.length; ++i) {
-                final Chart chart = charts[i];
-                final String functionName = String.format("drawChart_%s", i);
-                final String divId = chart.options().getId().orElse(String.format("chart_%s", i));
-                jsCode.newLine().newLine();
-                chart.accept(jsCode, functionName, divId);
-            }
-        });
+        }
+        scriptCache.accept(jsCode, executor, charts);
     }
 
 
@@ -133,7 +231,7 @@ public class JFChartFactory implements ChartFactory {
             final NumberAxis domainAxis = new NumberAxis();
             final NumberAxis rangeAxis = new NumberAxis();
             domainAxis.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
-            final Chart<XyPlot<X>> chart = new JFXyChart<>(domainAxis, rangeAxis, false);
+            final Chart<XyPlot<X>> chart = create(new JFXyChart<>(domainAxis, rangeAxis, false));
             if (configurator != null) {
                 configurator.accept(chart);
             }
@@ -141,7 +239,7 @@ public class JFChartFactory implements ChartFactory {
         } else if (Number.class.isAssignableFrom(domainType)) {
             final NumberAxis domainAxis = new NumberAxis();
             final NumberAxis rangeAxis = new NumberAxis();
-            final Chart<XyPlot<X>> chart = new JFXyChart<>(domainAxis, rangeAxis, false);
+            final Chart<XyPlot<X>> chart = create(new JFXyChart<>(domainAxis, rangeAxis, false));
             if (configurator != null) {
                 configurator.accept(chart);
             }
@@ -149,7 +247,7 @@ public class JFChartFactory implements ChartFactory {
         } else if (isTimeBased(domainType)) {
             final JFDateAxis domainAxis = new JFDateAxis();
             final NumberAxis rangeAxis = new NumberAxis();
-            final Chart<XyPlot<X>> chart = new JFXyChart<>(domainAxis, rangeAxis, false);
+            final Chart<XyPlot<X>> chart = create(new JFXyChart<>(domainAxis, rangeAxis, false));
             if (configurator != null) {
                 configurator.accept(chart);
             }
@@ -157,7 +255,7 @@ public class JFChartFactory implements ChartFactory {
         } else {
             final CategoryAxis domainAxis = new CategoryAxis();
             final NumberAxis rangeAxis = new NumberAxis();
-            final Chart<XyPlot<X>> chart = new JFCatChart<>(domainAxis, rangeAxis, false);
+            final Chart<XyPlot<X>> chart = create(new JFCatChart<>(domainAxis, rangeAxis, false));
             if (configurator != null) {
                 configurator.accept(chart);
             }
@@ -168,7 +266,7 @@ public class JFChartFactory implements ChartFactory {
 
     @Override
     public <X extends Comparable, S extends Comparable> Chart<PiePlot<X, S>> ofPiePlot(boolean is3d, Consumer<Chart<PiePlot<X, S>>> configurator) {
-        final Chart<PiePlot<X,S>> chart = new JFPieChart<>(is3d, true);
+        final Chart<PiePlot<X,S>> chart = create(new JFPieChart<>(is3d, true));
         if (configurator != null) {
             configurator.accept(chart);
         }
@@ -176,6 +274,18 @@ public class JFChartFactory implements ChartFactory {
     }
 
 
+    /**
+     * Attaches the image cache of this factory to a newly created chart
+     * @param chart     the newly created chart
+     * @param <C>       the chart type
+     * @return          the same chart
+     */
+    private <C extends JFChartBase<?>> C create(C chart) {
+        chart.setImageCache(imageCache);
+        return chart;
+    }
+
+
     /**
      * Returns true if the data type is time series related
      * @param type  the data type
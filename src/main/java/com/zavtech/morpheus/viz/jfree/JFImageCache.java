@@ -0,0 +1,412 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.jfree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.zavtech.morpheus.viz.chart.ChartException;
+
+/**
+ * A least recently used cache of encoded chart images, keyed by chart identity and image size, and bounded by total bytes.
+ *
+ * A cached image is reused for as long as the chart version is unchanged, otherwise the chart is rendered again and
+ * the image replaced. Images evicted from memory are spilled to files in an optional directory, from which they are
+ * streamed on the next hit, and spilled files are deleted least recently used first once they exceed the disk budget.
+ * Charts are only weakly referenced, so the cache never keeps a chart reachable, and the images of charts that have been
+ * garbage collected are released on the next access. Spilled files are only meaningful to this cache, and are deleted
+ * when replaced, evicted or cleared. A cache with no memory budget and no spill directory, which is the default,
+ * renders every image.
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+class JFImageCache {
+
+    private static final AtomicLong fileCount = new AtomicLong();
+
+    private long maxBytes;
+    private long maxDiskBytes;
+    private long totalBytes;
+    private long diskBytes;
+    private File directory;
+    private Map<Key,Entry> memoryMap = new LinkedHashMap<>(16, 0.75f, true);
+    private Map<Key,Entry> diskMap = new LinkedHashMap<>(16, 0.75f, true);
+    private ReferenceQueue<JFChartBase<?>> collected = new ReferenceQueue<>();
+
+
+    /**
+     * Constructor
+     * @param maxBytes      the maximum bytes of images held in memory
+     * @param directory     the directory to spill evicted images to, null to discard them
+     * @param maxDiskBytes  the maximum bytes of images spilled to the directory
+     */
+    JFImageCache(long maxBytes, File directory, long maxDiskBytes) {
+        this.withLimits(maxBytes, directory, maxDiskBytes);
+    }
+
+
+    /**
+     * Sets the memory budget, spill directory and disk budget for this cache, evicting images as required
+     * @param maxBytes      the maximum bytes of images held in memory, zero to hold none
+     * @param directory     the directory to spill evicted images to, null to discard them
+     * @param maxDiskBytes  the maximum bytes of images spilled to the directory
+     * @return              this cache
+     */
+    JFImageCache withLimits(long maxBytes, File directory, long maxDiskBytes) {
+        if (maxBytes < 0) {
+            throw new ChartException("The maximum bytes for a chart image cache must be >= 0, found " + maxBytes);
+        } else if (maxDiskBytes < 0) {
+            throw new ChartException("The maximum disk bytes for a chart image cache must be >= 0, found " + maxDiskBytes);
+        } else if (directory != null && !directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new ChartException("Unable to create directory for chart image cache: " + directory.getAbsolutePath());
+        } else {
+            final List<File> deleted = new ArrayList<>();
+            synchronized (this) {
+                if (directory == null || !directory.equals(this.directory)) {
+                    this.diskMap.values().forEach(entry -> deleted.add(entry.file));
+                    this.diskMap.clear();
+                    this.diskBytes = 0L;
+                }
+                this.maxBytes = maxBytes;
+                this.maxDiskBytes = maxDiskBytes;
+                this.directory = directory;
+                deleted.addAll(evictDisk());
+            }
+            deleted.forEach(File::delete);
+            this.spill(evict());
+            return this;
+        }
+    }
+
+
+    /**
+     * Returns true if this cache can hold images in memory or on disk
+     * @return  true if this cache is enabled
+     */
+    synchronized boolean isEnabled() {
+        return maxBytes > 0 || directory != null;
+    }
+
+
+    /**
+     * Removes all cached images, including any spilled to disk
+     */
+    void clear() {
+        final List<File> deleted = new ArrayList<>();
+        synchronized (this) {
+            this.diskMap.values().forEach(entry -> deleted.add(entry.file));
+            this.diskMap.clear();
+            this.memoryMap.clear();
+            this.totalBytes = 0L;
+            this.diskBytes = 0L;
+        }
+        deleted.forEach(File::delete);
+    }
+
+
+    /**
+     * Writes the PNG image of the chart to the output stream, reusing the cached image if the chart is unchanged
+     * @param chart     the chart to write
+     * @param width     the image width
+     * @param height    the image height
+     * @param os        the output stream to write to, which is not closed
+     * @throws IOException  if there is an I/O exception
+     */
+    void write(JFChartBase<?> chart, int width, int height, OutputStream os) throws IOException {
+        final Key key = new Key(chart, width, height, collected);
+        final long version = chart.version();
+        final Entry cached = get(key);
+        if (cached != null && cached.version == version) {
+            if (cached.bytes != null) {
+                os.write(cached.bytes);
+                return;
+            } else {
+                try {
+                    final byte[] bytes = Files.readAllBytes(cached.file.toPath());
+                    os.write(bytes);
+                    return;
+                } catch (IOException ex) {
+                    this.remove(key, cached);
+                }
+            }
+        }
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        chart.writerPng(baos, width, height, true);
+        final byte[] bytes = baos.toByteArray();
+        this.put(key, new Entry(version, bytes));
+        os.write(bytes);
+    }
+
+
+    /**
+     * Returns the cached entry for the key, from memory or disk
+     * @param key   the entry key
+     * @return      the cached entry, null if no match
+     */
+    private Entry get(Key key) {
+        final List<File> deleted = new ArrayList<>();
+        final Entry entry;
+        synchronized (this) {
+            deleted.addAll(purge());
+            final Entry memory = memoryMap.get(key);
+            entry = memory != null ? memory : diskMap.get(key);
+        }
+        deleted.forEach(File::delete);
+        return entry;
+    }
+
+
+    /**
+     * Removes a spilled entry whose file could no longer be read
+     * @param key   the entry key
+     * @param entry the entry to remove
+     */
+    private void remove(Key key, Entry entry) {
+        synchronized (this) {
+            if (diskMap.remove(key, entry)) {
+                this.diskBytes -= entry.length;
+            }
+        }
+        entry.file.delete();
+    }
+
+
+    /**
+     * Caches the entry against the key, replacing any prior version and spilling evicted entries to disk
+     * @param key   the entry key
+     * @param entry the entry to cache
+     */
+    private void put(Key key, Entry entry) {
+        final List<File> deleted = new ArrayList<>();
+        synchronized (this) {
+            deleted.addAll(purge());
+            if (isEnabled()) {
+                final Entry replaced = diskMap.remove(key);
+                if (replaced != null) {
+                    this.diskBytes -= replaced.length;
+                    deleted.add(replaced.file);
+                }
+                final Entry prior = memoryMap.put(key, entry);
+                this.totalBytes += entry.length - (prior != null ? prior.length : 0L);
+            }
+        }
+        deleted.forEach(File::delete);
+        this.spill(evict());
+    }
+
+
+    /**
+     * Removes the entries of charts that have been garbage collected, which must be called while holding the cache lock
+     * @return  the spill files of removed entries, to be deleted outside of the cache lock
+     */
+    private List<File> purge() {
+        final List<File> deleted = new ArrayList<>();
+        Reference<? extends JFChartBase<?>> reference;
+        while ((reference = collected.poll()) != null) {
+            final Entry memory = memoryMap.remove(reference);
+            if (memory != null) {
+                this.totalBytes -= memory.length;
+            }
+            final Entry disk = diskMap.remove(reference);
+            if (disk != null) {
+                this.diskBytes -= disk.length;
+                deleted.add(disk.file);
+            }
+        }
+        return deleted;
+    }
+
+
+    /**
+     * Removes least recently used entries from memory until the cache is within its memory budget
+     * @return  the map of evicted entries
+     */
+    private synchronized Map<Key,Entry> evict() {
+        final Map<Key,Entry> evicted = new LinkedHashMap<>();
+        final Iterator<Map.Entry<Key,Entry>> iterator = memoryMap.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            final Map.Entry<Key,Entry> eldest = iterator.next();
+            this.totalBytes -= eldest.getValue().length;
+            evicted.put(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+        }
+        return evicted;
+    }
+
+
+    /**
+     * Removes least recently used spilled entries until the cache is within its disk budget, which must be called while holding the cache lock
+     * @return  the spill files of evicted entries, to be deleted outside of the cache lock
+     */
+    private List<File> evictDisk() {
+        final List<File> deleted = new ArrayList<>();
+        final Iterator<Entry> iterator = diskMap.values().iterator();
+        while (diskBytes > maxDiskBytes && iterator.hasNext()) {
+            final Entry eldest = iterator.next();
+            this.diskBytes -= eldest.length;
+            deleted.add(eldest.file);
+            iterator.remove();
+        }
+        return deleted;
+    }
+
+
+    /**
+     * Writes evicted entries to the spill directory, if any, outside of the cache lock
+     * An entry is only registered once written, and only if the chart has not been cached again in the meantime.
+     * @param evicted   the evicted entries
+     */
+    private void spill(Map<Key,Entry> evicted) {
+        final File directory = getDirectory();
+        if (directory != null) {
+            evicted.forEach((key, entry) -> {
+                if (key.get() != null && entry.length <= getMaxDiskBytes()) {
+                    final File file = new File(directory, "chart_" + fileCount.incrementAndGet() + ".png");
+                    final List<File> deleted = new ArrayList<>();
+                    try {
+                        Files.write(file.toPath(), entry.bytes);
+                        synchronized (this) {
+                            final boolean registered = directory.equals(this.directory) && !memoryMap.containsKey(key) && !diskMap.containsKey(key);
+                            if (!registered) {
+                                deleted.add(file);
+                            } else {
+                                this.diskMap.put(key, new Entry(entry.version, file, entry.length));
+                                this.diskBytes += entry.length;
+                                deleted.addAll(evictDisk());
+                            }
+                        }
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
+                        deleted.add(file);
+                    }
+                    deleted.forEach(File::delete);
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Returns the spill directory for this cache
+     * @return  the spill directory, null if none
+     */
+    private synchronized File getDirectory() {
+        return directory;
+    }
+
+
+    /**
+     * Returns the disk budget for this cache
+     * @return  the maximum bytes of images spilled to disk
+     */
+    private synchronized long getMaxDiskBytes() {
+        return maxDiskBytes;
+    }
+
+
+    /**
+     * The cache key, which matches charts by identity without keeping them reachable
+     * A key whose chart has been collected is only equal to itself, so it can still be used to remove its entries.
+     */
+    private static class Key extends WeakReference<JFChartBase<?>> {
+
+        private int width;
+        private int height;
+        private int hashCode;
+
+        /**
+         * Constructor
+         * @param chart     the chart
+         * @param width     the image width
+         * @param height    the image height
+         * @param queue     the queue the key is added to once the chart is collected
+         */
+        Key(JFChartBase<?> chart, int width, int height, ReferenceQueue<JFChartBase<?>> queue) {
+            super(chart, queue);
+            this.width = width;
+            this.height = height;
+            this.hashCode = 31 * (31 * System.identityHashCode(chart) + width) + height;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            } else if (!(other instanceof Key)) {
+                return false;
+            } else {
+                final Key key = (Key)other;
+                final JFChartBase<?> chart = get();
+                return chart != null && chart == key.get() && width == key.width && height == key.height;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+
+    /**
+     * A cached image held either in memory or in a spill file, along with the chart version it was rendered from
+     */
+    private static class Entry {
+
+        private long version;
+        private long length;
+        private byte[] bytes;
+        private File file;
+
+        /**
+         * Constructor
+         * @param version   the chart version
+         * @param bytes     the encoded image
+         */
+        Entry(long version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+            this.length = bytes.length;
+        }
+
+        /**
+         * Constructor
+         * @param version   the chart version
+         * @param file      the file holding the encoded image
+         * @param length    the length of the encoded image
+         */
+        Entry(long version, File file, long length) {
+            this.version = version;
+            this.file = file;
+            this.length = length;
+        }
+    }
+
+}
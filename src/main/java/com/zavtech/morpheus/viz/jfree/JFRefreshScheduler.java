@@ -0,0 +1,225 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.jfree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.SwingUtilities;
+
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.Plot;
+import org.jfree.chart.plot.XYPlot;
+
+import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.frame.DataFrameEvent;
+import com.zavtech.morpheus.frame.DataFrameListener;
+import com.zavtech.morpheus.viz.chart.xy.XyDataset;
+
+/**
+ * A scheduler that refreshes the datasets of a JFreeChart plot in response to DataFrame events at a bounded rate
+ *
+ * Events that arrive while a refresh is pending are coalesced into that refresh. Datasets are rebuilt on a background
+ * thread, and the results for all datasets are published on the Swing event dispatch thread in a single hand-off,
+ * with plot notifications suspended so the chart sees one change. If the display falls behind, only the latest
+ * result is published. XY datasets are always published as snapshots, since the frame may still be written to while
+ * the chart paints.
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+class JFRefreshScheduler implements DataFrameListener {
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "Morpheus-Chart-Refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Plot plot;
+    private long intervalNanos;
+    private volatile long lastRefresh;
+    private volatile boolean stopped;
+    private AtomicBoolean pending = new AtomicBoolean();
+    private AtomicReference<List<Runnable>> publication = new AtomicReference<>();
+    private Map<DataFrame<?,?>,Boolean> frames = new IdentityHashMap<>();
+
+
+    /**
+     * Constructor
+     * @param plot          the JFreeChart plot whose datasets should be refreshed
+     * @param maxPerSecond  the maximum number of refreshes per second
+     */
+    JFRefreshScheduler(Plot plot, int maxPerSecond) {
+        this.plot = plot;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, maxPerSecond);
+        this.lastRefresh = System.nanoTime() - intervalNanos;
+    }
+
+
+    /**
+     * Starts listening to events from the DataFrames currently plotted
+     */
+    synchronized void start() {
+        this.stopped = false;
+        this.subscribe();
+    }
+
+
+    /**
+     * Stops listening to DataFrame events, restoring their prior enabled state, and discards any pending refresh
+     */
+    synchronized void stop() {
+        this.stopped = true;
+        this.frames.forEach(this::unsubscribe);
+        this.frames.clear();
+    }
+
+
+    @Override
+    public void onDataFrameEvent(DataFrameEvent event) {
+        if (!stopped && pending.compareAndSet(false, true)) {
+            final long delay = Math.max(0L, lastRefresh + intervalNanos - System.nanoTime());
+            executor.schedule(this::refresh, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+
+    /**
+     * Rebuilds all datasets on the calling thread and hands the results to the event dispatch thread
+     */
+    private void refresh() {
+        try {
+            this.pending.set(false);
+            this.lastRefresh = System.nanoTime();
+            if (!stopped) {
+                final List<Runnable> tasks = new ArrayList<>();
+                for (XyDataset<?,?> dataset : datasets()) {
+                    if (dataset instanceof JFXyDataset) {
+                        tasks.add(((JFXyDataset<?,?>)dataset).prepareRefresh(true));
+                    } else if (dataset instanceof JFCatDataset) {
+                        tasks.add(((JFCatDataset<?,?>)dataset).prepareRefresh());
+                    } else {
+                        tasks.add(dataset::refresh);
+                    }
+                }
+                if (publication.getAndSet(tasks) == null) {
+                    SwingUtilities.invokeLater(this::publish);
+                }
+                this.subscribe();
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+
+    /**
+     * Publishes the most recently prepared refresh, which must be called on the event dispatch thread
+     */
+    private void publish() {
+        final List<Runnable> tasks = publication.getAndSet(null);
+        if (tasks != null && !stopped) {
+            final boolean notify = plot.isNotify();
+            try {
+                this.plot.setNotify(false);
+                tasks.forEach(Runnable::run);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            } finally {
+                this.plot.setNotify(notify);
+            }
+        }
+    }
+
+
+    /**
+     * Registers this scheduler with any plotted DataFrames it is not yet listening to, and releases frames no longer plotted
+     * Datasets backed by an XySource have no user frame to listen to, and asking them for one would materialize their
+     * entire contents, so they are skipped.
+     */
+    private synchronized void subscribe() {
+        if (!stopped) {
+            final Set<DataFrame<?,?>> plotted = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (XyDataset<?,?> dataset : datasets()) {
+                if (!(dataset instanceof JFXyDataset) || !((JFXyDataset<?,?>)dataset).hasSource()) {
+                    final DataFrame<?,?> frame = dataset.frame();
+                    if (frame != null && plotted.add(frame) && !frames.containsKey(frame)) {
+                        this.frames.put(frame, frame.events().isEnabled());
+                        frame.events().setEnabled(true);
+                        frame.events().addDataFrameListener(this);
+                    }
+                }
+            }
+            final Iterator<Map.Entry<DataFrame<?,?>,Boolean>> iterator = frames.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<DataFrame<?,?>,Boolean> entry = iterator.next();
+                if (!plotted.contains(entry.getKey())) {
+                    this.unsubscribe(entry.getKey(), entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Removes this scheduler as a listener of the frame, and restores the enabled state of its events
+     * @param frame     the frame to stop listening to
+     * @param enabled   the enabled state of frame events before this scheduler subscribed
+     */
+    private void unsubscribe(DataFrame<?,?> frame, boolean enabled) {
+        frame.events().removeDataFrameListener(this);
+        frame.events().setEnabled(enabled);
+    }
+
+
+    /**
+     * Returns the Morpheus datasets currently attached to the plot
+     * @return  the list of datasets for plot
+     */
+    private List<XyDataset<?,?>> datasets() {
+        final List<XyDataset<?,?>> datasets = new ArrayList<>();
+        if (plot instanceof XYPlot) {
+            final XYPlot xyPlot = (XYPlot)plot;
+            for (int i=0; i<xyPlot.getDatasetCount(); ++i) {
+                final Object dataset = xyPlot.getDataset(i);
+                if (dataset instanceof XyDataset) {
+                    datasets.add((XyDataset<?,?>)dataset);
+                }
+            }
+        } else if (plot instanceof CategoryPlot) {
+            final CategoryPlot categoryPlot = (CategoryPlot)plot;
+            for (int i=0; i<categoryPlot.getDatasetCount(); ++i) {
+                final Object dataset = categoryPlot.getDataset(i);
+                if (dataset instanceof XyDataset) {
+                    datasets.add((XyDataset<?,?>)dataset);
+                }
+            }
+        }
+        return datasets;
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.jfree;
+
+import org.jfree.data.general.DatasetChangeEvent;
+
+/**
+ * A DatasetChangeEvent raised when rows are appended to a JFXyDataset, describing only the affected item range
+ *
+ * Listeners that are not aware of this event treat it like any other change, while listeners that are can update incrementally.
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+class JFXyAppendEvent extends DatasetChangeEvent {
+
+    private int firstItem;
+    private int lastItem;
+    private int evicted;
+
+
+    /**
+     * Constructor
+     * @param dataset   the dataset that was appended to
+     * @param firstItem the index of the first appended item after eviction
+     * @param lastItem  the index of the last appended item after eviction
+     * @param evicted   the number of items evicted from the front of the dataset
+     */
+    JFXyAppendEvent(JFXyDataset<?,?> dataset, int firstItem, int lastItem, int evicted) {
+        super(dataset, dataset);
+        this.firstItem = firstItem;
+        this.lastItem = lastItem;
+        this.evicted = evicted;
+    }
+
+
+    /**
+     * Returns the index of the first appended item, expressed after eviction
+     * @return  the index of the first appended item
+     */
+    int getFirstItem() {
+        return firstItem;
+    }
+
+
+    /**
+     * Returns the index of the last appended item, expressed after eviction
+     * @return  the index of the last appended item
+     */
+    int getLastItem() {
+        return lastItem;
+    }
+
+
+    /**
+     * Returns the number of items evicted from the front of the dataset to make room for the appended items
+     * @return  the number of evicted items
+     */
+    int getEvicted() {
+        return evicted;
+    }
+}
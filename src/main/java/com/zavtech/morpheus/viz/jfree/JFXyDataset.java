@@ -20,21 +20,34 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntFunction;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import org.jfree.data.DomainInfo;
+import org.jfree.data.DomainOrder;
+import org.jfree.data.Range;
+import org.jfree.data.RangeInfo;
+import org.jfree.data.general.DatasetChangeEvent;
 import org.jfree.data.xy.AbstractXYDataset;
 import org.jfree.data.xy.IntervalXYDataset;
 import org.jfree.data.xy.TableXYDataset;
+import org.jfree.data.xy.XYDomainInfo;
+import org.jfree.data.xy.XYRangeInfo;
 import org.jfree.data.xy.XYZDataset;
 
 import com.zavtech.morpheus.array.Array;
 import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.viz.chart.ChartException;
+import com.zavtech.morpheus.viz.chart.xy.XyBuffer;
 import com.zavtech.morpheus.viz.chart.xy.XyDataset;
+import com.zavtech.morpheus.viz.chart.xy.XySource;
 
 /**
  * An implementation of the Morpheus XyDataset interface and various JFreeChart interfaces to support plotting of a DataFrame in JFreeChart
@@ -43,10 +56,12 @@ import com.zavtech.morpheus.viz.chart.xy.XyDataset;
  *
  * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
  */
-class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYDataset implements XyDataset<X,S>, IntervalXYDataset, TableXYDataset, XYZDataset {
+class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYDataset implements XyDataset<X,S>, IntervalXYDataset, TableXYDataset, XYZDataset, DomainInfo, RangeInfo, XYDomainInfo, XYRangeInfo {
 
     private static final Double NAN = Double.NaN;
+    private static final int PARALLEL_THRESHOLD = 100000;
 
+    private S domainKey;
     private DataFrame<?,S> frame;
     private Array<Integer> colOrdinals;
     private Supplier<Class<X>> domainType;
@@ -54,18 +69,51 @@ class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYD
     private Consumer<JFXyDataset<X,S>> refreshHandler;
     private Function<X,X> lowerDomainIntervalFunction;
     private Function<X,X> upperDomainIntervalFunction;
+    private int version;
+    private boolean snapshot;
+    private double[] domainValues;
+    private double[] startValues;
+    private double[] endValues;
+    private double[][] rangeValues;
+    private XySource<X,S> source;
+    private int capacity = XyBuffer.DEFAULT_CAPACITY;
+    private double[] domainBounds;
+    private double[][] seriesBounds;
+    private boolean domainAscending;
 
 
     /**
      * Constructor
+     * @param domainKey         the column key for the domain, null if the domain is presented by the row keys
      * @param refreshHandler    the refresh handler for this model
      */
-    private JFXyDataset(Consumer<JFXyDataset<X,S>> refreshHandler) {
+    private JFXyDataset(S domainKey, Consumer<JFXyDataset<X,S>> refreshHandler) {
+        this.domainKey = domainKey;
         this.refreshHandler = refreshHandler;
         this.refresh();
     }
 
 
+    /**
+     * Constructor for a detached copy of a dataset that is refreshed with its bounds computed
+     * @param original  the dataset to copy settings from
+     * @param snapshot  true to capture the frame values in primitive arrays
+     */
+    private JFXyDataset(JFXyDataset<X,S> original, boolean snapshot) {
+        this.snapshot = snapshot;
+        this.domainKey = original.domainKey;
+        this.capacity = original.capacity;
+        this.refreshHandler = original.refreshHandler;
+        this.lowerDomainIntervalFunction = original.lowerDomainIntervalFunction;
+        this.upperDomainIntervalFunction = original.upperDomainIntervalFunction;
+        this.refresh();
+        if (!isEmpty()) {
+            this.domainBounds();
+            this.seriesBounds();
+        }
+    }
+
+
     /**
      * Returns a newly created model using a frame supplier where the domain is presented by the DataFrame row keys
      * @param frameSupplier     the DataFrame supplier for this model
@@ -74,7 +122,7 @@ class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYD
      * @return                  the newly created model
      */
     static <X extends Comparable,S extends Comparable> JFXyDataset<X,S> of(Supplier<DataFrame<X,S>> frameSupplier) {
-        return new JFXyDataset<>(dataset -> {
+        return new JFXyDataset<>(null, dataset -> {
             try {
                 final DataFrame<X,S> frame = frameSupplier.get();
                 if (frame != null) {
@@ -101,7 +149,7 @@ class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYD
      */
     @SuppressWarnings("unchecked")
     static <X extends Comparable,S extends Comparable> JFXyDataset<X,S> of(S domainAxisKey, Supplier<DataFrame<?,S>> frameSupplier) {
-        return new JFXyDataset<>(dataset -> {
+        return new JFXyDataset<>(domainAxisKey, dataset -> {
             try {
                 final DataFrame<?,S> frame = frameSupplier.get();
                 if (frame != null) {
@@ -119,6 +167,18 @@ class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYD
     }
 
 
+    /**
+     * Returns a newly created model that reads directly from the XySource specified
+     * @param source    the source of domain and series values
+     * @param <X>       the domain key type
+     * @param <S>       the series key type
+     * @return          the newly created model
+     */
+    static <X extends Comparable,S extends Comparable> JFXyDataset<X,S> of(XySource<X,S> source) {
+        return new JFXyDataset<>(null, dataset -> dataset.update(source));
+    }
+
+
     /**
      * Updates this model with the DataFrame, series column ordinals and domain value function
      * @param frame                 the DataFrame to accept
@@ -127,32 +187,230 @@ class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYD
      */
     private void update(DataFrame<?,S> frame, Array<Integer> colOrdinals, Supplier<Class<X>> domainType, IntFunction<X> domainValueFunction) {
         try {
+            this.source = null;
             this.frame = frame;
             this.domainType = domainType;
             this.colOrdinals = colOrdinals;
             this.domainValueFunction = domainValueFunction;
+            this.takeSnapshot();
         } finally {
             fireDatasetChanged();
         }
     }
 
 
+    /**
+     * Updates this model to read from the XySource specified
+     * @param source    the source of domain and series values
+     */
+    private void update(XySource<X,S> source) {
+        try {
+            this.source = source;
+            this.frame = null;
+            this.colOrdinals = null;
+            this.domainType = source::keyType;
+            this.domainValueFunction = null;
+            this.takeSnapshot();
+        } finally {
+            fireDatasetChanged();
+        }
+    }
+
+
+    /**
+     * Captures the domain and series values of the current frame in primitive arrays if snapshot mode is enabled
+     * This avoids repeated domain function calls, type conversion and boxing on each access from JFreeChart
+     */
+    private void takeSnapshot() {
+        if (!snapshot || isEmpty() || source != null) {
+            this.domainValues = null;
+            this.startValues = null;
+            this.endValues = null;
+            this.rangeValues = null;
+        } else {
+            final int rowCount = frame.rowCount();
+            final int seriesCount = colOrdinals.length();
+            final double[] domainValues = new double[rowCount];
+            final double[][] rangeValues = new double[seriesCount][rowCount];
+            for (int i=0; i<rowCount; ++i) {
+                final X domainValue = domainValueFunction.apply(i);
+                domainValues[i] = toNumber(domainValue).doubleValue();
+            }
+            for (int j=0; j<seriesCount; ++j) {
+                final int colOrdinal = colOrdinals.getInt(j);
+                final double[] values = rangeValues[j];
+                for (int i=0; i<rowCount; ++i) {
+                    values[i] = frame.data().getDouble(i, colOrdinal);
+                }
+            }
+            this.domainValues = domainValues;
+            this.rangeValues = rangeValues;
+            this.startValues = lowerDomainIntervalFunction != null ? intervalValues(lowerDomainIntervalFunction) : domainValues;
+            this.endValues = upperDomainIntervalFunction != null ? intervalValues(upperDomainIntervalFunction) : domainValues;
+        }
+    }
+
+
+    /**
+     * Returns an array of domain interval values computed by applying the function to each domain value
+     * @param intervalFunction  the domain interval function
+     * @return                  the array of domain interval values
+     */
+    private double[] intervalValues(Function<X,X> intervalFunction) {
+        final int rowCount = frame.rowCount();
+        final double[] values = new double[rowCount];
+        for (int i=0; i<rowCount; ++i) {
+            final X domainValue = domainValueFunction.apply(i);
+            final X intervalValue = intervalFunction.apply(domainValue);
+            values[i] = toNumber(intervalValue).doubleValue();
+        }
+        return values;
+    }
+
+
+    /**
+     * Appends rows to this dataset, switching it to a ring buffer of the configured capacity on the first append
+     * Listeners are notified with a JFXyAppendEvent that describes the appended item range and evicted item count.
+     * @param rows  the DataFrame of rows to append, keyed the same way as this dataset
+     */
+    @SuppressWarnings("unchecked")
+    final void append(DataFrame<?,S> rows) {
+        if (rows != null && rows.rowCount() > 0) {
+            if (source == null) {
+                final Class<X> domainClass = isEmpty() ? (Class<X>)(domainKey != null ? rows.cols().type(domainKey) : rows.rows().keyType()) : domainType();
+                final Iterable<S> seriesKeys = isEmpty() ? rows.cols().keys().filter(k -> !k.equals(domainKey)).collect(Collectors.toList()) : colOrdinals.map(v -> frame.cols().key(v.getInt()));
+                final XyBuffer<X,S> buffer = new XyBuffer<>(capacity, domainClass, seriesKeys, v -> toNumber(v).doubleValue());
+                if (!isEmpty()) {
+                    buffer.append(frame, domainValueFunction);
+                }
+                this.source = buffer;
+                this.frame = null;
+                this.colOrdinals = null;
+                this.domainValueFunction = null;
+                this.domainType = buffer::keyType;
+                this.domainBounds = null;
+                this.seriesBounds = null;
+                this.takeSnapshot();
+            } else if (!(source instanceof XyBuffer)) {
+                throw new ChartException("Rows cannot be appended to a dataset backed by " + source.getClass().getSimpleName());
+            }
+            final XyBuffer<X,S> buffer = (XyBuffer<X,S>)source;
+            final int rowCount = Math.min(rows.rowCount(), buffer.capacity());
+            this.evictBounds(buffer.evictions(rows.rowCount()));
+            final int evicted = buffer.append(rows, keyFunction(rows));
+            final int size = buffer.size();
+            this.extendBounds(size - rowCount, size - 1);
+            this.version++;
+            this.notifyListeners(new JFXyAppendEvent(this, size - rowCount, size - 1, evicted));
+        }
+    }
+
+
+    /**
+     * Returns a function that yields the domain key for a row ordinal of a frame keyed the same way as this dataset
+     * @param rows  the DataFrame of rows
+     * @return      the domain key function for rows
+     */
+    @SuppressWarnings("unchecked")
+    private IntFunction<X> keyFunction(DataFrame<?,S> rows) {
+        if (domainKey == null) {
+            return rowOrdinal -> (X)rows.rows().key(rowOrdinal);
+        } else {
+            final int domainColOrdinal = rows.cols().ordinalOf(domainKey);
+            return rowOrdinal -> rows.data().getValue(rowOrdinal, domainColOrdinal);
+        }
+    }
+
+
     @Override
     public void refresh() {
         this.refreshHandler.accept(this);
     }
 
 
+    /**
+     * Refreshes a detached copy of this dataset on the calling thread, following the snapshot setting of this dataset
+     * @return  the task to publish the refreshed state, which should be run on the thread that owns the chart
+     */
+    final Runnable prepareRefresh() {
+        return prepareRefresh(snapshot);
+    }
+
+
+    /**
+     * Refreshes a detached copy of this dataset on the calling thread, and returns a task that publishes it to this dataset
+     * The expensive work of reading the frame, taking a snapshot and computing bounds happens here, so the returned task
+     * only swaps state and fires a single change event. Datasets backed by an XySource, such as those being appended to, are left as is.
+     * A snapshot should be forced when the frame may be written to while the chart paints, otherwise the snapshot setting
+     * of this dataset should be used. Either way, the snapshot setting of this dataset is left unchanged.
+     * @param snapshot  true to publish values captured in primitive arrays, false to publish views over the frame
+     * @return          the task to publish the refreshed state, which should be run on the thread that owns the chart
+     */
+    final Runnable prepareRefresh(boolean snapshot) {
+        if (source != null) {
+            return () -> {};
+        } else {
+            final JFXyDataset<X,S> detached = new JFXyDataset<>(this, snapshot);
+            return () -> {
+                this.source = null;
+                this.frame = detached.frame;
+                this.colOrdinals = detached.colOrdinals;
+                this.domainType = detached.domainType;
+                this.domainValueFunction = detached.domainValueFunction;
+                this.domainValues = detached.domainValues;
+                this.startValues = detached.startValues;
+                this.endValues = detached.endValues;
+                this.rangeValues = detached.rangeValues;
+                this.domainBounds = detached.domainBounds;
+                this.seriesBounds = detached.seriesBounds;
+                this.domainAscending = detached.domainAscending;
+                this.version++;
+                this.notifyListeners(new DatasetChangeEvent(this, this));
+            };
+        }
+    }
+
+
+    /**
+     * Refreshes the datasets specified concurrently on the common ForkJoinPool, then publishes them on the calling thread
+     * Each dataset is rebuilt as a detached copy in parallel, and the results are applied in order once all are ready.
+     * Each dataset keeps its own snapshot setting, so datasets that read the frame directly are not copied.
+     * @param datasets  the datasets to refresh
+     */
+    static void refreshAll(Collection<? extends JFXyDataset<?,?>> datasets) {
+        final List<Runnable> tasks = datasets.parallelStream().map(JFXyDataset::prepareRefresh).collect(Collectors.toList());
+        tasks.forEach(Runnable::run);
+    }
+
+
+    /**
+     * Returns true if this dataset reads from an XySource, such as a ring buffer of appended rows, rather than a user frame
+     * @return  true if backed by an XySource
+     */
+    final boolean hasSource() {
+        return source != null;
+    }
+
+
     @Override
     public final boolean isEmpty() {
-        return frame == null || frame.rowCount() == 0 || colOrdinals == null || colOrdinals.length() == 0;
+        if (source != null) {
+            return source.isEmpty() || source.seriesCount() == 0;
+        } else {
+            return frame == null || frame.rowCount() == 0 || colOrdinals == null || colOrdinals.length() == 0;
+        }
     }
 
 
     @Override
     public final void clear(boolean notify) {
+        this.source = null;
         this.frame = null;
         this.colOrdinals = null;
+        this.domainValues = null;
+        this.startValues = null;
+        this.endValues = null;
+        this.rangeValues = null;
         if (notify) {
             fireDatasetChanged();
         }
@@ -168,51 +426,100 @@ class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYD
     @Override
     @SuppressWarnings("unchecked")
     public final <R> DataFrame<R,S> frame() {
-        return (DataFrame<R,S>)frame;
+        return source != null ? (DataFrame<R,S>)source.frame() : (DataFrame<R,S>)frame;
     }
 
 
     @Override
     public final IntFunction<X> domainFunction() {
-        return domainValueFunction;
+        return source != null ? source::key : domainValueFunction;
     }
 
 
     @Override
     public final boolean contains(S seriesKey) {
-        return !isEmpty() && frame.cols().contains(seriesKey);
+        if (source != null) {
+            return source.seriesIndex(seriesKey) >= 0;
+        } else {
+            return !isEmpty() && frame.cols().contains(seriesKey);
+        }
     }
 
 
     @Override
     public final XyDataset<X,S> withLowerDomainInterval(Function<X,X> lowerIntervalFunction) {
+        this.domainBounds = null;
         this.lowerDomainIntervalFunction = lowerIntervalFunction;
+        if (domainValues != null) {
+            this.startValues = lowerIntervalFunction != null ? intervalValues(lowerIntervalFunction) : domainValues;
+        }
         return this;
     }
 
 
     @Override
     public final XyDataset<X,S> withUpperDomainInterval(Function<X,X> upperIntervalFunction) {
+        this.domainBounds = null;
         this.upperDomainIntervalFunction = upperIntervalFunction;
-        return null;
+        if (domainValues != null) {
+            this.endValues = upperIntervalFunction != null ? intervalValues(upperIntervalFunction) : domainValues;
+        }
+        return this;
+    }
+
+
+    @Override
+    public final XyDataset<X,S> withSnapshot(boolean snapshot) {
+        if (this.snapshot != snapshot) {
+            this.snapshot = snapshot;
+            this.takeSnapshot();
+            this.fireDatasetChanged();
+        }
+        return this;
+    }
+
+
+    @Override
+    public final XyDataset<X,S> withCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new ChartException("The dataset capacity must be > 0, found " + capacity);
+        } else {
+            this.capacity = capacity;
+            if (source instanceof XyBuffer && ((XyBuffer<X,S>)source).resize(capacity) > 0) {
+                this.fireDatasetChanged();
+            }
+            return this;
+        }
     }
 
 
     @Override
     public final int getItemCount() {
-        return isEmpty() ? 0 : frame.rowCount();
+        if (source != null) {
+            return source.size();
+        } else if (domainValues != null) {
+            return domainValues.length;
+        } else {
+            return isEmpty() ? 0 : frame.rowCount();
+        }
     }
 
 
     @Override
     public final int getSeriesCount() {
-        return isEmpty() ? 0 : colOrdinals.length();
+        if (source != null) {
+            return source.seriesCount();
+        } else {
+            return isEmpty() ? 0 : colOrdinals.length();
+        }
     }
 
 
     @Override
     public final S getSeriesKey(int series) {
-        if (isEmpty()) {
+        if (source != null) {
+            return source.seriesKey(series);
+        } else if (isEmpty()) {
             return null;
         } else {
             final int colOrdinal = colOrdinals.getInt(series);
@@ -223,7 +530,7 @@ class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYD
 
     @Override
     public final int getItemCount(int series) {
-        return isEmpty() ? 0 : frame.rowCount();
+        return getItemCount();
     }
 
 
@@ -282,7 +589,11 @@ class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYD
 
     @Override
     public final double getXValue(int series, int item) {
-        if (isEmpty()) {
+        if (domainValues != null) {
+            return domainValues[item];
+        } else if (source != null) {
+            return source.domain(item);
+        } else if (isEmpty()) {
             return Double.NaN;
         } else {
             final X domainValue = domainValueFunction.apply(item);
@@ -293,7 +604,11 @@ class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYD
 
     @Override
     public final double getYValue(int series, int item) {
-        if (isEmpty()) {
+        if (rangeValues != null) {
+            return rangeValues[series][item];
+        } else if (source != null) {
+            return source.value(series, item);
+        } else if (isEmpty()) {
             return Double.NaN;
         } else {
             final int colOrdinal = colOrdinals.getInt(series);
@@ -304,10 +619,14 @@ class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYD
 
     @Override
     public final double getStartXValue(int series, int item) {
-        if (isEmpty()) {
+        if (startValues != null) {
+            return startValues[item];
+        } else if (source != null && lowerDomainIntervalFunction == null) {
+            return source.domain(item);
+        } else if (isEmpty()) {
             return Double.NaN;
         } else {
-            final X domainValue = domainValueFunction.apply(item);
+            final X domainValue = source != null ? source.key(item) : domainValueFunction.apply(item);
             if (lowerDomainIntervalFunction != null) {
                 final X startValueKey = lowerDomainIntervalFunction.apply(domainValue);
                 final Number startValue = toNumber(startValueKey);
@@ -322,10 +641,14 @@ class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYD
 
     @Override
     public final double getEndXValue(int series, int item) {
-        if (isEmpty()) {
+        if (endValues != null) {
+            return endValues[item];
+        } else if (source != null && upperDomainIntervalFunction == null) {
+            return source.domain(item);
+        } else if (isEmpty()) {
             return Double.NaN;
         } else {
-            final X domainValue = domainValueFunction.apply(item);
+            final X domainValue = source != null ? source.key(item) : domainValueFunction.apply(item);
             if (upperDomainIntervalFunction != null) {
                 final X endValueKey = upperDomainIntervalFunction.apply(domainValue);
                 final Number endValue = toNumber(endValueKey);
@@ -340,7 +663,11 @@ class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYD
 
     @Override
     public final double getStartYValue(int series, int item) {
-        if (isEmpty()) {
+        if (rangeValues != null) {
+            return rangeValues[series][item];
+        } else if (source != null) {
+            return source.value(series, item);
+        } else if (isEmpty()) {
             return Double.NaN;
         } else {
             final int colOrdinal = colOrdinals.getInt(series);
@@ -351,7 +678,11 @@ class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYD
 
     @Override
     public final double getEndYValue(int series, int item) {
-        if (isEmpty()) {
+        if (rangeValues != null) {
+            return rangeValues[series][item];
+        } else if (source != null) {
+            return source.value(series, item);
+        } else if (isEmpty()) {
             return Double.NaN;
         } else {
             final int colOrdinal = colOrdinals.getInt(series);
@@ -360,12 +691,337 @@ class JFXyDataset<X extends Comparable,S extends Comparable> extends AbstractXYD
     }
 
 
+    /**
+     * Returns ASCENDING if every domain value is greater than or equal to the one before, which JFreeChart uses to
+     * locate the visible items by binary search. The order is detected while computing the cached domain bounds.
+     * @return  the domain order for this dataset
+     */
+    @Override
+    public final DomainOrder getDomainOrder() {
+        return !isEmpty() && domainBounds() != null && domainAscending ? DomainOrder.ASCENDING : DomainOrder.NONE;
+    }
+
+
+    /**
+     * Returns the first and last index of items to draw for a domain window, including one item either side of the window
+     * Items are located by binary search when the domain is ascending, otherwise the full item range is returned.
+     * @param lower     the lower bound of the domain window
+     * @param upper     the upper bound of the domain window
+     * @return          the inclusive first and last item index, where last is less than first if there are no items
+     */
+    final int[] itemRange(double lower, double upper) {
+        final int itemCount = getItemCount();
+        if (itemCount == 0) {
+            return new int[] {0, -1};
+        } else if (getDomainOrder() != DomainOrder.ASCENDING) {
+            return new int[] {0, itemCount - 1};
+        } else {
+            final int first = Math.min(lowerIndex(lower), itemCount - 1);
+            final int last = Math.max(upperIndex(upper), 0);
+            return new int[] {Math.max(0, first - 1), Math.min(itemCount - 1, last + 1)};
+        }
+    }
+
+
+    /**
+     * Returns the index of the first item with a domain value >= the value specified, assuming an ascending domain
+     * @param value     the domain value
+     * @return          the index of the first item at or above value, item count if there is none
+     */
+    private int lowerIndex(double value) {
+        int low = 0;
+        int high = getItemCount();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (getXValue(0, mid) < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Returns the index of the last item with a domain value <= the value specified, assuming an ascending domain
+     * @param value     the domain value
+     * @return          the index of the last item at or below value, -1 if there is none
+     */
+    private int upperIndex(double value) {
+        int low = 0;
+        int high = getItemCount();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (getXValue(0, mid) <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+
+    /**
+     * Returns the version of this dataset, which is incremented each time the dataset changes
+     * @return      the version for this dataset
+     */
+    final int version() {
+        return version;
+    }
+
+
     @Override
     public void fireDatasetChanged() {
+        this.version++;
+        this.domainBounds = null;
+        this.seriesBounds = null;
         super.fireDatasetChanged();
     }
 
 
+    @Override
+    public final double getDomainLowerBound(boolean includeInterval) {
+        final Range bounds = getDomainBounds(includeInterval);
+        return bounds != null ? bounds.getLowerBound() : Double.NaN;
+    }
+
+
+    @Override
+    public final double getDomainUpperBound(boolean includeInterval) {
+        final Range bounds = getDomainBounds(includeInterval);
+        return bounds != null ? bounds.getUpperBound() : Double.NaN;
+    }
+
+
+    @Override
+    public final Range getDomainBounds(boolean includeInterval) {
+        final double[] bounds = domainBounds();
+        return includeInterval ? toRange(bounds[2], bounds[3]) : toRange(bounds[0], bounds[1]);
+    }
+
+
+    @Override
+    public final Range getDomainBounds(List visibleSeriesKeys, boolean includeInterval) {
+        return visibleSeriesKeys.isEmpty() ? null : getDomainBounds(includeInterval);
+    }
+
+
+    @Override
+    public final double getRangeLowerBound(boolean includeInterval) {
+        final Range bounds = getRangeBounds(includeInterval);
+        return bounds != null ? bounds.getLowerBound() : Double.NaN;
+    }
+
+
+    @Override
+    public final double getRangeUpperBound(boolean includeInterval) {
+        final Range bounds = getRangeBounds(includeInterval);
+        return bounds != null ? bounds.getUpperBound() : Double.NaN;
+    }
+
+
+    @Override
+    public final Range getRangeBounds(boolean includeInterval) {
+        double lower = Double.POSITIVE_INFINITY;
+        double upper = Double.NEGATIVE_INFINITY;
+        for (double[] bounds : seriesBounds()) {
+            lower = Math.min(lower, bounds[0]);
+            upper = Math.max(upper, bounds[1]);
+        }
+        return toRange(lower, upper);
+    }
+
+
+    @Override
+    public final Range getRangeBounds(List visibleSeriesKeys, Range xRange, boolean includeInterval) {
+        final double[] domainBounds = domainBounds();
+        final boolean allItems = xRange.getLowerBound() <= domainBounds[0] && xRange.getUpperBound() >= domainBounds[1];
+        final double[][] seriesBounds = allItems ? seriesBounds() : null;
+        double lower = Double.POSITIVE_INFINITY;
+        double upper = Double.NEGATIVE_INFINITY;
+        for (Object seriesKey : visibleSeriesKeys) {
+            final int series = indexOf((Comparable)seriesKey);
+            if (series >= 0) {
+                final double[] bounds = allItems ? seriesBounds[series] : seriesBounds(series, xRange);
+                lower = Math.min(lower, bounds[0]);
+                upper = Math.max(upper, bounds[1]);
+            }
+        }
+        return toRange(lower, upper);
+    }
+
+
+    /**
+     * Returns the cached domain bounds as {lower, upper, lower with interval, upper with interval}, computing them if required
+     * @return      the domain bounds, which are infinite with inverted sign if there is no data
+     */
+    private double[] domainBounds() {
+        double[] bounds = domainBounds;
+        if (bounds == null) {
+            bounds = new double[] {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+            this.domainAscending = true;
+            this.domainBounds = extendDomainBounds(bounds, 0, getItemCount() - 1);
+        }
+        return bounds;
+    }
+
+
+    /**
+     * Returns the cached range bounds as {lower, upper} for each series, computing those that are invalid
+     * Series are reduced in parallel when the dataset is large enough to benefit
+     * @return      the range bounds for all series
+     */
+    private double[][] seriesBounds() {
+        final int seriesCount = getSeriesCount();
+        final double[][] bounds = seriesBounds != null && seriesBounds.length == seriesCount ? seriesBounds : new double[seriesCount][];
+        final long size = (long)seriesCount * getItemCount();
+        final IntStream invalid = IntStream.range(0, seriesCount).filter(series -> bounds[series] == null);
+        final Range allItems = new Range(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        if (size > PARALLEL_THRESHOLD) {
+            invalid.parallel().forEach(series -> bounds[series] = seriesBounds(series, allItems));
+        } else {
+            invalid.forEach(series -> bounds[series] = seriesBounds(series, allItems));
+        }
+        this.seriesBounds = bounds;
+        return bounds;
+    }
+
+
+    /**
+     * Returns the range bounds as {lower, upper} for a series considering only items within the domain range specified
+     * When the domain is ascending, only the items inside the domain range are visited.
+     * @param series    the series index
+     * @param xRange    the domain range for items to include
+     * @return          the range bounds for series
+     */
+    private double[] seriesBounds(int series, Range xRange) {
+        final double[] bounds = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        final boolean ascending = domainBounds != null && domainAscending;
+        final int from = ascending ? lowerIndex(xRange.getLowerBound()) : 0;
+        final int to = ascending ? upperIndex(xRange.getUpperBound()) : getItemCount() - 1;
+        for (int i=from; i<=to; ++i) {
+            final double x = getXValue(series, i);
+            if (xRange.contains(x)) {
+                final double y = getYValue(series, i);
+                if (!Double.isNaN(y)) {
+                    bounds[0] = Math.min(bounds[0], y);
+                    bounds[1] = Math.max(bounds[1], y);
+                }
+            }
+        }
+        return bounds;
+    }
+
+
+    /**
+     * Extends domain bounds with the items in the range specified, and tracks whether the domain remains in ascending order
+     * @param bounds    the domain bounds to extend
+     * @param from      the first item index, inclusive
+     * @param to        the last item index, inclusive
+     * @return          the bounds argument
+     */
+    private double[] extendDomainBounds(double[] bounds, int from, int to) {
+        double previous = from > 0 ? getXValue(0, from - 1) : Double.NEGATIVE_INFINITY;
+        for (int i=from; i<=to; ++i) {
+            final double x = getXValue(0, i);
+            this.domainAscending &= x >= previous;
+            previous = x;
+            final double start = getStartXValue(0, i);
+            final double end = getEndXValue(0, i);
+            if (!Double.isNaN(x)) {
+                bounds[0] = Math.min(bounds[0], x);
+                bounds[1] = Math.max(bounds[1], x);
+            }
+            if (!Double.isNaN(start)) {
+                bounds[2] = Math.min(bounds[2], start);
+            }
+            if (!Double.isNaN(end)) {
+                bounds[3] = Math.max(bounds[3], end);
+            }
+        }
+        return bounds;
+    }
+
+
+    /**
+     * Extends any cached bounds with the newly appended items in the range specified
+     * @param from  the first appended item index, inclusive
+     * @param to    the last appended item index, inclusive
+     */
+    private void extendBounds(int from, int to) {
+        if (domainBounds != null) {
+            this.extendDomainBounds(domainBounds, from, to);
+        }
+        if (seriesBounds != null) {
+            for (int series=0; series<seriesBounds.length; ++series) {
+                final double[] bounds = seriesBounds[series];
+                if (bounds != null) {
+                    for (int i=from; i<=to; ++i) {
+                        final double y = getYValue(series, i);
+                        if (!Double.isNaN(y) && !Double.isNaN(getXValue(series, i))) {
+                            bounds[0] = Math.min(bounds[0], y);
+                            bounds[1] = Math.max(bounds[1], y);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Invalidates any cached bounds that are defined by the oldest items which are about to be evicted
+     * Bounds that are not touched by the evicted items remain valid, so only the affected ones are recomputed.
+     * @param count the number of oldest items about to be evicted
+     */
+    private void evictBounds(int count) {
+        if (count > 0) {
+            final double[] domainBounds = this.domainBounds;
+            final boolean noIntervals = lowerDomainIntervalFunction == null && upperDomainIntervalFunction == null;
+            if (domainBounds != null && domainAscending && noIntervals && count < getItemCount()) {
+                domainBounds[0] = domainBounds[2] = getXValue(0, count);
+            } else if (domainBounds != null) {
+                for (int i=0; i<count; ++i) {
+                    final double x = getXValue(0, i);
+                    final double start = getStartXValue(0, i);
+                    final double end = getEndXValue(0, i);
+                    if (x == domainBounds[0] || x == domainBounds[1] || start == domainBounds[2] || end == domainBounds[3]) {
+                        this.domainBounds = null;
+                        break;
+                    }
+                }
+            }
+            if (seriesBounds != null) {
+                for (int series=0; series<seriesBounds.length; ++series) {
+                    final double[] bounds = seriesBounds[series];
+                    if (bounds != null) {
+                        for (int i=0; i<count; ++i) {
+                            final double y = getYValue(series, i);
+                            if (y == bounds[0] || y == bounds[1]) {
+                                this.seriesBounds[series] = null;
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns a Range for the bounds specified, or null if the bounds are empty
+     * @param lower the lower bound
+     * @param upper the upper bound
+     * @return      the range, null if lower > upper
+     */
+    private Range toRange(double lower, double upper) {
+        return lower <= upper ? new Range(lower, upper) : null;
+    }
+
+
     /**
      * Returns a numeric representation of the value argument
      * @param value     the value to turn into a number
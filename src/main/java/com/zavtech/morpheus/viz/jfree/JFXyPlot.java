@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.jfree.chart.axis.Axis;
@@ -44,6 +45,7 @@ import com.zavtech.morpheus.viz.chart.xy.XyModel;
 import com.zavtech.morpheus.viz.chart.xy.XyOrient;
 import com.zavtech.morpheus.viz.chart.xy.XyPlotBase;
 import com.zavtech.morpheus.viz.chart.xy.XyRender;
+import com.zavtech.morpheus.viz.chart.xy.XySource;
 import com.zavtech.morpheus.viz.chart.xy.XyTrend;
 import com.zavtech.morpheus.viz.chart.xy.XyTrendBase;
 import com.zavtech.morpheus.viz.html.HtmlCode;
@@ -381,6 +383,16 @@ class JFXyPlot<X extends Comparable> extends XyPlotBase<X> {
             return index;
         }
 
+        @Override
+        public int add(XySource<X,S> source) {
+            final int index = getDatasetCount();
+            final JFXyDataset<X,S> dataset = JFXyDataset.of(source);
+            datasetMap.put(index, dataset);
+            plot.setDataset(index, dataset);
+            render(index).withLines(false, false);
+            return index;
+        }
+
         @Override
         @SuppressWarnings("unchecked")
         public XyDataset<X,S> update(int index, DataFrame<X,S> frame) {
@@ -399,6 +411,34 @@ class JFXyPlot<X extends Comparable> extends XyPlotBase<X> {
             return dataset;
         }
 
+        @Override
+        @SuppressWarnings("unchecked")
+        public XyDataset<X,S> append(int index, DataFrame<?,S> rows) {
+            final JFXyDataset<X,S> dataset = (JFXyDataset<X,S>)datasetMap.get(index);
+            if (dataset == null) {
+                throw new ChartException("No chart dataset exists for id: " + index);
+            } else {
+                dataset.append(rows);
+                return dataset;
+            }
+        }
+
+        @Override
+        public void refreshAll() {
+            final boolean notify = plot.isNotify();
+            try {
+                plot.setNotify(false);
+                JFXyDataset.refreshAll(datasetMap.values());
+                JFXyDataset.refreshAll(trendMap.values().stream()
+                    .map(trend -> plot.getDataset(trend.datasetIndex))
+                    .filter(dataset -> dataset instanceof JFXyDataset)
+                    .map(dataset -> (JFXyDataset<?,?>)dataset)
+                    .collect(Collectors.toList()));
+            } finally {
+                plot.setNotify(notify);
+            }
+        }
+
         @Override
         public void remove(int index) {
             final JFXyDataset<X,?> dataset = datasetMap.remove(index);
@@ -17,19 +17,38 @@ package com.zavtech.morpheus.viz.jfree;
 
 import java.awt.*;
 import java.awt.geom.Ellipse2D;
-
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.IntToDoubleFunction;
+
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.entity.EntityCollection;
+import org.jfree.chart.plot.CrosshairState;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.PlotRenderingInfo;
 import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.RendererUtilities;
 import org.jfree.chart.renderer.xy.StackedXYAreaRenderer2;
 import org.jfree.chart.renderer.xy.StackedXYBarRenderer;
 import org.jfree.chart.renderer.xy.StandardXYBarPainter;
 import org.jfree.chart.renderer.xy.XYAreaRenderer2;
 import org.jfree.chart.renderer.xy.XYBarRenderer;
+import org.jfree.chart.renderer.xy.XYItemRendererState;
 import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
 import org.jfree.chart.renderer.xy.XYSplineRenderer;
+import org.jfree.data.general.DatasetChangeEvent;
+import org.jfree.data.general.DatasetChangeListener;
 import org.jfree.data.xy.XYDataset;
+import org.jfree.ui.RectangleEdge;
 
 import com.zavtech.morpheus.viz.chart.ChartShape;
 import com.zavtech.morpheus.viz.chart.xy.XyRender;
+import com.zavtech.morpheus.viz.util.XySampler;
 
 /**
  * The rendering implementation for xy plots
@@ -84,6 +103,12 @@ class JFXyRender implements XyRender {
     }
 
 
+    @Override()
+    public void withDenseLines() {
+        this.plot.underlying().setRenderer(index, new MorpheusDenseLineRenderer(index));
+    }
+
+
     @Override()
     public void withSpline(boolean shapes, boolean dashed) {
         this.plot.underlying().setRenderer(index, new MorpheusSplineRenderer(shapes, 5, index, dashed));
@@ -99,11 +124,19 @@ class JFXyRender implements XyRender {
 
     /**
      * An extension of a JFreeChart renderer that integrates support for series specific styling
+     * When drawing lines, series with more items than can be resolved across the data area are downsampled
+     * using Largest-Triangle-Three-Buckets over the visible domain range, so the number of segments drawn is bound
+     * by the pixel width of the plot, while sampling is linear in the visible items and is cached between repaints
+     * for as long as the dataset and visible range are unchanged. Only the line pass is downsampled, so shapes,
+     * tooltips and mouse entities are still produced for every item. Samples follow appends to the dataset, so a live
+     * series only samples its appended items on each repaint.
      */
-    private class MorpheusLineAndShapeRenderer extends XYLineAndShapeRenderer {
+    private class MorpheusLineAndShapeRenderer extends XYLineAndShapeRenderer implements DatasetChangeListener {
 
         private int datasetIndex;
         private JFChartShapes shapes = new JFChartShapes();
+        private Map<Integer,Sample> sampleMap = new HashMap<>();
+        private JFXyDataset<?,?> appendSource;
 
         /**
          * Constructor
@@ -115,6 +148,7 @@ class JFXyRender implements XyRender {
         MorpheusLineAndShapeRenderer(boolean lines, boolean shapes, int datasetIndex, boolean dotted) {
             super(lines, shapes);
             this.datasetIndex = datasetIndex;
+            this.setDrawSeriesLineAsPath(lines);
             if (dotted) {
                 this.setBaseStroke(new BasicStroke(
                     2.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
@@ -128,6 +162,290 @@ class JFXyRender implements XyRender {
             }
         }
 
+        @Override
+        public XYItemRendererState initialise(Graphics2D g2, Rectangle2D dataArea, XYPlot plot, XYDataset data, PlotRenderingInfo info) {
+            if (!getBaseLinesVisible()) {
+                return super.initialise(g2, dataArea, plot, data, info);
+            } else {
+                final SampleState state = new SampleState(info, plot, dataArea);
+                state.seriesPath = new GeneralPath();
+                return state;
+            }
+        }
+
+        @Override
+        public void drawItem(
+            Graphics2D g2,
+            XYItemRendererState state,
+            Rectangle2D dataArea,
+            PlotRenderingInfo info,
+            XYPlot plot,
+            ValueAxis domainAxis,
+            ValueAxis rangeAxis,
+            XYDataset dataset,
+            int series,
+            int item,
+            CrosshairState crosshairState,
+            int pass) {
+            if (!(state instanceof SampleState) || !isLinePass(pass) || ((SampleState)state).accept(item)) {
+                super.drawItem(g2, state, dataArea, info, plot, domainAxis, rangeAxis, dataset, series, item, crosshairState, pass);
+            }
+        }
+
+        /**
+         * Returns the indexes of the items to draw for a series, or null if all items should be drawn
+         * A cached sample that was shifted by appends is extended over the appended items where the view allows,
+         * rather than resampling the whole series, and is resampled once the extension grows too dense.
+         * @param plot          the plot reference
+         * @param dataArea      the data area for the plot
+         * @param dataset       the dataset reference
+         * @param series        the series index
+         * @param firstItem     the first item index in range to draw
+         * @param lastItem      the last item index in range to draw
+         * @return              the ascending item indexes to draw, null to draw all items
+         */
+        private int[] sample(XYPlot plot, Rectangle2D dataArea, XYDataset dataset, int series, int firstItem, int lastItem) {
+            final boolean vertical = plot.getOrientation() == PlotOrientation.VERTICAL;
+            final int threshold = (int)Math.ceil((vertical ? dataArea.getWidth() : dataArea.getHeight()) * 2d);
+            if (lastItem - firstItem + 1 <= threshold) {
+                return null;
+            } else {
+                final ValueAxis domainAxis = plot.getDomainAxisForDataset(plot.getIndexOf(this));
+                final int[] liveItems = liveItems(dataset, series, domainAxis.getLowerBound(), domainAxis.getUpperBound());
+                final int from = Math.max(liveItems[0], firstItem);
+                final int to = Math.min(liveItems[1], lastItem);
+                final int version = dataset instanceof JFXyDataset ? ((JFXyDataset)dataset).version() : -1;
+                final Sample cached;
+                synchronized (sampleMap) {
+                    cached = sampleMap.get(series);
+                }
+                if (cached != null && cached.matches(dataset, version, threshold, firstItem, lastItem, from, to)) {
+                    return cached.indexes;
+                } else {
+                    final IntToDoubleFunction x = i -> dataset.getXValue(series, i);
+                    final IntToDoubleFunction y = i -> dataset.getYValue(series, i);
+                    final boolean extendable = cached != null && cached.extendable(dataset, version, threshold, from, to);
+                    final int[] extended = extendable ? cached.extend(from, to, x, y) : null;
+                    final int[] selected = extended != null ? extended : to < from ? new int[0] : XySampler.lttb(from, to, threshold, x, y);
+                    final double bucketSize = extended != null ? cached.bucketSize : Math.max(1d, (double)(to - from - 1) / (threshold - 2));
+                    final int head = selected.length > 0 && selected[0] == firstItem ? 0 : 1;
+                    final int tail = selected.length > 0 && selected[selected.length-1] == lastItem ? 0 : 1;
+                    final int[] indexes = new int[selected.length + head + tail];
+                    System.arraycopy(selected, 0, indexes, head, selected.length);
+                    indexes[0] = firstItem;
+                    indexes[indexes.length-1] = lastItem;
+                    if (version >= 0) {
+                        this.listen((JFXyDataset<?,?>)dataset);
+                        synchronized (sampleMap) {
+                            this.sampleMap.put(series, new Sample(dataset, version, threshold, firstItem, lastItem, from, to, bucketSize, selected, indexes));
+                        }
+                    }
+                    return indexes;
+                }
+            }
+        }
+
+
+        /**
+         * Registers this renderer for change events from the dataset it samples, so appends can shift cached samples
+         * @param dataset   the dataset being sampled
+         */
+        private void listen(JFXyDataset<?,?> dataset) {
+            if (appendSource != dataset) {
+                if (appendSource != null) {
+                    this.appendSource.removeChangeListener(this);
+                }
+                dataset.addChangeListener(this);
+                this.appendSource = dataset;
+            }
+        }
+
+
+        @Override
+        public void datasetChanged(DatasetChangeEvent event) {
+            if (event instanceof JFXyAppendEvent) {
+                final JFXyAppendEvent append = (JFXyAppendEvent)event;
+                synchronized (sampleMap) {
+                    this.sampleMap.replaceAll((series, sample) -> sample.shift(append));
+                    this.sampleMap.values().removeIf(Objects::isNull);
+                }
+            }
+        }
+
+
+        /**
+         * A renderer state that tracks which items of the current series pass have been selected for drawing
+         */
+        private class SampleState extends State {
+
+            private int cursor;
+            private int[] indexes;
+            private XYPlot plot;
+            private Rectangle2D dataArea;
+
+            /**
+             * Constructor
+             * @param info      the plot rendering info
+             * @param plot      the plot reference
+             * @param dataArea  the data area for plot
+             */
+            SampleState(PlotRenderingInfo info, XYPlot plot, Rectangle2D dataArea) {
+                super(info);
+                this.plot = plot;
+                this.dataArea = dataArea;
+            }
+
+            @Override
+            public void startSeriesPass(XYDataset dataset, int series, int firstItem, int lastItem, int pass, int passCount) {
+                super.startSeriesPass(dataset, series, firstItem, lastItem, pass, passCount);
+                this.cursor = 0;
+                this.indexes = sample(plot, dataArea, dataset, series, firstItem, lastItem);
+            }
+
+            /**
+             * Returns true if the item should be added to the line path, items must be presented in ascending order
+             * @param item  the item index
+             * @return      true if item has been selected for drawing
+             */
+            boolean accept(int item) {
+                if (indexes == null) {
+                    return true;
+                } else {
+                    while (cursor < indexes.length && indexes[cursor] < item) cursor++;
+                    return cursor < indexes.length && indexes[cursor] == item;
+                }
+            }
+        }
+
+
+        /**
+         * A cached sample of item indexes for a series, which remains valid until the dataset or view changes
+         * Appends shift the sample to follow its items, so it can be re-used or extended over the appended items.
+         */
+        private class Sample {
+
+            private XYDataset dataset;
+            private int version;
+            private int threshold;
+            private int firstItem;
+            private int lastItem;
+            private int from;
+            private int to;
+            private double bucketSize;
+            private int[] selected;
+            private int[] indexes;
+
+            /**
+             * Constructor
+             * @param dataset       the dataset sampled
+             * @param version       the dataset version
+             * @param threshold     the max number of items selected
+             * @param firstItem     the first item in range
+             * @param lastItem      the last item in range
+             * @param from          the first live item sampled
+             * @param to            the last live item sampled
+             * @param bucketSize    the number of items represented by each selected item
+             * @param selected      the item indexes selected from the live items
+             * @param indexes       the selected item indexes including the first and last items in range
+             */
+            Sample(XYDataset dataset, int version, int threshold, int firstItem, int lastItem, int from, int to, double bucketSize, int[] selected, int[] indexes) {
+                this.dataset = dataset;
+                this.version = version;
+                this.threshold = threshold;
+                this.firstItem = firstItem;
+                this.lastItem = lastItem;
+                this.from = from;
+                this.to = to;
+                this.bucketSize = bucketSize;
+                this.selected = selected;
+                this.indexes = indexes;
+            }
+
+            /**
+             * Returns true if this sample was computed for the same dataset version and view
+             * @param dataset   the dataset to be sampled
+             * @param version   the dataset version
+             * @param threshold the max number of items to select
+             * @param firstItem the first item in range
+             * @param lastItem  the last item in range
+             * @param from      the first live item to sample
+             * @param to        the last live item to sample
+             * @return  true if this sample can be re-used
+             */
+            boolean matches(XYDataset dataset, int version, int threshold, int firstItem, int lastItem, int from, int to) {
+                return this.dataset == dataset
+                    && this.version == version
+                    && this.threshold == threshold
+                    && this.firstItem == firstItem
+                    && this.lastItem == lastItem
+                    && this.from == from
+                    && this.to == to;
+            }
+
+            /**
+             * Returns true if this sample is current and covers the start of a live range that extends beyond its end
+             * @param dataset   the dataset to be sampled
+             * @param version   the dataset version
+             * @param threshold the max number of items to select
+             * @param from      the first live item to sample
+             * @param to        the last live item to sample
+             * @return          true if this sample can be extended to the live range
+             */
+            boolean extendable(XYDataset dataset, int version, int threshold, int from, int to) {
+                return this.dataset == dataset
+                    && this.version == version
+                    && this.threshold == threshold
+                    && from >= this.from
+                    && from <= this.to
+                    && to > this.to;
+            }
+
+            /**
+             * Returns the selected items of this sample from a new first item, followed by a sample of the items beyond it
+             * The items beyond this sample are selected with the same bucket size, so the density of the sample is kept.
+             * @param from  the first live item to sample, within this sample
+             * @param to    the last live item to sample, beyond this sample
+             * @param x     the function that yields the x value for an item index
+             * @param y     the function that yields the y value for an item index
+             * @return      the ascending item indexes, null if the extended sample would be too dense and must be resampled
+             */
+            int[] extend(int from, int to, IntToDoubleFunction x, IntToDoubleFunction y) {
+                final int buckets = (int)Math.ceil((to - this.to) / bucketSize) + 1;
+                final int[] appended = XySampler.lttb(this.to, to, buckets, x, y);
+                int head = 0;
+                while (head < selected.length && selected[head] <= from) head++;
+                final int length = 1 + (selected.length - head) + (appended.length - 1);
+                if (length > threshold + threshold / 2) {
+                    return null;
+                } else {
+                    final int[] result = new int[length];
+                    result[0] = from;
+                    System.arraycopy(selected, head, result, 1, selected.length - head);
+                    System.arraycopy(appended, 1, result, 1 + selected.length - head, appended.length - 1);
+                    return result;
+                }
+            }
+
+            /**
+             * Returns this sample with its items shifted to follow an append, or this sample if it is for another dataset
+             * @param event     the append event
+             * @return          the shifted sample, null if items it selected were overwritten by the append
+             */
+            Sample shift(JFXyAppendEvent event) {
+                final int evicted = event.getEvicted();
+                if (event.getDataset() != dataset) {
+                    return this;
+                } else if (to < evicted || to - evicted >= event.getFirstItem()) {
+                    return null;
+                } else {
+                    final int[] shiftedSelected = Arrays.stream(selected).map(i -> i - evicted).filter(i -> i >= 0).toArray();
+                    final int[] shiftedIndexes = Arrays.stream(indexes).map(i -> i - evicted).filter(i -> i >= 0).toArray();
+                    final int shiftedFrom = Math.max(from - evicted, 0);
+                    return new Sample(dataset, version + 1, threshold, firstItem - evicted, lastItem - evicted, shiftedFrom, to - evicted, bucketSize, shiftedSelected, shiftedIndexes);
+                }
+            }
+        }
+
         @Override
         public Paint getSeriesPaint(int series) {
             try {
@@ -228,6 +546,204 @@ class JFXyRender implements XyRender {
 
 
 
+    /**
+     * Returns the first and last index of items to draw for a domain window, including one item either side of the window
+     * @param dataset   the dataset reference
+     * @param series    the series index
+     * @param lower     the lower bound of the domain window
+     * @param upper     the upper bound of the domain window
+     * @return          the inclusive first and last item index
+     */
+    private static int[] liveItems(XYDataset dataset, int series, double lower, double upper) {
+        if (dataset instanceof JFXyDataset) {
+            return ((JFXyDataset)dataset).itemRange(lower, upper);
+        } else {
+            final int[] liveItems = RendererUtilities.findLiveItems(dataset, series, lower, upper);
+            return new int[] {liveItems[0] - 1, liveItems[1] + 1};
+        }
+    }
+
+
+    /**
+     * A line renderer for very dense series that aggregates the visible items of each pixel column into the
+     * first, minimum, maximum and last values (M4 aggregation), and draws only those points. The rasterized
+     * line is the same as drawing every item, while the path holds at most four points per pixel column, so
+     * stroking is bound by the pixel width of the plot. Aggregation still reads every visible item on each repaint.
+     * Shapes are never drawn, and one entity is created per pixel column rather than per item, spanning the range
+     * covered by the column and reporting the last item in it, so tooltips and mouse events resolve to pixel columns.
+     */
+    private class MorpheusDenseLineRenderer extends MorpheusLineAndShapeRenderer {
+
+        /**
+         * Constructor
+         * @param datasetIndex  the dataset index for this renderer
+         */
+        MorpheusDenseLineRenderer(int datasetIndex) {
+            super(true, false, datasetIndex, false);
+        }
+
+        @Override
+        public XYItemRendererState initialise(Graphics2D g2, Rectangle2D dataArea, XYPlot plot, XYDataset data, PlotRenderingInfo info) {
+            final State state = new State(info);
+            state.seriesPath = new GeneralPath();
+            return state;
+        }
+
+        @Override
+        public void drawItem(
+            Graphics2D g2,
+            XYItemRendererState state,
+            Rectangle2D dataArea,
+            PlotRenderingInfo info,
+            XYPlot plot,
+            ValueAxis domainAxis,
+            ValueAxis rangeAxis,
+            XYDataset dataset,
+            int series,
+            int item,
+            CrosshairState crosshairState,
+            int pass) {
+            if (item == state.getFirstItemIndex() && isLinePass(pass)) {
+                if (getItemVisible(series, item) && getItemLineVisible(series, item)) {
+                    final int lastItem = state.getLastItemIndex();
+                    final boolean vertical = plot.getOrientation() == PlotOrientation.VERTICAL;
+                    final RectangleEdge domainEdge = plot.getDomainAxisEdge();
+                    final RectangleEdge rangeEdge = plot.getRangeAxisEdge();
+                    final EntityCollection entities = info != null ? info.getOwner().getEntityCollection() : null;
+                    final M4Path path = new M4Path(vertical, getDefaultEntityRadius(), entities == null ? null : (columnItem, area) -> {
+                        addEntity(entities, area, dataset, series, columnItem, 0d, 0d);
+                    });
+                    for (int i=item; i<=lastItem; ++i) {
+                        final double x = dataset.getXValue(series, i);
+                        final double y = dataset.getYValue(series, i);
+                        final double transX = domainAxis.valueToJava2D(x, dataArea, domainEdge);
+                        final double transY = rangeAxis.valueToJava2D(y, dataArea, rangeEdge);
+                        if (Double.isNaN(transX) || Double.isNaN(transY)) {
+                            path.gap();
+                        } else {
+                            path.add(i, transX, transY);
+                        }
+                    }
+                    path.flush();
+                    g2.setStroke(getItemStroke(series, item));
+                    g2.setPaint(getItemPaint(series, item));
+                    g2.draw(path.shape);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * A path builder that reduces each pixel column of a series to its first, min, max and last points
+     * Consecutive items that fall in the same pixel column are aggregated, so unsorted data degrades to drawing every item.
+     */
+    private class M4Path {
+
+        private boolean vertical;
+        private int entityRadius;
+        private BiConsumer<Integer,Shape> columnHandler;
+        private boolean lastPointGood;
+        private GeneralPath shape = new GeneralPath();
+        private int column = Integer.MIN_VALUE;
+        private int firstItem, minItem, maxItem, lastItem;
+        private double firstX, firstY, minX, minY, maxX, maxY, lastX, lastY;
+
+        /**
+         * Constructor
+         * @param vertical      true if the plot orientation is vertical
+         * @param entityRadius  the padding around the range covered by a column for its entity area
+         * @param columnHandler the consumer of the last item and entity area of each column, null for none
+         */
+        M4Path(boolean vertical, int entityRadius, BiConsumer<Integer,Shape> columnHandler) {
+            this.vertical = vertical;
+            this.entityRadius = entityRadius;
+            this.columnHandler = columnHandler;
+        }
+
+        /**
+         * Adds an item to this path in Java2D coordinates
+         * @param item      the item index
+         * @param transX    the domain coordinate
+         * @param transY    the range coordinate
+         */
+        void add(int item, double transX, double transY) {
+            final int column = (int)Math.floor(transX);
+            if (column != this.column) {
+                this.flush();
+                this.column = column;
+                this.firstItem = minItem = maxItem = lastItem = item;
+                this.firstX = minX = maxX = lastX = transX;
+                this.firstY = minY = maxY = lastY = transY;
+            } else {
+                this.lastItem = item;
+                this.lastX = transX;
+                this.lastY = transY;
+                if (transY < minY) {
+                    this.minItem = item;
+                    this.minX = transX;
+                    this.minY = transY;
+                }
+                if (transY > maxY) {
+                    this.maxItem = item;
+                    this.maxX = transX;
+                    this.maxY = transY;
+                }
+            }
+        }
+
+        /**
+         * Breaks the path at a missing value
+         */
+        void gap() {
+            this.flush();
+            this.lastPointGood = false;
+        }
+
+        /**
+         * Writes the points of the current pixel column to the path in item order
+         */
+        void flush() {
+            if (column != Integer.MIN_VALUE) {
+                this.column = Integer.MIN_VALUE;
+                this.point(firstX, firstY);
+                if (minItem < maxItem) {
+                    if (minItem != firstItem) point(minX, minY);
+                    if (maxItem != lastItem) point(maxX, maxY);
+                } else if (maxItem < minItem) {
+                    if (maxItem != firstItem) point(maxX, maxY);
+                    if (minItem != lastItem) point(minX, minY);
+                }
+                if (lastItem != firstItem) {
+                    this.point(lastX, lastY);
+                }
+                if (columnHandler != null) {
+                    final double x = Math.floor(firstX);
+                    final double y = Math.min(minY, maxY) - entityRadius;
+                    final double height = Math.abs(maxY - minY) + 2 * entityRadius;
+                    this.columnHandler.accept(lastItem, vertical ? new Rectangle2D.Double(x, y, 1d, height) : new Rectangle2D.Double(y, x, height, 1d));
+                }
+            }
+        }
+
+        /**
+         * Appends a point to the path, starting a new segment after a gap
+         * @param transX    the domain coordinate
+         * @param transY    the range coordinate
+         */
+        private void point(double transX, double transY) {
+            final float x = (float)(vertical ? transX : transY);
+            final float y = (float)(vertical ? transY : transX);
+            if (lastPointGood) {
+                this.shape.lineTo(x, y);
+            } else {
+                this.shape.moveTo(x, y);
+                this.lastPointGood = true;
+            }
+        }
+    }
+
+
     /**
      * An extension of an XYSplineRenderer that adds support for series specific styling
      */
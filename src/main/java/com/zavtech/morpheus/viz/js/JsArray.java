@@ -54,12 +54,9 @@ public class JsArray {
         }
         if (!inline) {
             this.script.newLine();
-            this.script.write(String.valueOf(value));
-            this.length++;
-        } else {
-            this.script.write(String.valueOf(value));
-            this.length++;
         }
+        this.script.append(value);
+        this.length++;
         return this;
     }
 
@@ -69,15 +66,23 @@ public class JsArray {
         }
         if (!inline) {
             this.script.newLine();
-            this.script.write(String.valueOf(value));
-            this.length++;
-        } else {
-            this.script.write(String.valueOf(value));
-            this.length++;
         }
+        this.script.append(value);
+        this.length++;
         return this;
     }
 
+    public JsArray append(long value) {
+        if (length > 0) {
+            this.script.write(",");
+        }
+        if (!inline) {
+            this.script.newLine();
+        }
+        this.script.append(value);
+        this.length++;
+        return this;
+    }
 
     public JsArray append(double value) {
         if (length > 0) {
@@ -85,12 +90,26 @@ public class JsArray {
         }
         if (!inline) {
             this.script.newLine();
-            this.script.write(String.valueOf(value));
-            this.length++;
-        } else {
-            this.script.write(String.valueOf(value));
-            this.length++;
         }
+        this.script.append(value);
+        this.length++;
+        return this;
+    }
+
+    /**
+     * Appends a javascript Date constructed from the epoch milliseconds specified
+     * @param epochMillis   the epoch milliseconds
+     * @return              this array
+     */
+    public JsArray appendDate(long epochMillis) {
+        if (length > 0) {
+            this.script.write(",");
+        }
+        if (!inline) {
+            this.script.newLine();
+        }
+        this.script.write("new Date(").append(epochMillis).write(")");
+        this.length++;
         return this;
     }
 
@@ -15,19 +15,35 @@
  */
 package com.zavtech.morpheus.viz.js;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.function.Consumer;
 
 /**
  * A class that provides a basic API to programmatically generate simple Javascript code
  *
+ * Code is accumulated in memory by default, or if constructed with a Writer, it is streamed to that writer through
+ * a small bounded buffer so that very large scripts, such as those embedding chart data, never exist in full in memory.
+ *
  * @author Xavier Witdouck
  *
  * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
  */
 public class JsCode {
 
-    private String indent = "";
+    private static final int BUFFER_SIZE = 8192;
+
+    private int indent;
+    private char[] spaces = new char[0];
     private StringBuilder code = new StringBuilder();
+    private Writer writer;
+    private char[] chars;
 
 
     /**
@@ -37,6 +53,23 @@ public class JsCode {
         super();
     }
 
+    /**
+     * Constructor
+     * @param writer    the writer to stream code to, which is not closed by this object
+     */
+    public JsCode(Writer writer) {
+        this.writer = writer;
+        this.chars = new char[BUFFER_SIZE * 2];
+    }
+
+    /**
+     * Constructor
+     * @param os    the output stream to stream UTF-8 encoded code to, which is not closed by this object
+     */
+    public JsCode(OutputStream os) {
+        this(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+    }
+
     /**
      * Returns a Javascript string generated by the consumer logic
      * @param consumer  the consumer to write Javascript programmatically
@@ -48,9 +81,20 @@ public class JsCode {
         return js.toString();
     }
 
+    /**
+     * Streams Javascript generated by the consumer logic to the writer specified
+     * @param writer    the writer to stream code to, which is flushed but not closed
+     * @param consumer  the consumer to write Javascript programmatically
+     */
+    public static void create(Writer writer, Consumer<JsCode> consumer) {
+        final JsCode js = new JsCode(writer);
+        consumer.accept(js);
+        js.flush();
+    }
+
 
     /**
-     * Deletes the entire code buffer
+     * Deletes the entire code buffer, which excludes any code already streamed to the writer
      * @return  this writer
      */
     public JsCode clear() {
@@ -60,14 +104,87 @@ public class JsCode {
 
 
     /**
-     * Writes formatted code string to the output buffer
+     * Writes formatted code string to the output buffer, which is written as is if there are no arguments
      * @param code  the formatted code String (see String.format() for details)
      * @param args  the arguments for the formatted code string
      * @return      this writer
      */
     public JsCode write(String code, Object... args) {
-        this.code.append(String.format(code, args));
-        return this;
+        if (args == null || args.length == 0) {
+            this.code.append(code);
+            return drain(false);
+        } else {
+            this.code.append(String.format(code, args));
+            return drain(false);
+        }
+    }
+
+
+    /**
+     * Writes a boolean literal directly to the output buffer
+     * @param value the value to write
+     * @return      this writer
+     */
+    public JsCode append(boolean value) {
+        this.code.append(value);
+        return drain(false);
+    }
+
+
+    /**
+     * Writes an integer literal directly to the output buffer
+     * @param value the value to write
+     * @return      this writer
+     */
+    public JsCode append(int value) {
+        this.code.append(value);
+        return drain(false);
+    }
+
+
+    /**
+     * Writes an integer literal directly to the output buffer
+     * @param value the value to write
+     * @return      this writer
+     */
+    public JsCode append(long value) {
+        this.code.append(value);
+        return drain(false);
+    }
+
+
+    /**
+     * Writes a numeric literal directly to the output buffer, using the same representation as Double.toString()
+     * @param value the value to write
+     * @return      this writer
+     */
+    public JsCode append(double value) {
+        this.code.append(value);
+        return drain(false);
+    }
+
+
+    /**
+     * Returns a stream that base64 encodes bytes directly into the output buffer, so binary content such as an image
+     * is streamed to the writer without ever existing in memory as a byte array or string. The stream must be closed
+     * to write any final padding, which does not close this writer.
+     * @return      the base64 encoding output stream
+     */
+    public OutputStream base64() {
+        return Base64.getEncoder().wrap(new OutputStream() {
+            @Override
+            public void write(int value) {
+                code.append((char)value);
+                drain(false);
+            }
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                for (int i=0; i<length; ++i) {
+                    code.append((char)bytes[offset + i]);
+                }
+                drain(false);
+            }
+        });
     }
 
 
@@ -85,10 +202,10 @@ public class JsCode {
      */
     public JsCode newLine(int count) {
         for (int i=0; i<count; ++i) {
-            this.code.append("\n");
+            this.code.append('\n');
         }
-        this.code.append(indent);
-        return this;
+        this.code.append(spaces, 0, indent);
+        return drain(false);
     }
 
 
@@ -98,12 +215,12 @@ public class JsCode {
      * @return          this writer
      */
     public JsCode indent(int count) {
-        final StringBuilder indentation = new StringBuilder(indent);
-        for (int i=0; i<count; ++i) {
-            indentation.append(" ");
-            code.append(" ");
+        this.indent += count;
+        if (spaces.length < indent) {
+            this.spaces = new char[Math.max(indent, spaces.length * 2)];
+            Arrays.fill(spaces, ' ');
         }
-        this.indent = indentation.toString();
+        this.code.append(spaces, 0, count);
         return this;
     }
 
@@ -114,7 +231,7 @@ public class JsCode {
      * @return      this code refernce
      */
     public JsCode unident(int count) {
-        this.indent = indent.substring(0, indent.length()-count);
+        this.indent = Math.max(0, indent - count);
         return this;
     }
 
@@ -185,6 +302,7 @@ public class JsCode {
      */
     public JsCode newArray(boolean inline, Consumer<JsArray> consumer) {
         this.code.append("[");
+        this.drain(false);
         if (!inline) {
             //this.indent(4);
         }
@@ -200,6 +318,50 @@ public class JsCode {
     }
 
 
+    /**
+     * Writes any buffered code to the writer and flushes it, which has no effect if this code is not streaming
+     * @return  this writer
+     */
+    public JsCode flush() {
+        try {
+            if (writer != null) {
+                this.drain(true);
+                this.writer.flush();
+            }
+            return this;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to flush Javascript code to writer", ex);
+        }
+    }
+
+
+    /**
+     * Writes the buffered code to the writer if streaming, and either forced or the buffer is full
+     * @param force true to write the buffer regardless of how much code it holds
+     * @return      this writer
+     */
+    private JsCode drain(boolean force) {
+        final int length = code.length();
+        if (writer != null && length > 0 && (force || length >= BUFFER_SIZE)) {
+            try {
+                if (chars.length < length) {
+                    this.chars = new char[length];
+                }
+                this.code.getChars(0, length, chars, 0);
+                this.code.setLength(0);
+                this.writer.write(chars, 0, length);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to write Javascript code to writer", ex);
+            }
+        }
+        return this;
+    }
+
+
+    /**
+     * Returns the code in this buffer, which excludes any code already streamed to the writer
+     * @return  the code in this buffer
+     */
     @Override()
     public String toString() {
         return code.toString();
@@ -15,6 +15,9 @@
  */
 package com.zavtech.morpheus.viz.js;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.function.Consumer;
 
 /**
@@ -51,12 +54,12 @@ public class JsObject {
 
     /**
      * Creates a new attribute with the key value provided
-     * @param template  the string template to output key / value pair
      * @param key       the key
      * @param value     the value
+     * @param quotes    true to enclose the value in quotes
      * @return          this object
      */
-    private JsObject newAttribute(String template, Object key, Object value) {
+    private JsObject newAttribute(Object key, Object value, boolean quotes) {
         if (ignoreNulls && value == null) {
             return this;
         } else {
@@ -68,7 +71,12 @@ public class JsObject {
                     this.script.write(" ");
                 }
             }
-            this.script.write(template, key, value);
+            this.script.write(String.valueOf(key)).write(": ");
+            if (quotes) {
+                this.script.write("\"").write(String.valueOf(value)).write("\"");
+            } else {
+                this.script.write(String.valueOf(value));
+            }
             this.attributeCount++;
             return this;
         }
@@ -80,7 +88,7 @@ public class JsObject {
             this.script.write(",");
             this.script.newLine();
         }
-        this.script.write("%s: ", key);
+        this.script.write(String.valueOf(key)).write(": ");
         this.script.newObject(consumer);
         this.attributeCount++;
         return this;
@@ -92,7 +100,7 @@ public class JsObject {
             this.script.write(",");
             this.script.newLine();
         }
-        this.script.write("%s: ", key);
+        this.script.write(String.valueOf(key)).write(": ");
         this.script.newArray(inline, consumer);
         this.attributeCount++;
         return this;
@@ -106,7 +114,7 @@ public class JsObject {
      * @return          this object
      */
     public JsObject newAttribute(Object key, Boolean value) {
-        return newAttribute("%s: %s", key, value);
+        return newAttribute(key, value, false);
     }
 
     /**
@@ -116,7 +124,7 @@ public class JsObject {
      * @return          this object
      */
     public JsObject newAttribute(Object key, Integer value) {
-        return newAttribute("%s: %s", key, value);
+        return newAttribute(key, value, false);
     }
 
     /**
@@ -126,7 +134,7 @@ public class JsObject {
      * @return          this object
      */
     public JsObject newAttribute(Object key, Float value) {
-        return newAttribute("%s: %s", key, value);
+        return newAttribute(key, value, false);
     }
 
     /**
@@ -136,7 +144,7 @@ public class JsObject {
      * @return          this object
      */
     public JsObject newAttribute(Object key, Double value) {
-        return newAttribute("%s: %s", key, value);
+        return newAttribute(key, value, false);
     }
 
     /**
@@ -146,7 +154,33 @@ public class JsObject {
      * @return          this object
      */
     public JsObject newAttribute(Object key, String value) {
-        return newAttribute("%s: \"%s\"", key, value);
+        return newAttribute(key, value, true);
+    }
+
+    /**
+     * Adds a string attribute of base64 encoded bytes, which are encoded straight into the script as they are written
+     * @param key       the attribute key
+     * @param consumer  the consumer that writes the bytes to encode, without closing the stream
+     * @return          this object
+     */
+    public JsObject newBase64(Object key, Consumer<OutputStream> consumer) {
+        if (attributeCount > 0) {
+            this.script.write(",");
+            if (!inline) {
+                this.script.newLine();
+            } else {
+                this.script.write(" ");
+            }
+        }
+        this.script.write(String.valueOf(key)).write(": \"");
+        try (OutputStream os = script.base64()) {
+            consumer.accept(os);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to write base64 attribute: " + key, ex);
+        }
+        this.script.write("\"");
+        this.attributeCount++;
+        return this;
     }
 
     /**
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A utility class to create gzip compressed output streams for generated HTML and Javascript with a tunable level
+ *
+ * Chart output is mostly numeric text with a small alphabet, so even the fastest levels typically shrink it to
+ * well under half its size, while the highest levels buy only a few percent more for several times the CPU cost.
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class GzipOutput {
+
+    /**
+     * The default compression level, which favours speed over the last few percent of compression
+     */
+    public static final int DEFAULT_LEVEL = 4;
+
+    private static final int BUFFER_SIZE = 1024 * 64;
+
+
+    /**
+     * Returns true if the file should be written gzip compressed, based on a .gz file extension
+     * @param file  the file to check
+     * @return      true if the file name ends with .gz
+     */
+    public static boolean isGzip(File file) {
+        return file.getName().toLowerCase().endsWith(".gz");
+    }
+
+
+    /**
+     * Returns a buffered stream to the file, which compresses output at the level specified if the file name ends with .gz
+     * @param file      the file to write to
+     * @param level     the compression level from 0 to 9, which is ignored for files without a .gz extension
+     * @return          the output stream, which must be closed by the caller
+     * @throws IOException  if the file cannot be opened
+     */
+    public static OutputStream open(File file, int level) throws IOException {
+        final OutputStream os = new FileOutputStream(file);
+        try {
+            return isGzip(file) ? compress(os, level) : new BufferedOutputStream(os, BUFFER_SIZE);
+        } catch (IOException ex) {
+            os.close();
+            throw ex;
+        }
+    }
+
+
+    /**
+     * Returns a stream that gzip compresses output to the stream specified at the level specified
+     * @param os        the stream to write compressed output to, which is closed when the returned stream is closed
+     * @param level     the compression level from 0 (none) to 9 (best)
+     * @return          the compressing output stream
+     * @throws IOException  if the gzip header cannot be written
+     */
+    public static GZIPOutputStream compress(OutputStream os, int level) throws IOException {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("The gzip compression level must be in the range 0-9, found " + level);
+        } else {
+            return new GZIPOutputStream(os, BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,481 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.zavtech.morpheus.viz.chart.ChartException;
+import com.zavtech.morpheus.viz.chart.ChartImageEncoder;
+
+/**
+ * A PNG encoder with a tunable deflate level and row filter, which can compress horizontal strips of an image in parallel
+ *
+ * In parallel mode each strip is deflated independently, primed with the last 32KB of the preceding strip as a
+ * preset dictionary, and the strips are joined with sync flushes into a single zlib stream as described for pigz.
+ * The output is a standard PNG that is only marginally larger than a serial encoding at the same level.
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class PngEncoder implements ChartImageEncoder {
+
+    private static final byte[] SIGNATURE = {(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int WINDOW_SIZE = 1024 * 32;
+    private static final int MIN_STRIP_BYTES = 1024 * 128;
+
+    /**
+     * The row filters that can be applied before deflating image data
+     */
+    public enum Filter {
+
+        /** Rows are deflated as is, which is fastest and usually smallest for flat coloured charts */
+        NONE,
+
+        /** Each byte is predicted from the byte to its left */
+        SUB,
+
+        /** Each byte is predicted from the byte above it */
+        UP,
+
+        /** Each byte is predicted from the average of the bytes to its left and above */
+        AVERAGE,
+
+        /** Each byte is predicted using the Paeth predictor over left, above and upper left bytes */
+        PAETH,
+
+        /** Each row uses whichever filter minimizes the sum of absolute differences, as recommended by the PNG spec */
+        ADAPTIVE
+    }
+
+    private int level;
+    private Filter filter;
+    private Executor executor;
+    private int parallelism;
+
+
+    /**
+     * Constructor
+     * @param level     the deflate level from 0 (none) to 9 (best)
+     * @param filter    the row filter
+     */
+    public PngEncoder(int level, Filter filter) {
+        this.withLevel(level);
+        this.withFilter(filter);
+    }
+
+
+    /**
+     * Returns an encoder that favours speed, which suits interactive export
+     * Charts are mostly flat colour, which deflates well without filtering, so no filter is applied.
+     * @return  the newly created encoder
+     */
+    public static PngEncoder fast() {
+        return new PngEncoder(1, Filter.NONE);
+    }
+
+
+    /**
+     * Returns an encoder that favours small output at a higher CPU cost, which suits archived reports
+     * @return  the newly created encoder
+     */
+    public static PngEncoder small() {
+        return new PngEncoder(9, Filter.NONE);
+    }
+
+
+    /**
+     * Sets the deflate level for this encoder
+     * @param level the deflate level from 0 (none) to 9 (best)
+     * @return      this encoder
+     */
+    public PngEncoder withLevel(int level) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new ChartException("The PNG compression level must be in the range 0-9, found " + level);
+        } else {
+            this.level = level;
+            return this;
+        }
+    }
+
+
+    /**
+     * Sets the row filter for this encoder
+     * @param filter    the row filter
+     * @return          this encoder
+     */
+    public PngEncoder withFilter(Filter filter) {
+        this.filter = filter != null ? filter : Filter.NONE;
+        return this;
+    }
+
+
+    /**
+     * Enables parallel compression of image strips on the common fork join pool
+     * @return  this encoder
+     */
+    public PngEncoder withParallelism() {
+        return withParallelism(ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+    }
+
+
+    /**
+     * Enables parallel compression of image strips on the executor specified
+     * Images smaller than 128KB per strip use fewer strips, so small images are still encoded in one pass.
+     * @param executor      the executor to compress strips on, null to encode serially
+     * @param parallelism   the maximum number of strips to compress concurrently
+     * @return              this encoder
+     */
+    public PngEncoder withParallelism(Executor executor, int parallelism) {
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+
+    @Override
+    public void encode(BufferedImage image, boolean alpha, OutputStream os) throws IOException {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int bpp = alpha ? 4 : 3;
+        final int rowBytes = 1 + width * bpp;
+        final long totalBytes = (long)rowBytes * height;
+        final int strips = executor == null ? 1 : (int)Math.max(1, Math.min(parallelism, totalBytes / MIN_STRIP_BYTES));
+        final int rowsPerStrip = (height + strips - 1) / Math.max(1, strips);
+        final int stripCount = height == 0 ? 0 : (height + rowsPerStrip - 1) / rowsPerStrip;
+        final byte[][] filtered = new byte[stripCount][];
+        final byte[][] deflated = new byte[stripCount][];
+        final long[] checksums = new long[stripCount];
+        if (stripCount <= 1) {
+            for (int i=0; i<stripCount; ++i) {
+                filtered[i] = filter(image, alpha, 0, height);
+                deflated[i] = deflate(filtered[i], null, true);
+                checksums[i] = adler32(filtered[i]);
+            }
+        } else {
+            try {
+                final CompletableFuture<?>[] filters = new CompletableFuture<?>[stripCount];
+                for (int i=0; i<stripCount; ++i) {
+                    final int strip = i;
+                    final int from = strip * rowsPerStrip;
+                    final int to = Math.min(height, from + rowsPerStrip);
+                    filters[i] = CompletableFuture.runAsync(() -> {
+                        filtered[strip] = filter(image, alpha, from, to);
+                        checksums[strip] = adler32(filtered[strip]);
+                    }, executor);
+                }
+                CompletableFuture.allOf(filters).join();
+                final CompletableFuture<?>[] deflates = new CompletableFuture<?>[stripCount];
+                for (int i=0; i<stripCount; ++i) {
+                    final int strip = i;
+                    final byte[] dictionary = strip > 0 ? filtered[strip - 1] : null;
+                    deflates[i] = CompletableFuture.runAsync(() -> {
+                        deflated[strip] = deflate(filtered[strip], dictionary, strip == stripCount - 1);
+                    }, executor);
+                }
+                CompletableFuture.allOf(deflates).join();
+            } catch (CompletionException ex) {
+                throw new ChartException("Failed to encode PNG image", ex.getCause());
+            }
+        }
+        long checksum = 1L;
+        for (int i=0; i<stripCount; ++i) {
+            checksum = combine(checksum, checksums[i], filtered[i].length);
+        }
+        final byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = 8;
+        header[9] = (byte)(alpha ? 6 : 2);
+        os.write(SIGNATURE);
+        writeChunk(os, "IHDR", header, 0, header.length);
+        final byte[] zlibHeader = {0x78, (byte)(level <= 1 ? 0x01 : level <= 5 ? 0x5E : level == 6 ? 0x9C : 0xDA)};
+        writeChunk(os, "IDAT", zlibHeader, 0, zlibHeader.length);
+        for (byte[] bytes : deflated) {
+            writeChunk(os, "IDAT", bytes, 0, bytes.length);
+        }
+        final byte[] trailer = new byte[4];
+        writeInt(trailer, 0, (int)checksum);
+        writeChunk(os, "IDAT", trailer, 0, trailer.length);
+        writeChunk(os, "IEND", new byte[0], 0, 0);
+    }
+
+
+    /**
+     * Returns the filtered scanlines for a range of rows in the image, each prefixed with its filter type
+     * @param image     the image to read pixels from
+     * @param alpha     true to include the alpha channel
+     * @param from      the first row, inclusive
+     * @param to        the last row, exclusive
+     * @return          the filtered scanlines
+     */
+    private byte[] filter(BufferedImage image, boolean alpha, int from, int to) {
+        final int width = image.getWidth();
+        final int bpp = alpha ? 4 : 3;
+        final int length = width * bpp;
+        final int[] argb = new int[width];
+        final byte[] result = new byte[(length + 1) * (to - from)];
+        byte[] prior = new byte[length];
+        byte[] current = new byte[length];
+        final byte[][] candidates = filter == Filter.ADAPTIVE ? new byte[5][length] : null;
+        if (from > 0) {
+            pixels(image, alpha, from - 1, argb, prior);
+        }
+        for (int row=from; row<to; ++row) {
+            pixels(image, alpha, row, argb, current);
+            final int offset = (row - from) * (length + 1);
+            if (filter != Filter.ADAPTIVE) {
+                result[offset] = (byte)filter.ordinal();
+                apply(filter.ordinal(), current, prior, bpp, result, offset + 1);
+            } else {
+                int bestType = 0;
+                long bestSum = Long.MAX_VALUE;
+                for (int type=0; type<5; ++type) {
+                    final byte[] candidate = candidates[type];
+                    apply(type, current, prior, bpp, candidate, 0);
+                    long sum = 0L;
+                    for (int i=0; i<length && sum < bestSum; ++i) {
+                        sum += Math.abs(candidate[i]);
+                    }
+                    if (sum < bestSum) {
+                        bestSum = sum;
+                        bestType = type;
+                    }
+                }
+                result[offset] = (byte)bestType;
+                System.arraycopy(candidates[bestType], 0, result, offset + 1, length);
+            }
+            final byte[] swap = prior;
+            prior = current;
+            current = swap;
+        }
+        return result;
+    }
+
+
+    /**
+     * Reads a row of the image as non-premultiplied RGB or RGBA bytes
+     * @param image     the image to read from
+     * @param alpha     true to include the alpha channel
+     * @param row       the row index
+     * @param argb      the buffer for packed ARGB pixels
+     * @param bytes     the buffer to write bytes into
+     */
+    private void pixels(BufferedImage image, boolean alpha, int row, int[] argb, byte[] bytes) {
+        final int width = argb.length;
+        final int type = image.getType();
+        if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) {
+            image.getRaster().getDataElements(0, row, width, 1, argb);
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                for (int i=0; i<width; ++i) {
+                    argb[i] |= 0xFF000000;
+                }
+            }
+        } else {
+            image.getRGB(0, row, width, 1, argb, 0, width);
+        }
+        if (alpha) {
+            for (int i=0, j=0; i<width; ++i) {
+                final int pixel = argb[i];
+                bytes[j++] = (byte)(pixel >> 16);
+                bytes[j++] = (byte)(pixel >> 8);
+                bytes[j++] = (byte)pixel;
+                bytes[j++] = (byte)(pixel >>> 24);
+            }
+        } else {
+            for (int i=0, j=0; i<width; ++i) {
+                final int pixel = argb[i];
+                bytes[j++] = (byte)(pixel >> 16);
+                bytes[j++] = (byte)(pixel >> 8);
+                bytes[j++] = (byte)pixel;
+            }
+        }
+    }
+
+
+    /**
+     * Applies a PNG filter type to a row of bytes
+     * @param type      the filter type from 0 to 4
+     * @param current   the raw bytes of the current row
+     * @param prior     the raw bytes of the prior row, all zero for the first row of the image
+     * @param bpp       the number of bytes per pixel
+     * @param target    the array to write filtered bytes into
+     * @param offset    the offset into the target array
+     */
+    private static void apply(int type, byte[] current, byte[] prior, int bpp, byte[] target, int offset) {
+        final int length = current.length;
+        switch (type) {
+            case 0:
+                System.arraycopy(current, 0, target, offset, length);
+                break;
+            case 1:
+                for (int i=0; i<length; ++i) {
+                    final int left = i >= bpp ? current[i - bpp] : 0;
+                    target[offset + i] = (byte)(current[i] - left);
+                }
+                break;
+            case 2:
+                for (int i=0; i<length; ++i) {
+                    target[offset + i] = (byte)(current[i] - prior[i]);
+                }
+                break;
+            case 3:
+                for (int i=0; i<length; ++i) {
+                    final int left = i >= bpp ? current[i - bpp] & 0xFF : 0;
+                    final int up = prior[i] & 0xFF;
+                    target[offset + i] = (byte)(current[i] - ((left + up) >>> 1));
+                }
+                break;
+            case 4:
+                for (int i=0; i<length; ++i) {
+                    final int left = i >= bpp ? current[i - bpp] & 0xFF : 0;
+                    final int up = prior[i] & 0xFF;
+                    final int upLeft = i >= bpp ? prior[i - bpp] & 0xFF : 0;
+                    final int p = left + up - upLeft;
+                    final int pa = Math.abs(p - left);
+                    final int pb = Math.abs(p - up);
+                    final int pc = Math.abs(p - upLeft);
+                    final int predictor = pa <= pb && pa <= pc ? left : pb <= pc ? up : upLeft;
+                    target[offset + i] = (byte)(current[i] - predictor);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported PNG filter type: " + type);
+        }
+    }
+
+
+    /**
+     * Returns the raw deflated bytes for a strip, ending with a sync flush unless it is the last strip
+     * @param bytes         the filtered bytes to deflate
+     * @param dictionary    the filtered bytes of the prior strip, null for the first strip
+     * @param last          true if this is the last strip in the image
+     * @return              the deflated bytes
+     */
+    private byte[] deflate(byte[] bytes, byte[] dictionary, boolean last) {
+        final Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                final int length = Math.min(WINDOW_SIZE, dictionary.length);
+                deflater.setDictionary(dictionary, dictionary.length - length, length);
+            }
+            deflater.setInput(bytes);
+            final byte[] buffer = new byte[1024 * 64];
+            final ByteArrayOutputStream result = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    final int count = deflater.deflate(buffer);
+                    result.write(buffer, 0, count);
+                }
+            } else {
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    result.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+            return result.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+
+    /**
+     * Returns the Adler-32 checksum of the bytes specified
+     * @param bytes the bytes to checksum
+     * @return      the checksum
+     */
+    private static long adler32(byte[] bytes) {
+        final Adler32 adler32 = new Adler32();
+        adler32.update(bytes, 0, bytes.length);
+        return adler32.getValue();
+    }
+
+
+    /**
+     * Returns the Adler-32 checksum of two concatenated sequences given their individual checksums, as in zlib
+     * @param adler1    the checksum of the first sequence
+     * @param adler2    the checksum of the second sequence
+     * @param length2   the length of the second sequence
+     * @return          the combined checksum
+     */
+    private static long combine(long adler1, long adler2, long length2) {
+        final long base = 65521L;
+        final long remainder = length2 % base;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % base;
+        sum1 += (adler2 & 0xFFFF) + base - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + base - remainder;
+        if (sum1 >= base) sum1 -= base;
+        if (sum1 >= base) sum1 -= base;
+        if (sum2 >= (base << 1)) sum2 -= (base << 1);
+        if (sum2 >= base) sum2 -= base;
+        return sum1 | (sum2 << 16);
+    }
+
+
+    /**
+     * Writes a PNG chunk with its length and CRC to the output stream
+     * @param os        the output stream
+     * @param type      the four character chunk type
+     * @param data      the chunk data
+     * @param offset    the offset into the data
+     * @param length    the number of data bytes
+     * @throws IOException  if there is an I/O exception
+     */
+    private static void writeChunk(OutputStream os, String type, byte[] data, int offset, int length) throws IOException {
+        final byte[] header = new byte[8];
+        writeInt(header, 0, length);
+        for (int i=0; i<4; ++i) {
+            header[4 + i] = (byte)type.charAt(i);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(header, 4, 4);
+        crc.update(data, offset, length);
+        final byte[] trailer = new byte[4];
+        writeInt(trailer, 0, (int)crc.getValue());
+        os.write(header);
+        os.write(data, offset, length);
+        os.write(trailer);
+    }
+
+
+    /**
+     * Writes a big endian int into the array at the offset specified
+     * @param bytes     the target array
+     * @param offset    the offset into the array
+     * @param value     the value to write
+     */
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte)(value >>> 24);
+        bytes[offset + 1] = (byte)(value >>> 16);
+        bytes[offset + 2] = (byte)(value >>> 8);
+        bytes[offset + 3] = (byte)value;
+    }
+
+}
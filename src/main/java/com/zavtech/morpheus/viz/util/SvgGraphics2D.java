@@ -0,0 +1,1389 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.util;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.GradientPaint;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.LinearGradientPaint;
+import java.awt.MultipleGradientPaint;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.RadialGradientPaint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.text.AttributedCharacterIterator;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
+
+/**
+ * A Graphics2D implementation that streams SVG elements to a Writer as they are drawn, without building a document model
+ *
+ * Geometry is written in device coordinates, so paths need no transform, and consecutive strokes with the same
+ * style and clip are merged into a single path element, joining segments that continue from the previous end point.
+ * A line series drawn one segment at a time therefore becomes one polyline, which keeps the file size proportional
+ * to the number of series rather than the number of segments. Clips and gradients are written as definitions the
+ * first time they are used, and images are embedded as base64 PNG data. Operations that read back pixels, such as
+ * copyArea() and XOR mode, are not supported and are ignored. Calling dispose() on the graphics returned by the
+ * constructor completes the document and flushes the writer, which is not closed.
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class SvgGraphics2D extends Graphics2D {
+
+    private Output output;
+    private boolean root;
+    private Graphics2D metrics;
+    private AffineTransform transform;
+    private Shape clip;
+    private Paint paint = Color.BLACK;
+    private Color color = Color.BLACK;
+    private Color background = Color.WHITE;
+    private Composite composite = AlphaComposite.SrcOver;
+    private Stroke stroke = new BasicStroke(1f);
+    private Font font;
+    private RenderingHints hints;
+    private String strokeStyle;
+    private String fillStyle;
+
+
+    /**
+     * Constructor
+     * @param writer    the writer to stream SVG to, which is flushed but not closed on dispose()
+     * @param width     the width of the drawing area
+     * @param height    the height of the drawing area
+     */
+    public SvgGraphics2D(Writer writer, int width, int height) {
+        this.root = true;
+        this.output = new Output(writer);
+        this.metrics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        this.metrics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+        this.metrics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        this.hints = (RenderingHints)metrics.getRenderingHints().clone();
+        this.font = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+        this.transform = new AffineTransform();
+        this.output.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        this.output.write("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\"");
+        this.output.write(String.format(" width=\"%s\" height=\"%s\" viewBox=\"0 0 %s %s\">\n", width, height, width, height));
+    }
+
+
+    /**
+     * Copy constructor for graphics created from an existing context, which share the same output
+     * @param parent    the graphics to copy state from
+     */
+    private SvgGraphics2D(SvgGraphics2D parent) {
+        this.output = parent.output;
+        this.metrics = (Graphics2D)parent.metrics.create();
+        this.transform = new AffineTransform(parent.transform);
+        this.clip = parent.clip;
+        this.paint = parent.paint;
+        this.color = parent.color;
+        this.background = parent.background;
+        this.composite = parent.composite;
+        this.stroke = parent.stroke;
+        this.font = parent.font;
+        this.hints = (RenderingHints)parent.hints.clone();
+        this.strokeStyle = parent.strokeStyle;
+        this.fillStyle = parent.fillStyle;
+    }
+
+
+    @Override
+    public Graphics create() {
+        return new SvgGraphics2D(this);
+    }
+
+
+    @Override
+    public void dispose() {
+        if (!root) {
+            this.metrics.dispose();
+        } else if (!output.disposed) {
+            this.output.endPath();
+            this.output.write("</svg>\n");
+            this.output.flush();
+            this.output.disposed = true;
+            this.metrics.dispose();
+        }
+    }
+
+
+    @Override
+    public void draw(Shape shape) {
+        if (!(stroke instanceof BasicStroke)) {
+            this.fill(stroke.createStrokedShape(shape));
+        } else {
+            final String style = strokeStyle();
+            if (style != null) {
+                this.output.beginPath(style);
+                this.output.pathData(shape.getPathIterator(transform), true);
+            }
+        }
+    }
+
+
+    @Override
+    public void fill(Shape shape) {
+        final String style = fillStyle();
+        if (style != null) {
+            final PathIterator iterator = shape.getPathIterator(transform);
+            final String rule = iterator.getWindingRule() == PathIterator.WIND_EVEN_ODD ? " fill-rule=\"evenodd\"" : "";
+            this.output.endPath();
+            this.output.beginPath(style + rule);
+            this.output.pathData(iterator, false);
+            this.output.endPath();
+        }
+    }
+
+
+    @Override
+    public void drawString(String text, float x, float y) {
+        final String fill = paint("fill", false);
+        if (fill != null && text != null && text.length() > 0) {
+            final String clipId = clipId();
+            this.output.endPath();
+            final StringBuilder element = new StringBuilder(128);
+            if (clipId != null) {
+                element.append("<g clip-path=\"url(#").append(clipId).append(")\">");
+            }
+            element.append("<text");
+            if (isTranslation(transform)) {
+                element.append(" x=\"");
+                Output.number(element, x + transform.getTranslateX());
+                element.append("\" y=\"");
+                Output.number(element, y + transform.getTranslateY());
+                element.append("\"");
+            } else {
+                element.append(" x=\"");
+                Output.number(element, x);
+                element.append("\" y=\"");
+                Output.number(element, y);
+                element.append("\" transform=\"").append(matrix(transform)).append("\"");
+            }
+            element.append(" font-family=\"").append(fontFamily(font)).append("\" font-size=\"");
+            Output.number(element, font.getSize2D());
+            element.append("\"");
+            if (font.isBold()) {
+                element.append(" font-weight=\"bold\"");
+            }
+            if (font.isItalic()) {
+                element.append(" font-style=\"italic\"");
+            }
+            element.append(" ").append(fill).append(" xml:space=\"preserve\">");
+            element.append(escape(text)).append("</text>");
+            element.append(clipId != null ? "</g>\n" : "\n");
+            this.output.write(element);
+        }
+    }
+
+
+    @Override
+    public boolean drawImage(Image image, AffineTransform xform, ImageObserver observer) {
+        final int width = image.getWidth(observer);
+        final int height = image.getHeight(observer);
+        if (width > 0 && height > 0) {
+            final AffineTransform imageTransform = new AffineTransform(transform);
+            if (xform != null) {
+                imageTransform.concatenate(xform);
+            }
+            final String clipId = clipId();
+            this.output.endPath();
+            final StringBuilder element = new StringBuilder(128);
+            if (clipId != null) {
+                element.append("<g clip-path=\"url(#").append(clipId).append(")\">");
+            }
+            element.append("<image width=\"").append(width).append("\" height=\"").append(height).append("\"");
+            element.append(" transform=\"").append(matrix(imageTransform)).append("\"");
+            if (composite instanceof AlphaComposite && ((AlphaComposite)composite).getAlpha() < 1f) {
+                element.append(" opacity=\"");
+                Output.number(element, ((AlphaComposite)composite).getAlpha());
+                element.append("\"");
+            }
+            element.append(" preserveAspectRatio=\"none\" xlink:href=\"data:image/png;base64,");
+            this.output.write(element);
+            this.output.png(toBufferedImage(image, width, height));
+            this.output.write(clipId != null ? "\"/></g>\n" : "\"/>\n");
+        }
+        return true;
+    }
+
+
+    @Override
+    public void drawRenderedImage(RenderedImage image, AffineTransform xform) {
+        if (image instanceof BufferedImage) {
+            this.drawImage((BufferedImage)image, xform, null);
+        } else {
+            final BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            final Graphics2D graphics = copy.createGraphics();
+            try {
+                graphics.drawRenderedImage(image, new AffineTransform());
+            } finally {
+                graphics.dispose();
+            }
+            this.drawImage(copy, xform, null);
+        }
+    }
+
+
+    @Override
+    public void drawRenderableImage(RenderableImage image, AffineTransform xform) {
+        this.drawRenderedImage(image.createDefaultRendering(), xform);
+    }
+
+
+    @Override
+    public void drawString(String text, int x, int y) {
+        this.drawString(text, (float)x, (float)y);
+    }
+
+
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+        this.drawString(iterator, (float)x, (float)y);
+    }
+
+
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, float x, float y) {
+        final StringBuilder text = new StringBuilder();
+        for (char c = iterator.first(); c != AttributedCharacterIterator.DONE; c = iterator.next()) {
+            text.append(c);
+        }
+        this.drawString(text.toString(), x, y);
+    }
+
+
+    @Override
+    public void drawGlyphVector(GlyphVector glyphs, float x, float y) {
+        this.fill(glyphs.getOutline(x, y));
+    }
+
+
+    @Override
+    public void drawImage(BufferedImage image, BufferedImageOp op, int x, int y) {
+        final BufferedImage filtered = op != null ? op.filter(image, null) : image;
+        this.drawImage(filtered, AffineTransform.getTranslateInstance(x, y), null);
+    }
+
+
+    @Override
+    public boolean drawImage(Image image, int x, int y, ImageObserver observer) {
+        return drawImage(image, AffineTransform.getTranslateInstance(x, y), observer);
+    }
+
+
+    @Override
+    public boolean drawImage(Image image, int x, int y, int width, int height, ImageObserver observer) {
+        final int imageWidth = image.getWidth(observer);
+        final int imageHeight = image.getHeight(observer);
+        if (imageWidth <= 0 || imageHeight <= 0) {
+            return true;
+        } else {
+            final AffineTransform xform = AffineTransform.getTranslateInstance(x, y);
+            xform.scale((double)width / imageWidth, (double)height / imageHeight);
+            return drawImage(image, xform, observer);
+        }
+    }
+
+
+    @Override
+    public boolean drawImage(Image image, int x, int y, Color bgcolor, ImageObserver observer) {
+        return drawImage(image, x, y, image.getWidth(observer), image.getHeight(observer), bgcolor, observer);
+    }
+
+
+    @Override
+    public boolean drawImage(Image image, int x, int y, int width, int height, Color bgcolor, ImageObserver observer) {
+        if (bgcolor != null) {
+            final Paint priorPaint = paint;
+            this.setPaint(bgcolor);
+            this.fillRect(x, y, width, height);
+            this.setPaint(priorPaint);
+        }
+        return drawImage(image, x, y, width, height, observer);
+    }
+
+
+    @Override
+    public boolean drawImage(Image image, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, ImageObserver observer) {
+        final int imageWidth = image.getWidth(observer);
+        final int imageHeight = image.getHeight(observer);
+        final int x = Math.max(0, Math.min(sx1, sx2));
+        final int y = Math.max(0, Math.min(sy1, sy2));
+        final int width = Math.min(imageWidth, Math.max(sx1, sx2)) - x;
+        final int height = Math.min(imageHeight, Math.max(sy1, sy2)) - y;
+        if (width <= 0 || height <= 0) {
+            return true;
+        } else {
+            final BufferedImage source = toBufferedImage(image, imageWidth, imageHeight).getSubimage(x, y, width, height);
+            final AffineTransform xform = AffineTransform.getTranslateInstance(dx1, dy1);
+            xform.scale((double)(dx2 - dx1) / (sx2 - sx1), (double)(dy2 - dy1) / (sy2 - sy1));
+            xform.translate(sx1 < sx2 ? 0 : -width, sy1 < sy2 ? 0 : -height);
+            return drawImage(source, xform, observer);
+        }
+    }
+
+
+    @Override
+    public boolean drawImage(Image image, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, Color bgcolor, ImageObserver observer) {
+        if (bgcolor != null) {
+            final Paint priorPaint = paint;
+            this.setPaint(bgcolor);
+            this.fillRect(Math.min(dx1, dx2), Math.min(dy1, dy2), Math.abs(dx2 - dx1), Math.abs(dy2 - dy1));
+            this.setPaint(priorPaint);
+        }
+        return drawImage(image, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, observer);
+    }
+
+
+    @Override
+    public boolean hit(Rectangle rect, Shape shape, boolean onStroke) {
+        final Shape target = onStroke ? stroke.createStrokedShape(shape) : shape;
+        return transform.createTransformedShape(target).intersects(rect);
+    }
+
+
+    @Override
+    public GraphicsConfiguration getDeviceConfiguration() {
+        return metrics.getDeviceConfiguration();
+    }
+
+
+    @Override
+    public void setComposite(Composite composite) {
+        if (composite != null && !composite.equals(this.composite)) {
+            this.composite = composite;
+            this.invalidate();
+        }
+    }
+
+
+    @Override
+    public void setPaint(Paint paint) {
+        if (paint != null && !paint.equals(this.paint)) {
+            this.paint = paint;
+            this.color = paint instanceof Color ? (Color)paint : color;
+            this.invalidate();
+        }
+    }
+
+
+    @Override
+    public void setStroke(Stroke stroke) {
+        if (stroke != null && !stroke.equals(this.stroke)) {
+            this.stroke = stroke;
+            this.strokeStyle = null;
+        }
+    }
+
+
+    @Override
+    public void setRenderingHint(RenderingHints.Key key, Object value) {
+        this.hints.put(key, value);
+        this.metrics.setRenderingHint(key, value);
+    }
+
+
+    @Override
+    public Object getRenderingHint(RenderingHints.Key key) {
+        return hints.get(key);
+    }
+
+
+    @Override
+    public void setRenderingHints(Map<?,?> hints) {
+        this.hints.clear();
+        this.hints.putAll(hints);
+        this.metrics.setRenderingHints(hints);
+    }
+
+
+    @Override
+    public void addRenderingHints(Map<?,?> hints) {
+        this.hints.putAll(hints);
+        this.metrics.addRenderingHints(hints);
+    }
+
+
+    @Override
+    public RenderingHints getRenderingHints() {
+        return (RenderingHints)hints.clone();
+    }
+
+
+    @Override
+    public void translate(int x, int y) {
+        this.translate((double)x, (double)y);
+    }
+
+
+    @Override
+    public void translate(double x, double y) {
+        if (x != 0d || y != 0d) {
+            this.transform.translate(x, y);
+            this.invalidate();
+        }
+    }
+
+
+    @Override
+    public void rotate(double theta) {
+        this.transform.rotate(theta);
+        this.invalidate();
+    }
+
+
+    @Override
+    public void rotate(double theta, double x, double y) {
+        this.transform.rotate(theta, x, y);
+        this.invalidate();
+    }
+
+
+    @Override
+    public void scale(double sx, double sy) {
+        this.transform.scale(sx, sy);
+        this.invalidate();
+    }
+
+
+    @Override
+    public void shear(double shx, double shy) {
+        this.transform.shear(shx, shy);
+        this.invalidate();
+    }
+
+
+    @Override
+    public void transform(AffineTransform xform) {
+        this.transform.concatenate(xform);
+        this.invalidate();
+    }
+
+
+    @Override
+    public void setTransform(AffineTransform xform) {
+        if (!transform.equals(xform)) {
+            this.transform = new AffineTransform(xform);
+            this.invalidate();
+        }
+    }
+
+
+    @Override
+    public AffineTransform getTransform() {
+        return new AffineTransform(transform);
+    }
+
+
+    @Override
+    public Paint getPaint() {
+        return paint;
+    }
+
+
+    @Override
+    public Composite getComposite() {
+        return composite;
+    }
+
+
+    @Override
+    public void setBackground(Color color) {
+        this.background = color;
+    }
+
+
+    @Override
+    public Color getBackground() {
+        return background;
+    }
+
+
+    @Override
+    public Stroke getStroke() {
+        return stroke;
+    }
+
+
+    @Override
+    public void clip(Shape shape) {
+        if (shape == null) {
+            this.setClipInternal(null);
+        } else {
+            final Shape device = transform.createTransformedShape(shape);
+            if (clip == null) {
+                this.setClipInternal(device);
+            } else if (clip instanceof Rectangle2D && device instanceof Rectangle2D) {
+                this.setClipInternal(((Rectangle2D)clip).createIntersection((Rectangle2D)device));
+            } else {
+                final Area area = new Area(clip);
+                area.intersect(new Area(device));
+                this.setClipInternal(area);
+            }
+        }
+    }
+
+
+    @Override
+    public FontRenderContext getFontRenderContext() {
+        return metrics.getFontRenderContext();
+    }
+
+
+    @Override
+    public Color getColor() {
+        return color;
+    }
+
+
+    @Override
+    public void setColor(Color color) {
+        this.setPaint(color);
+    }
+
+
+    @Override
+    public void setPaintMode() {
+        this.setComposite(AlphaComposite.SrcOver);
+    }
+
+
+    @Override
+    public void setXORMode(Color color) {
+        //  XOR mode cannot be expressed in SVG
+    }
+
+
+    @Override
+    public Font getFont() {
+        return font;
+    }
+
+
+    @Override
+    public void setFont(Font font) {
+        if (font != null) {
+            this.font = font;
+            this.metrics.setFont(font);
+        }
+    }
+
+
+    @Override
+    public FontMetrics getFontMetrics(Font font) {
+        return metrics.getFontMetrics(font);
+    }
+
+
+    @Override
+    public Rectangle getClipBounds() {
+        final Shape userClip = getClip();
+        return userClip != null ? userClip.getBounds() : null;
+    }
+
+
+    @Override
+    public void clipRect(int x, int y, int width, int height) {
+        this.clip(new Rectangle(x, y, width, height));
+    }
+
+
+    @Override
+    public void setClip(int x, int y, int width, int height) {
+        this.setClip(new Rectangle(x, y, width, height));
+    }
+
+
+    @Override
+    public Shape getClip() {
+        try {
+            return clip != null ? transform.createInverse().createTransformedShape(clip) : null;
+        } catch (NoninvertibleTransformException ex) {
+            return null;
+        }
+    }
+
+
+    @Override
+    public void setClip(Shape shape) {
+        this.setClipInternal(shape != null ? transform.createTransformedShape(shape) : null);
+    }
+
+
+    @Override
+    public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+        //  The drawing cannot be read back from an SVG stream
+    }
+
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        this.draw(new Line2D.Double(x1, y1, x2, y2));
+    }
+
+
+    @Override
+    public void drawRect(int x, int y, int width, int height) {
+        this.draw(new Rectangle(x, y, width, height));
+    }
+
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        this.fill(new Rectangle(x, y, width, height));
+    }
+
+
+    @Override
+    public void clearRect(int x, int y, int width, int height) {
+        final Paint priorPaint = paint;
+        final Composite priorComposite = composite;
+        this.setComposite(AlphaComposite.SrcOver);
+        this.setPaint(background);
+        this.fillRect(x, y, width, height);
+        this.setPaint(priorPaint);
+        this.setComposite(priorComposite);
+    }
+
+
+    @Override
+    public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        this.draw(new RoundRectangle2D.Double(x, y, width, height, arcWidth, arcHeight));
+    }
+
+
+    @Override
+    public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        this.fill(new RoundRectangle2D.Double(x, y, width, height, arcWidth, arcHeight));
+    }
+
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        this.draw(new Ellipse2D.Double(x, y, width, height));
+    }
+
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        this.fill(new Ellipse2D.Double(x, y, width, height));
+    }
+
+
+    @Override
+    public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        this.draw(new Arc2D.Double(x, y, width, height, startAngle, arcAngle, Arc2D.OPEN));
+    }
+
+
+    @Override
+    public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        this.fill(new Arc2D.Double(x, y, width, height, startAngle, arcAngle, Arc2D.PIE));
+    }
+
+
+    @Override
+    public void drawPolyline(int[] xPoints, int[] yPoints, int count) {
+        if (count > 1) {
+            final Path2D path = new Path2D.Double();
+            path.moveTo(xPoints[0], yPoints[0]);
+            for (int i=1; i<count; ++i) {
+                path.lineTo(xPoints[i], yPoints[i]);
+            }
+            this.draw(path);
+        }
+    }
+
+
+    @Override
+    public void drawPolygon(int[] xPoints, int[] yPoints, int count) {
+        this.draw(new Polygon(xPoints, yPoints, count));
+    }
+
+
+    @Override
+    public void fillPolygon(int[] xPoints, int[] yPoints, int count) {
+        this.fill(new Polygon(xPoints, yPoints, count));
+    }
+
+
+    /**
+     * Sets the clip in device space, and invalidates styles that reference the clip
+     * @param deviceClip    the clip in device space, null for no clip
+     */
+    private void setClipInternal(Shape deviceClip) {
+        this.clip = deviceClip;
+        this.invalidate();
+    }
+
+
+    /**
+     * Invalidates the cached styles so they are derived again from the current state on next use
+     */
+    private void invalidate() {
+        this.strokeStyle = null;
+        this.fillStyle = null;
+    }
+
+
+    /**
+     * Returns the attributes for stroking shapes with the current state, null if strokes are invisible
+     * @return  the stroke attributes
+     */
+    private String strokeStyle() {
+        if (strokeStyle == null) {
+            final String strokePaint = paint("stroke", true);
+            if (strokePaint != null) {
+                final BasicStroke basic = (BasicStroke)stroke;
+                final double scale = Math.sqrt(Math.abs(transform.getDeterminant()));
+                final StringBuilder style = new StringBuilder(128);
+                style.append("fill=\"none\" ").append(strokePaint).append(" stroke-width=\"");
+                Output.number(style, basic.getLineWidth() > 0f ? basic.getLineWidth() * scale : 1d);
+                style.append("\"");
+                switch (basic.getEndCap()) {
+                    case BasicStroke.CAP_ROUND:     style.append(" stroke-linecap=\"round\"");     break;
+                    case BasicStroke.CAP_SQUARE:    style.append(" stroke-linecap=\"square\"");    break;
+                }
+                switch (basic.getLineJoin()) {
+                    case BasicStroke.JOIN_ROUND:    style.append(" stroke-linejoin=\"round\"");    break;
+                    case BasicStroke.JOIN_BEVEL:    style.append(" stroke-linejoin=\"bevel\"");    break;
+                    default:
+                        style.append(" stroke-miterlimit=\"");
+                        Output.number(style, Math.max(1f, basic.getMiterLimit()));
+                        style.append("\"");
+                }
+                final float[] dashes = basic.getDashArray();
+                if (dashes != null && dashes.length > 0) {
+                    style.append(" stroke-dasharray=\"");
+                    for (int i=0; i<dashes.length; ++i) {
+                        style.append(i > 0 ? "," : "");
+                        Output.number(style, dashes[i] * scale);
+                    }
+                    style.append("\"");
+                    if (basic.getDashPhase() != 0f) {
+                        style.append(" stroke-dashoffset=\"");
+                        Output.number(style, basic.getDashPhase() * scale);
+                        style.append("\"");
+                    }
+                }
+                final String clipId = clipId();
+                if (clipId != null) {
+                    style.append(" clip-path=\"url(#").append(clipId).append(")\"");
+                }
+                this.strokeStyle = style.toString();
+            }
+        }
+        return strokeStyle;
+    }
+
+
+    /**
+     * Returns the attributes for filling shapes with the current state, null if fills are invisible
+     * @return  the fill attributes
+     */
+    private String fillStyle() {
+        if (fillStyle == null) {
+            final String fillPaint = paint("fill", true);
+            if (fillPaint != null) {
+                final String clipId = clipId();
+                this.fillStyle = clipId == null ? fillPaint : fillPaint + " clip-path=\"url(#" + clipId + ")\"";
+            }
+        }
+        return fillStyle;
+    }
+
+
+    /**
+     * Returns the paint attributes for the prefix specified, null if the current paint is fully transparent
+     * @param prefix        the attribute prefix, either fill or stroke
+     * @param gradients     true to support gradients, which are defined in device space
+     * @return              the paint attributes
+     */
+    private String paint(String prefix, boolean gradients) {
+        final float alpha = composite instanceof AlphaComposite ? ((AlphaComposite)composite).getAlpha() : 1f;
+        if (paint instanceof Color) {
+            final Color paintColor = (Color)paint;
+            final double opacity = alpha * paintColor.getAlpha() / 255d;
+            return opacity <= 0d ? null : prefix + "=\"" + hex(paintColor) + "\"" + opacity(prefix, opacity);
+        } else if (gradients && paint instanceof GradientPaint) {
+            final GradientPaint gradient = (GradientPaint)paint;
+            final StringBuilder definition = new StringBuilder(256);
+            definition.append(" gradientUnits=\"userSpaceOnUse\"");
+            this.points(definition, "x1", "y1", gradient.getPoint1());
+            this.points(definition, "x2", "y2", gradient.getPoint2());
+            definition.append(gradient.isCyclic() ? " spreadMethod=\"reflect\">" : ">");
+            this.stop(definition, 0f, gradient.getColor1());
+            this.stop(definition, 1f, gradient.getColor2());
+            final String id = output.define("linearGradient", definition.toString());
+            return prefix + "=\"url(#" + id + ")\"" + opacity(prefix, alpha);
+        } else if (gradients && paint instanceof LinearGradientPaint) {
+            final LinearGradientPaint gradient = (LinearGradientPaint)paint;
+            final StringBuilder definition = new StringBuilder(256);
+            definition.append(" gradientUnits=\"userSpaceOnUse\"");
+            this.gradientTransform(definition, gradient);
+            this.points(definition, "x1", "y1", gradient.getStartPoint());
+            this.points(definition, "x2", "y2", gradient.getEndPoint());
+            this.stops(definition, gradient);
+            final String id = output.define("linearGradient", definition.toString());
+            return prefix + "=\"url(#" + id + ")\"" + opacity(prefix, alpha);
+        } else if (gradients && paint instanceof RadialGradientPaint) {
+            final RadialGradientPaint gradient = (RadialGradientPaint)paint;
+            final StringBuilder definition = new StringBuilder(256);
+            definition.append(" gradientUnits=\"userSpaceOnUse\"");
+            this.gradientTransform(definition, gradient);
+            this.points(definition, "cx", "cy", gradient.getCenterPoint());
+            this.points(definition, "fx", "fy", gradient.getFocusPoint());
+            definition.append(" r=\"");
+            Output.number(definition, gradient.getRadius());
+            definition.append("\"");
+            this.stops(definition, gradient);
+            final String id = output.define("radialGradient", definition.toString());
+            return prefix + "=\"url(#" + id + ")\"" + opacity(prefix, alpha);
+        } else {
+            //  Other paints, and gradients on text, fall back to the last solid colour set
+            final double opacity = alpha * color.getAlpha() / 255d;
+            return opacity <= 0d ? null : prefix + "=\"" + hex(color) + "\"" + opacity(prefix, opacity);
+        }
+    }
+
+
+    /**
+     * Appends the point as a pair of attributes, transformed into device space
+     * @param definition    the definition to append to
+     * @param xName         the x attribute name
+     * @param yName         the y attribute name
+     * @param point         the point in user space
+     */
+    private void points(StringBuilder definition, String xName, String yName, Point2D point) {
+        final Point2D device = transform.transform(point, null);
+        definition.append(" ").append(xName).append("=\"");
+        Output.number(definition, device.getX());
+        definition.append("\" ").append(yName).append("=\"");
+        Output.number(definition, device.getY());
+        definition.append("\"");
+    }
+
+
+    /**
+     * Appends the gradient transform of a multiple gradient paint, with points then transformed only by the graphics
+     * @param definition    the definition to append to
+     * @param gradient      the gradient paint
+     */
+    private void gradientTransform(StringBuilder definition, MultipleGradientPaint gradient) {
+        final AffineTransform paintTransform = gradient.getTransform();
+        if (paintTransform != null && !paintTransform.isIdentity()) {
+            final AffineTransform device = new AffineTransform(transform);
+            device.concatenate(paintTransform);
+            final AffineTransform inverse;
+            try {
+                inverse = transform.createInverse();
+            } catch (NoninvertibleTransformException ex) {
+                return;
+            }
+            device.concatenate(inverse);
+            definition.append(" gradientTransform=\"").append(matrix(device)).append("\"");
+        }
+    }
+
+
+    /**
+     * Appends the spread method and colour stops of a multiple gradient paint and closes the opening tag
+     * @param definition    the definition to append to
+     * @param gradient      the gradient paint
+     */
+    private void stops(StringBuilder definition, MultipleGradientPaint gradient) {
+        switch (gradient.getCycleMethod()) {
+            case REFLECT:   definition.append(" spreadMethod=\"reflect\">");   break;
+            case REPEAT:    definition.append(" spreadMethod=\"repeat\">");    break;
+            default:        definition.append(">");                            break;
+        }
+        final float[] fractions = gradient.getFractions();
+        final Color[] colors = gradient.getColors();
+        for (int i=0; i<fractions.length; ++i) {
+            this.stop(definition, fractions[i], colors[i]);
+        }
+    }
+
+
+    /**
+     * Appends a gradient stop element
+     * @param definition    the definition to append to
+     * @param offset        the offset of the stop from 0 to 1
+     * @param stopColor     the colour at the stop
+     */
+    private void stop(StringBuilder definition, float offset, Color stopColor) {
+        definition.append("<stop offset=\"");
+        Output.number(definition, offset);
+        definition.append("\" stop-color=\"").append(hex(stopColor)).append("\"");
+        definition.append(opacity("stop", stopColor.getAlpha() / 255d)).append("/>");
+    }
+
+
+    /**
+     * Returns the id of the definition for the current clip, writing the definition if required
+     * @return  the clip id, null if there is no clip
+     */
+    private String clipId() {
+        if (clip == null) {
+            return null;
+        } else {
+            final StringBuilder definition = new StringBuilder(128);
+            definition.append("><path d=\"");
+            Output.pathData(definition, clip.getPathIterator(null));
+            definition.append("\"/>");
+            return output.define("clipPath", definition.toString());
+        }
+    }
+
+
+    /**
+     * Returns true if the transform is at most a translation
+     * @param xform the transform to check
+     * @return      true if only a translation
+     */
+    private static boolean isTranslation(AffineTransform xform) {
+        final int type = xform.getType();
+        return type == AffineTransform.TYPE_IDENTITY || type == AffineTransform.TYPE_TRANSLATION;
+    }
+
+
+    /**
+     * Returns an SVG matrix expression for the transform
+     * @param xform the transform
+     * @return      the matrix expression
+     */
+    private static String matrix(AffineTransform xform) {
+        final StringBuilder matrix = new StringBuilder(64).append("matrix(");
+        final double[] values = new double[6];
+        xform.getMatrix(values);
+        for (int i=0; i<values.length; ++i) {
+            matrix.append(i > 0 ? " " : "");
+            Output.precise(matrix, values[i]);
+        }
+        return matrix.append(")").toString();
+    }
+
+
+    /**
+     * Returns the opacity attribute for the prefix, or an empty string if fully opaque
+     * @param prefix    the attribute prefix
+     * @param opacity   the opacity from 0 to 1
+     * @return          the opacity attribute
+     */
+    private static String opacity(String prefix, double opacity) {
+        if (opacity >= 1d) {
+            return "";
+        } else {
+            final StringBuilder attribute = new StringBuilder(32).append(" ").append(prefix).append("-opacity=\"");
+            Output.precise(attribute, opacity);
+            return attribute.append("\"").toString();
+        }
+    }
+
+
+    /**
+     * Returns the hex RGB expression for a colour
+     * @param color the colour
+     * @return      the hex expression
+     */
+    private static String hex(Color color) {
+        final String hex = Integer.toHexString(color.getRGB() & 0xFFFFFF);
+        return "#000000".substring(0, 7 - hex.length()) + hex;
+    }
+
+
+    /**
+     * Returns the CSS font family list for a font, mapping Java logical fonts to generic families
+     * @param font  the font
+     * @return      the font family list
+     */
+    private static String fontFamily(Font font) {
+        final String family = font.getFamily();
+        switch (family) {
+            case Font.DIALOG:
+            case Font.SANS_SERIF:   return "sans-serif";
+            case Font.SERIF:        return "serif";
+            case Font.DIALOG_INPUT:
+            case Font.MONOSPACED:   return "monospace";
+            default:                return escape(family.replace("'", "")).replace("&apos;", "") + ", sans-serif";
+        }
+    }
+
+
+    /**
+     * Returns the text with XML special characters escaped
+     * @param text  the text to escape
+     * @return      the escaped text
+     */
+    private static String escape(String text) {
+        final StringBuilder result = new StringBuilder(text.length() + 16);
+        for (int i=0; i<text.length(); ++i) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '&':   result.append("&amp;");     break;
+                case '<':   result.append("&lt;");      break;
+                case '>':   result.append("&gt;");      break;
+                case '"':   result.append("&quot;");    break;
+                case '\'':  result.append("&apos;");    break;
+                default:
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        result.append(c);
+                    }
+            }
+        }
+        return result.toString();
+    }
+
+
+    /**
+     * Returns the image as a BufferedImage, drawing it into a new image if required
+     * @param image     the image
+     * @param width     the image width
+     * @param height    the image height
+     * @return          the buffered image
+     */
+    private static BufferedImage toBufferedImage(Image image, int width, int height) {
+        if (image instanceof BufferedImage) {
+            return (BufferedImage)image;
+        } else {
+            final BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            final Graphics2D graphics = result.createGraphics();
+            try {
+                graphics.drawImage(image, 0, 0, null);
+            } finally {
+                graphics.dispose();
+            }
+            return result;
+        }
+    }
+
+
+
+    /**
+     * The SVG output shared by a graphics context and all contexts created from it
+     */
+    private static class Output {
+
+        private static final int MAX_DEFINITIONS = 256;
+
+        private Writer writer;
+        private boolean disposed;
+        private String pathStyle;
+        private boolean hasLast;
+        private long lastX;
+        private long lastY;
+        private int definitionCount;
+        private StringBuilder buffer = new StringBuilder(1024);
+        private Map<String,String> definitionMap = new LinkedHashMap<String,String>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,String> eldest) {
+                return size() > MAX_DEFINITIONS;
+            }
+        };
+
+        /**
+         * Constructor
+         * @param writer    the writer to stream SVG to
+         */
+        Output(Writer writer) {
+            this.writer = writer;
+        }
+
+        /**
+         * Writes the text to the output
+         * @param text  the text to write
+         */
+        void write(CharSequence text) {
+            try {
+                this.writer.append(text);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to write SVG output", ex);
+            }
+        }
+
+        /**
+         * Flushes the underlying writer
+         */
+        void flush() {
+            try {
+                this.writer.flush();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to flush SVG output", ex);
+            }
+        }
+
+        /**
+         * Opens a path element with the style specified, unless a path with the same style is already open
+         * @param style the path attributes
+         */
+        void beginPath(String style) {
+            if (!style.equals(pathStyle)) {
+                this.endPath();
+                this.pathStyle = style;
+                this.write("<path ");
+                this.write(style);
+                this.write(" d=\"");
+            }
+        }
+
+        /**
+         * Closes the open path element, if any
+         */
+        void endPath() {
+            if (pathStyle != null) {
+                this.pathStyle = null;
+                this.hasLast = false;
+                this.write("\"/>\n");
+            }
+        }
+
+        /**
+         * Streams the path data for the iterator into the open path element
+         * @param iterator      the path iterator in device space
+         * @param continuation  true to omit a leading move to the end point of the previous segment
+         */
+        void pathData(PathIterator iterator, boolean continuation) {
+            final double[] coords = new double[6];
+            boolean first = true;
+            long moveX = 0L, moveY = 0L;
+            this.buffer.setLength(0);
+            while (!iterator.isDone()) {
+                final int type = iterator.currentSegment(coords);
+                switch (type) {
+                    case PathIterator.SEG_MOVETO:
+                        moveX = Math.round(coords[0] * 100d);
+                        moveY = Math.round(coords[1] * 100d);
+                        if (!first || !continuation || !hasLast || moveX != lastX || moveY != lastY) {
+                            buffer.append('M');
+                            point(buffer, coords, 0);
+                        }
+                        this.lastX = moveX;
+                        this.lastY = moveY;
+                        break;
+                    case PathIterator.SEG_LINETO:
+                        buffer.append('L');
+                        point(buffer, coords, 0);
+                        this.lastX = Math.round(coords[0] * 100d);
+                        this.lastY = Math.round(coords[1] * 100d);
+                        break;
+                    case PathIterator.SEG_QUADTO:
+                        buffer.append('Q');
+                        point(buffer, coords, 0);
+                        buffer.append(' ');
+                        point(buffer, coords, 2);
+                        this.lastX = Math.round(coords[2] * 100d);
+                        this.lastY = Math.round(coords[3] * 100d);
+                        break;
+                    case PathIterator.SEG_CUBICTO:
+                        buffer.append('C');
+                        point(buffer, coords, 0);
+                        buffer.append(' ');
+                        point(buffer, coords, 2);
+                        buffer.append(' ');
+                        point(buffer, coords, 4);
+                        this.lastX = Math.round(coords[4] * 100d);
+                        this.lastY = Math.round(coords[5] * 100d);
+                        break;
+                    case PathIterator.SEG_CLOSE:
+                        buffer.append('Z');
+                        this.lastX = moveX;
+                        this.lastY = moveY;
+                        break;
+                }
+                this.hasLast = true;
+                first = false;
+                iterator.next();
+                if (buffer.length() > 8192) {
+                    this.write(buffer);
+                    this.buffer.setLength(0);
+                }
+            }
+            this.write(buffer);
+        }
+
+        /**
+         * Returns the id of a definition, writing the definition the first time it is seen
+         * @param tag           the definition element tag
+         * @param definition    the attributes and content of the definition
+         * @return              the definition id
+         */
+        String define(String tag, String definition) {
+            final String key = tag + definition;
+            final String existing = definitionMap.get(key);
+            if (existing != null) {
+                return existing;
+            } else {
+                final String id = "def_" + (++definitionCount);
+                this.endPath();
+                this.write("<defs><" + tag + " id=\"" + id + "\"" + definition + "</" + tag + "></defs>\n");
+                this.definitionMap.put(key, id);
+                return id;
+            }
+        }
+
+        /**
+         * Encodes the image as base64 PNG data streamed directly to the output
+         * @param image the image to encode
+         */
+        void png(BufferedImage image) {
+            final OutputStream os = Base64.getEncoder().wrap(new OutputStream() {
+                @Override
+                public void write(int value) throws IOException {
+                    writer.write(value);
+                }
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    for (int i=0; i<length; ++i) {
+                        writer.write(bytes[offset + i]);
+                    }
+                }
+            });
+            try {
+                ImageIO.write(image, "png", os);
+                os.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to write image to SVG output", ex);
+            }
+        }
+
+        /**
+         * Appends the path data for an iterator, without merging
+         * @param buffer    the buffer to append to
+         * @param iterator  the path iterator
+         */
+        static void pathData(StringBuilder buffer, PathIterator iterator) {
+            final double[] coords = new double[6];
+            while (!iterator.isDone()) {
+                switch (iterator.currentSegment(coords)) {
+                    case PathIterator.SEG_MOVETO:   buffer.append('M');   point(buffer, coords, 0);   break;
+                    case PathIterator.SEG_LINETO:   buffer.append('L');   point(buffer, coords, 0);   break;
+                    case PathIterator.SEG_QUADTO:
+                        buffer.append('Q');
+                        point(buffer, coords, 0);
+                        buffer.append(' ');
+                        point(buffer, coords, 2);
+                        break;
+                    case PathIterator.SEG_CUBICTO:
+                        buffer.append('C');
+                        point(buffer, coords, 0);
+                        buffer.append(' ');
+                        point(buffer, coords, 2);
+                        buffer.append(' ');
+                        point(buffer, coords, 4);
+                        break;
+                    case PathIterator.SEG_CLOSE:
+                        buffer.append('Z');
+                        break;
+                }
+                iterator.next();
+            }
+        }
+
+        /**
+         * Appends a coordinate pair from the array at the offset specified
+         * @param buffer    the buffer to append to
+         * @param coords    the coordinates
+         * @param offset    the offset of the x coordinate
+         */
+        static void point(StringBuilder buffer, double[] coords, int offset) {
+            number(buffer, coords[offset]);
+            buffer.append(' ');
+            number(buffer, coords[offset + 1]);
+        }
+
+        /**
+         * Appends a number rounded to two decimal places, which is well below the resolution of any display
+         * @param buffer    the buffer to append to
+         * @param value     the value to append
+         */
+        static void number(StringBuilder buffer, double value) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                buffer.append('0');
+            } else {
+                long scaled = Math.round(value * 100d);
+                if (scaled < 0L) {
+                    buffer.append('-');
+                    scaled = -scaled;
+                }
+                buffer.append(scaled / 100L);
+                final int fraction = (int)(scaled % 100L);
+                if (fraction != 0) {
+                    buffer.append('.');
+                    if (fraction < 10) {
+                        buffer.append('0').append(fraction);
+                    } else if (fraction % 10 == 0) {
+                        buffer.append(fraction / 10);
+                    } else {
+                        buffer.append(fraction);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Appends a number with enough precision for transform matrices and opacities
+         * @param buffer    the buffer to append to
+         * @param value     the value to append
+         */
+        static void precise(StringBuilder buffer, double value) {
+            final double rounded = Math.round(value * 1000000d) / 1000000d;
+            if (rounded == Math.rint(rounded)) {
+                buffer.append((long)rounded);
+            } else {
+                buffer.append(rounded);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.util;
+
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * A utility class that selects a representative subset of points from a large XY series so it can be plotted cheaply.
+ *
+ * The Largest-Triangle-Three-Buckets algorithm used here was described by Sveinn Steinarsson in his 2013 thesis
+ * "Downsampling Time Series for Visual Representation".
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class XySampler {
+
+    /**
+     * Private constructor
+     */
+    private XySampler() {
+        super();
+    }
+
+
+    /**
+     * Returns the indexes of items selected using the Largest-Triangle-Three-Buckets algorithm
+     * The first and last items in the range are always selected, and the result is in ascending order. Missing values
+     * are never chosen to represent a bucket, but the first missing value in each bucket is also selected so that a
+     * renderer that breaks lines at missing values still shows the gap, in which case the result may exceed the threshold.
+     * After a gap the triangle has no valid anchor, so the next item is chosen by its distance from the following bucket.
+     * @param from          the index of the first item in range, inclusive
+     * @param to            the index of the last item in range, inclusive
+     * @param threshold     the number of buckets, including the first and last items
+     * @param x             the function that yields the x value for an item index
+     * @param y             the function that yields the y value for an item index
+     * @return              the ascending array of selected item indexes
+     */
+    public static int[] lttb(int from, int to, int threshold, IntToDoubleFunction x, IntToDoubleFunction y) {
+        final int count = to - from + 1;
+        if (count <= 0) {
+            return new int[0];
+        } else if (threshold < 3 || count <= threshold) {
+            return IntStream.rangeClosed(from, to).toArray();
+        } else {
+            int k = 0;
+            int a = from;
+            final int[] result = new int[threshold * 2];
+            final double bucketSize = (double)(count - 2) / (threshold - 2);
+            result[k++] = a;
+            for (int i=0; i<threshold-2; ++i) {
+                final int avgStart = from + (int)Math.floor((i + 1) * bucketSize) + 1;
+                final int avgEnd = Math.min(from + (int)Math.floor((i + 2) * bucketSize) + 1, to + 1);
+                double avgX = 0d;
+                double avgY = 0d;
+                int avgCount = 0;
+                for (int j=avgStart; j<avgEnd; ++j) {
+                    final double yValue = y.applyAsDouble(j);
+                    if (!Double.isNaN(yValue)) {
+                        avgX += x.applyAsDouble(j);
+                        avgY += yValue;
+                        avgCount++;
+                    }
+                }
+                if (avgCount > 0) {
+                    avgX /= avgCount;
+                    avgY /= avgCount;
+                } else {
+                    avgX = x.applyAsDouble(Math.min(avgStart, to));
+                    avgY = Double.NaN;
+                }
+                final int rangeStart = from + (int)Math.floor(i * bucketSize) + 1;
+                final int rangeEnd = from + (int)Math.floor((i + 1) * bucketSize) + 1;
+                final double ax = x.applyAsDouble(a);
+                final double ay = y.applyAsDouble(a);
+                final boolean anchored = !Double.isNaN(ay);
+                final boolean averaged = !Double.isNaN(avgY);
+                double maxArea = -1d;
+                int next = -1;
+                int gap = -1;
+                for (int j=rangeStart; j<rangeEnd; ++j) {
+                    final double yValue = y.applyAsDouble(j);
+                    if (Double.isNaN(yValue)) {
+                        gap = gap < 0 ? j : gap;
+                    } else {
+                        final double area;
+                        if (anchored && averaged) {
+                            area = Math.abs((ax - avgX) * (yValue - ay) - (ax - x.applyAsDouble(j)) * (avgY - ay));
+                        } else if (anchored) {
+                            area = Math.abs(yValue - ay);
+                        } else if (averaged) {
+                            area = Math.abs(yValue - avgY);
+                        } else {
+                            area = 0d;
+                        }
+                        if (area > maxArea) {
+                            maxArea = area;
+                            next = j;
+                        }
+                    }
+                }
+                if (next < 0 && gap < 0) {
+                    continue;
+                } else if (next < 0) {
+                    result[k++] = gap;
+                    a = gap;
+                } else if (gap < 0) {
+                    result[k++] = next;
+                    a = next;
+                } else if (gap < next) {
+                    result[k++] = gap;
+                    result[k++] = next;
+                    a = next;
+                } else {
+                    result[k++] = next;
+                    result[k++] = gap;
+                    a = gap;
+                }
+            }
+            result[k++] = to;
+            return k == result.length ? result : Arrays.copyOf(result, k);
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.chart.xy;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.zavtech.morpheus.array.Array;
+import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.range.Range;
+
+/**
+ * Tests that an XyBuffer retains the most recent items in order as it grows, wraps around and is resized
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class XyBufferTest {
+
+
+    @Test()
+    public void appendWithinCapacity() {
+        final XyBuffer<Integer,String> buffer = buffer(10);
+        Assert.assertTrue(buffer.isEmpty(), "The buffer is initially empty");
+        Assert.assertEquals(buffer.evictions(6), 0, "No evictions expected");
+        Assert.assertEquals(buffer.append(rows(0, 6), i -> i), 0, "No items evicted");
+        assertItems(buffer, 0, 6);
+    }
+
+
+    @Test()
+    public void wrapAround() {
+        final XyBuffer<Integer,String> buffer = buffer(10);
+        buffer.append(rows(0, 7), i -> i);
+        Assert.assertEquals(buffer.evictions(7), 4, "Evictions predicted for second append");
+        Assert.assertEquals(buffer.append(rows(7, 7), i -> 7 + i), 4, "Items evicted by second append");
+        assertItems(buffer, 4, 10);
+        Assert.assertEquals(buffer.append(rows(14, 3), i -> 14 + i), 3, "Items evicted by third append");
+        assertItems(buffer, 7, 10);
+    }
+
+
+    @Test()
+    public void appendBeyondCapacity() {
+        final XyBuffer<Integer,String> buffer = buffer(5);
+        buffer.append(rows(0, 3), i -> i);
+        Assert.assertEquals(buffer.evictions(12), 3, "Only items held can be evicted");
+        Assert.assertEquals(buffer.append(rows(3, 12), i -> 3 + i), 3, "All prior items evicted");
+        assertItems(buffer, 10, 5);
+    }
+
+
+    @Test()
+    public void resizeWhileWrapped() {
+        final XyBuffer<Integer,String> buffer = buffer(10);
+        buffer.append(rows(0, 14), i -> i);
+        assertItems(buffer, 4, 10);
+        Assert.assertEquals(buffer.resize(6), 4, "Oldest items evicted by shrinking");
+        Assert.assertEquals(buffer.capacity(), 6, "Capacity updated");
+        assertItems(buffer, 8, 6);
+        Assert.assertEquals(buffer.append(rows(14, 2), i -> 14 + i), 2, "Items evicted after shrinking");
+        assertItems(buffer, 10, 6);
+        Assert.assertEquals(buffer.resize(20), 0, "Nothing evicted by growing");
+        assertItems(buffer, 10, 6);
+        Assert.assertEquals(buffer.append(rows(16, 10), i -> 16 + i), 0, "Nothing evicted below new capacity");
+        assertItems(buffer, 10, 16);
+        Assert.assertEquals(buffer.append(rows(26, 7), i -> 26 + i), 3, "Items evicted at new capacity");
+        assertItems(buffer, 13, 20);
+    }
+
+
+    @Test()
+    public void missingSeries() {
+        final XyBuffer<Integer,String> buffer = new XyBuffer<>(10, Integer.class, Arrays.asList("A", "C"), Integer::doubleValue);
+        buffer.append(rows(0, 3), i -> i);
+        for (int i=0; i<buffer.size(); ++i) {
+            Assert.assertEquals(buffer.value(0, i), (double)i, "Series A value at " + i);
+            Assert.assertTrue(Double.isNaN(buffer.value(1, i)), "Series C is not in the rows, so is NaN at " + i);
+        }
+    }
+
+
+    @Test()
+    public void randomAppendsAndResizes() {
+        final Random random = new Random(11);
+        final XyBuffer<Integer,String> buffer = buffer(3000);
+        final Deque<Integer> expected = new ArrayDeque<>();
+        int next = 0;
+        for (int step=0; step<200; ++step) {
+            if (step % 25 == 24) {
+                final int capacity = 500 + random.nextInt(5000);
+                final int evicted = Math.max(0, expected.size() - capacity);
+                Assert.assertEquals(buffer.resize(capacity), evicted, "Evictions from resize at step " + step);
+                for (int i=0; i<evicted; ++i) expected.removeFirst();
+            } else {
+                final int count = 1 + random.nextInt(700);
+                final int start = next;
+                final int evicted = Math.min(expected.size(), Math.max(0, expected.size() + count - buffer.capacity()));
+                Assert.assertEquals(buffer.evictions(count), evicted, "Predicted evictions at step " + step);
+                Assert.assertEquals(buffer.append(rows(start, count), i -> start + i), evicted, "Evictions from append at step " + step);
+                for (int i=0; i<count; ++i) expected.addLast(start + i);
+                while (expected.size() > buffer.capacity()) expected.removeFirst();
+                next += count;
+            }
+            Assert.assertEquals(buffer.size(), expected.size(), "Size at step " + step);
+            final Iterator<Integer> iterator = expected.iterator();
+            for (int i=0; i<buffer.size(); ++i) {
+                final int key = iterator.next();
+                Assert.assertEquals(buffer.key(i).intValue(), key, "Key at item " + i + " of step " + step);
+                Assert.assertEquals(buffer.value(0, i), (double)key, "Value at item " + i + " of step " + step);
+            }
+        }
+    }
+
+
+    /**
+     * Returns a new buffer with series A and B and an integer domain
+     * @param capacity  the buffer capacity
+     * @return          the newly created buffer
+     */
+    private static XyBuffer<Integer,String> buffer(int capacity) {
+        return new XyBuffer<>(capacity, Integer.class, Arrays.asList("A", "B"), Integer::doubleValue);
+    }
+
+
+    /**
+     * Returns rows where series A holds the domain key and series B its negation
+     * @param start     the first domain key
+     * @param count     the number of rows
+     * @return          the DataFrame of rows
+     */
+    private static DataFrame<Integer,String> rows(int start, int count) {
+        return DataFrame.of(Range.of(0, count), String.class, columns -> {
+            columns.add("A", Array.of(IntStream.range(start, start + count).asDoubleStream().toArray()));
+            columns.add("B", Array.of(IntStream.range(start, start + count).mapToDouble(v -> -v).toArray()));
+        });
+    }
+
+
+    /**
+     * Asserts the buffer holds consecutive keys starting at the value specified, in logical order
+     * @param buffer    the buffer to check
+     * @param first     the expected key of the oldest item
+     * @param size      the expected number of items
+     */
+    private static void assertItems(XyBuffer<Integer,String> buffer, int first, int size) {
+        Assert.assertEquals(buffer.size(), size, "The buffer size matches");
+        Assert.assertEquals(buffer.frame().rowCount(), size, "The frame view size matches");
+        for (int i=0; i<size; ++i) {
+            final int key = first + i;
+            Assert.assertEquals(buffer.key(i).intValue(), key, "Key at item " + i);
+            Assert.assertEquals(buffer.domain(i), (double)key, "Domain value at item " + i);
+            Assert.assertEquals(buffer.value(0, i), (double)key, "Series A at item " + i);
+            Assert.assertEquals(buffer.value(1, i), (double)-key, "Series B at item " + i);
+            Assert.assertEquals(buffer.frame().data().getDouble(i, 1), (double)-key, "Frame view of series B at item " + i);
+        }
+    }
+
+}
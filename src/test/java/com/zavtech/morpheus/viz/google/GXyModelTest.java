@@ -0,0 +1,253 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.google;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.zavtech.morpheus.array.Array;
+import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.range.Range;
+
+/**
+ * Tests that the unified dataset of a GXyModel is the sorted union of its datasets, with the last value of any duplicate key winning
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class GXyModelTest {
+
+
+    @DataProvider(name="keyTypes")
+    public Object[][] keyTypes() {
+        final IntFunction<Integer> integers = i -> i - 50;
+        final IntFunction<Double> doubles = i -> (i - 50) * 0.25d;
+        final IntFunction<LocalDate> dates = i -> LocalDate.of(2000, 1, 1).plusDays(i);
+        final IntFunction<String> strings = i -> String.format("K%03d", i);
+        return new Object[][] {
+            { Integer.class, integers },
+            { Double.class, doubles },
+            { LocalDate.class, dates },
+            { String.class, strings },
+        };
+    }
+
+
+    @Test()
+    public void sortedInputs() {
+        final GXyModel<Integer,String> model = model();
+        model.add(frame(Integer.class, "A", new Integer[] {1, 3, 5}, 1d, 3d, 5d), "X");
+        model.add(frame(Integer.class, "B", new Integer[] {2, 3, 4}, 20d, 30d, 40d), "X");
+        final GXyDataset<Integer,String> unified = model.getUnifiedDataset();
+        assertKeys(unified, 1, 2, 3, 4, 5);
+        assertValues(unified, "A", 1d, Double.NaN, 3d, Double.NaN, 5d);
+        assertValues(unified, "B", Double.NaN, 20d, 30d, 40d, Double.NaN);
+    }
+
+
+    @Test()
+    public void duplicateKeysAcrossDatasets() {
+        final GXyModel<Integer,String> model = model();
+        model.add(frame(Integer.class, "A", new Integer[] {1, 2, 3}, 1d, 2d, 3d), "X");
+        model.add(frame(Integer.class, "A", new Integer[] {2, 3, 4}, 20d, 30d, 40d), "X");
+        final GXyDataset<Integer,String> unified = model.getUnifiedDataset();
+        assertKeys(unified, 1, 2, 3, 4);
+        assertValues(unified, "A", 1d, 20d, 30d, 40d);
+    }
+
+
+    @Test()
+    public void duplicateKeysWithinDataset() {
+        final GXyModel<Integer,String> model = model();
+        model.add(frame(Integer.class, "A", new Integer[] {2, 1, 2, 3, 1}, 10d, 20d, 30d, 40d, 50d), "X");
+        model.add(frame(Integer.class, "B", new Integer[] {3}, 60d), "X");
+        final GXyDataset<Integer,String> unified = model.getUnifiedDataset();
+        assertKeys(unified, 1, 2, 3);
+        assertValues(unified, "A", 50d, 30d, 40d);
+        assertValues(unified, "B", Double.NaN, Double.NaN, 60d);
+    }
+
+
+    @Test(dataProvider="keyTypes")
+    public <X extends Comparable> void unsortedInputs(Class<X> keyType, IntFunction<X> keyFunction) {
+        final Random random = new Random(7);
+        final GXyModel<X,String> model = model();
+        final List<DataFrame<Integer,String>> frames = new ArrayList<>();
+        for (int k=0; k<3; ++k) {
+            final int rowCount = 200 + k * 50;
+            final Object[] keys = new Object[rowCount];
+            final double[] values = new double[rowCount];
+            for (int i=0; i<rowCount; ++i) {
+                keys[i] = keyFunction.apply(random.nextInt(150));
+                values[i] = random.nextDouble();
+            }
+            final DataFrame<Integer,String> frame = frame(keyType, k % 2 == 0 ? "A" : "B", keys, values);
+            model.add(frame, "X");
+            frames.add(frame);
+        }
+        assertUnion(model.getUnifiedDataset(), frames);
+    }
+
+
+    @Test()
+    public void nullDomainKeys() {
+        final GXyModel<String,String> model = model();
+        final List<DataFrame<Integer,String>> frames = new ArrayList<>();
+        frames.add(frame(String.class, "A", new String[] {"b", null, "d", "a"}, 1d, 2d, 3d, 4d));
+        frames.add(frame(String.class, "A", new String[] {"c", "b", null}, 5d, 6d, 7d));
+        frames.add(frame(String.class, "B", new String[] {null, "e", null}, 8d, 9d, 10d));
+        frames.forEach(frame -> model.add(frame, "X"));
+        final GXyDataset<String,String> unified = model.getUnifiedDataset();
+        assertKeys(unified, null, "a", "b", "c", "d", "e");
+        assertValues(unified, "A", 7d, 4d, 6d, 5d, 3d, Double.NaN);
+        assertValues(unified, "B", 10d, Double.NaN, Double.NaN, Double.NaN, Double.NaN, 9d);
+        assertUnion(unified, frames);
+    }
+
+
+    @Test()
+    public void nullDomainKeysWithCodedType() {
+        final GXyModel<LocalDate,String> model = model();
+        final LocalDate start = LocalDate.of(2017, 1, 1);
+        final List<DataFrame<Integer,String>> frames = new ArrayList<>();
+        frames.add(frame(LocalDate.class, "A", new LocalDate[] {start.plusDays(2), null, start}, 1d, 2d, 3d));
+        frames.add(frame(LocalDate.class, "B", new LocalDate[] {start.plusDays(1), start.plusDays(2)}, 4d, 5d));
+        frames.forEach(frame -> model.add(frame, "X"));
+        final GXyDataset<LocalDate,String> unified = model.getUnifiedDataset();
+        assertKeys(unified, null, start, start.plusDays(1), start.plusDays(2));
+        assertUnion(unified, frames);
+    }
+
+
+    /**
+     * Returns a newly created model bound to a new plot
+     * @return      the newly created model
+     */
+    @SuppressWarnings("unchecked")
+    private static <X extends Comparable> GXyModel<X,String> model() {
+        final GXyPlot<X> plot = new GXyPlot<>();
+        return (GXyModel<X,String>)plot.<String>data();
+    }
+
+
+    /**
+     * Returns a DataFrame with a domain column X and a single series column
+     * @param keyType   the domain key type
+     * @param series    the series key
+     * @param keys      the domain keys, which may be unsorted, repeated or null
+     * @param values    the series values
+     * @return          the newly created frame
+     */
+    @SuppressWarnings("unchecked")
+    private static DataFrame<Integer,String> frame(Class<?> keyType, String series, Object[] keys, double... values) {
+        final Array<Object> domain = Array.of((Class<Object>)keyType, keys.length);
+        for (int i=0; i<keys.length; ++i) {
+            domain.setValue(i, keys[i]);
+        }
+        return DataFrame.of(Range.of(0, keys.length), String.class, columns -> {
+            columns.add("X", domain);
+            columns.add(series, Array.of(values));
+        });
+    }
+
+
+    /**
+     * Asserts the unified dataset matches the union of the frames computed with a sorted map, with null keys first
+     * @param unified   the unified dataset
+     * @param frames    the frames added to the model, in order
+     */
+    @SuppressWarnings("unchecked")
+    private static void assertUnion(GXyDataset<?,String> unified, List<DataFrame<Integer,String>> frames) {
+        final Map<Object,Map<String,Double>> expected = new TreeMap<>(Comparator.nullsFirst((k1, k2) -> ((Comparable<Object>)k1).compareTo(k2)));
+        for (DataFrame<Integer,String> frame : frames) {
+            final String series = frame.cols().key(1);
+            for (int i=0; i<frame.rowCount(); ++i) {
+                final Object key = frame.data().getValue(i, 0);
+                expected.computeIfAbsent(key, k -> new HashMap<>()).put(series, frame.data().getDouble(i, 1));
+            }
+        }
+        assertKeys(unified, expected.keySet().toArray());
+        for (int j=0; j<unified.getSeriesCount(); ++j) {
+            final String series = unified.getSeriesKey(j);
+            final double[] values = expected.values().stream().mapToDouble(row -> row.getOrDefault(series, Double.NaN)).toArray();
+            assertValues(unified, series, values);
+        }
+    }
+
+
+    /**
+     * Asserts the domain keys of the dataset
+     * @param dataset   the dataset
+     * @param keys      the expected keys in order
+     */
+    private static void assertKeys(GXyDataset<?,String> dataset, Object... keys) {
+        final Object[] actual = new Object[dataset.getDomainSize()];
+        for (int i=0; i<actual.length; ++i) {
+            actual[i] = dataset.getDomainValue(i);
+        }
+        Assert.assertEquals(actual, keys, "The domain keys match, found " + Arrays.toString(actual));
+    }
+
+
+    /**
+     * Asserts the values of a series in the dataset
+     * @param dataset   the dataset
+     * @param series    the series key
+     * @param values    the expected values in domain order, NaN where the series has no value
+     */
+    private static void assertValues(GXyDataset<?,String> dataset, String series, double... values) {
+        final int index = seriesIndex(dataset, series);
+        Assert.assertEquals(dataset.getDomainSize(), values.length, "The domain size matches");
+        for (int i=0; i<values.length; ++i) {
+            final double actual = dataset.getRangeValue(i, index);
+            if (Double.isNaN(values[i])) {
+                Assert.assertTrue(Double.isNaN(actual), "Series " + series + " has no value at " + i + ", found " + actual);
+            } else {
+                Assert.assertEquals(actual, values[i], "Series " + series + " value at " + i);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the index of the series in the dataset
+     * @param dataset   the dataset
+     * @param series    the series key
+     * @return          the series index
+     */
+    private static int seriesIndex(GXyDataset<?,String> dataset, String series) {
+        for (int j=0; j<dataset.getSeriesCount(); ++j) {
+            if (dataset.getSeriesKey(j).equals(series)) {
+                return j;
+            }
+        }
+        throw new AssertionError("No series in dataset for " + series);
+    }
+
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.jfree;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.jfree.chart.renderer.xy.XYItemRenderer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.zavtech.morpheus.array.Array;
+import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.range.Range;
+import com.zavtech.morpheus.viz.chart.Chart;
+import com.zavtech.morpheus.viz.chart.xy.XyPlot;
+
+/**
+ * Tests the item ranges and eviction counts reported by append events, and the extension of cached line samples across appends
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class JFXyAppendTest {
+
+
+    @Test()
+    public void appendEvents() {
+        final JFChartBase<XyPlot<Integer>> chart = chart(5000);
+        final JFXyDataset<Integer,String> dataset = dataset(chart);
+        final List<JFXyAppendEvent> events = new ArrayList<>();
+        dataset.withCapacity(6000);
+        dataset.addChangeListener(event -> {
+            if (event instanceof JFXyAppendEvent) {
+                events.add((JFXyAppendEvent)event);
+            }
+        });
+        chart.plot().<String>data().append(0, rows(5000, 500));
+        assertEvent(events.get(0), 5000, 5499, 0);
+        assertKeys(dataset, 0, 5500);
+        chart.plot().<String>data().append(0, rows(5500, 800));
+        assertEvent(events.get(1), 5200, 5999, 300);
+        assertKeys(dataset, 300, 6000);
+        chart.plot().<String>data().append(0, rows(6300, 7000));
+        assertEvent(events.get(2), 0, 5999, 6000);
+        assertKeys(dataset, 7300, 6000);
+        Assert.assertEquals(events.size(), 3, "One event per append");
+    }
+
+
+    @Test()
+    public void sampleExtendedAfterEvictions() throws Exception {
+        final JFChartBase<XyPlot<Integer>> chart = chart(5000);
+        final JFXyDataset<Integer,String> dataset = dataset(chart);
+        dataset.withCapacity(5100);
+        chart.freeChart().createBufferedImage(600, 400);
+        final int[] before = sample(chart).indexes;
+        Assert.assertEquals(before[0], 0, "The sample starts at the first item");
+        Assert.assertEquals(before[before.length-1], 4999, "The sample ends at the last item");
+        Assert.assertTrue(before.length < 2000, "The series is downsampled to " + before.length + " items");
+
+        chart.plot().<String>data().append(0, rows(5000, 300));
+        final Sample shifted = sample(chart);
+        Assert.assertNotNull(shifted, "The cached sample follows the append");
+        Assert.assertEquals(shifted.indexes[shifted.indexes.length-1], 4999 - 200, "The cached sample is shifted by the evicted items");
+
+        chart.freeChart().createBufferedImage(600, 400);
+        final int[] after = sample(chart).indexes;
+        final Set<Double> keys = Arrays.stream(after).mapToObj(i -> dataset.getXValue(0, i)).collect(Collectors.toSet());
+        Assert.assertEquals(after[0], 0, "The extended sample starts at the first item");
+        Assert.assertEquals(after[after.length-1], 5099, "The extended sample ends at the last item");
+        for (int i=1; i<after.length; ++i) {
+            Assert.assertTrue(after[i] > after[i-1], "The extended sample is ascending at " + i);
+        }
+        for (int item : before) {
+            if (item > 200) {
+                Assert.assertTrue(keys.contains((double)item), "The extended sample retains the item keyed " + item);
+            }
+        }
+        final long appended = Arrays.stream(after).filter(i -> i > 4999 - 200).count();
+        Assert.assertTrue(appended > 10 && appended < 300, "The appended items are sampled at the same density, found " + appended);
+    }
+
+
+    @Test()
+    public void sampleDroppedWhenOverwritten() throws Exception {
+        final JFChartBase<XyPlot<Integer>> chart = chart(5000);
+        dataset(chart).withCapacity(5000);
+        chart.freeChart().createBufferedImage(600, 400);
+        Assert.assertNotNull(sample(chart), "The line is sampled");
+        chart.plot().<String>data().append(0, rows(5000, 6000));
+        Assert.assertNull(sample(chart), "The cached sample is dropped once all its items are evicted");
+        chart.freeChart().createBufferedImage(600, 400);
+        final int[] after = sample(chart).indexes;
+        Assert.assertEquals(after[0], 0, "The new sample starts at the first item");
+        Assert.assertEquals(after[after.length-1], 4999, "The new sample ends at the last item");
+    }
+
+
+    /**
+     * Returns a line chart of a random walk keyed by integers from zero
+     * @param rowCount  the number of rows
+     * @return          the newly created chart
+     */
+    @SuppressWarnings("unchecked")
+    private static JFChartBase<XyPlot<Integer>> chart(int rowCount) {
+        final List<Chart<XyPlot<Integer>>> charts = new ArrayList<>();
+        final DataFrame<Integer,String> frame = rows(0, rowCount);
+        Chart.create().asSwing().withLinePlot(frame, charts::add);
+        return (JFChartBase<XyPlot<Integer>>)charts.get(0);
+    }
+
+
+    /**
+     * Returns the dataset of the chart
+     * @param chart the chart
+     * @return      the dataset at index zero
+     */
+    @SuppressWarnings("unchecked")
+    private static JFXyDataset<Integer,String> dataset(JFChartBase<XyPlot<Integer>> chart) {
+        return (JFXyDataset<Integer,String>)chart.plot().<String>data().at(0);
+    }
+
+
+    /**
+     * Returns rows of a seeded random walk in series A, keyed by consecutive integers
+     * @param start     the first row key
+     * @param count     the number of rows
+     * @return          the DataFrame of rows
+     */
+    private static DataFrame<Integer,String> rows(int start, int count) {
+        final Random random = new Random(start);
+        final double[] values = new double[count];
+        for (int i=1; i<count; ++i) {
+            values[i] = values[i-1] + random.nextGaussian();
+        }
+        return DataFrame.of(Range.of(start, start + count), String.class, columns -> {
+            columns.add("A", Array.of(values));
+        });
+    }
+
+
+    /**
+     * Asserts the item range and eviction count of an append event
+     * @param event     the append event
+     * @param first     the expected first appended item
+     * @param last      the expected last appended item
+     * @param evicted   the expected number of evicted items
+     */
+    private static void assertEvent(JFXyAppendEvent event, int first, int last, int evicted) {
+        Assert.assertEquals(event.getFirstItem(), first, "The first appended item matches");
+        Assert.assertEquals(event.getLastItem(), last, "The last appended item matches");
+        Assert.assertEquals(event.getEvicted(), evicted, "The number of evicted items matches");
+    }
+
+
+    /**
+     * Asserts the dataset holds consecutive keys from the value specified
+     * @param dataset   the dataset
+     * @param first     the expected key of the first item
+     * @param size      the expected number of items
+     */
+    private static void assertKeys(JFXyDataset<Integer,String> dataset, int first, int size) {
+        Assert.assertEquals(dataset.getItemCount(0), size, "The dataset size matches");
+        for (int i=0; i<size; ++i) {
+            Assert.assertEquals(dataset.getXValue(0, i), (double)(first + i), "Domain value at item " + i);
+        }
+    }
+
+
+    /**
+     * Returns the cached line sample of the first series of the chart renderer
+     * @param chart the chart
+     * @return      the cached sample, null if none
+     */
+    private static Sample sample(JFChartBase<XyPlot<Integer>> chart) throws Exception {
+        final XYItemRenderer renderer = chart.freeChart().getXYPlot().getRenderer(0);
+        final Map<?,?> sampleMap = (Map<?,?>)field(renderer, "sampleMap");
+        final Object sample = sampleMap.get(0);
+        return sample != null ? new Sample((int[])field(sample, "indexes")) : null;
+    }
+
+
+    /**
+     * Returns the value of a private field declared by the class of an object or one of its super classes
+     * @param target    the object to read from
+     * @param name      the field name
+     * @return          the field value
+     */
+    private static Object field(Object target, String name) throws Exception {
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                final Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(target);
+            } catch (NoSuchFieldException ex) {
+                continue;
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+
+
+    /**
+     * A copy of the item indexes of a cached renderer sample
+     */
+    private static class Sample {
+
+        private int[] indexes;
+
+        /**
+         * Constructor
+         * @param indexes   the sampled item indexes
+         */
+        Sample(int[] indexes) {
+            this.indexes = indexes.clone();
+        }
+    }
+
+}
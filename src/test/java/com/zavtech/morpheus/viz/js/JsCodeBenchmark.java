@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.js;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.zavtech.morpheus.array.Array;
+import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.range.Range;
+import com.zavtech.morpheus.viz.chart.Chart;
+import com.zavtech.morpheus.viz.chart.ChartFactory;
+import com.zavtech.morpheus.viz.util.GzipOutput;
+
+public class JsCodeBenchmark {
+
+    private static final Writer NULL_WRITER = new Writer() {
+        public void write(char[] chars, int offset, int length) {}
+        public void flush() {}
+        public void close() {}
+    };
+
+
+    @Test()
+    public void numericEmission() {
+        final double[] values = new Random(1).doubles(2000000).map(v -> v * 1000d).toArray();
+        for (int run=0; run<3; ++run) {
+            measure("formatted", () -> JsCode.create(NULL_WRITER, js -> js.newArray(array -> {
+                for (double value : values) {
+                    array.append(String.format("%s", value), false);
+                }
+            })));
+            measure("direct", () -> JsCode.create(NULL_WRITER, js -> js.newArray(array -> {
+                for (double value : values) {
+                    array.append(value);
+                }
+            })));
+        }
+    }
+
+
+    @Test()
+    public void googleChartEmission() {
+        final int rowCount = 200000;
+        final Array<String> colKeys = Array.of("A", "B", "C", "D", "E", "F", "G", "H");
+        final DataFrame<Integer,String> frame = DataFrame.ofDoubles(Range.of(0, rowCount), colKeys, v -> Math.random());
+        final ChartFactory factory = Chart.create().asHtml();
+        final Chart<?> chart = factory.withLinePlot(frame, c -> c.title().withText("Benchmark"));
+        for (int run=0; run<3; ++run) {
+            measure("chart", () -> factory.javascript(NULL_WRITER, Collections.singletonList(chart)));
+        }
+    }
+
+
+    @Test()
+    public void gzipLevels() throws Exception {
+        final int rowCount = 200000;
+        final Array<String> colKeys = Array.of("A", "B", "C", "D");
+        final DataFrame<Integer,String> frame = DataFrame.of(Range.of(0, rowCount), String.class, columns -> {
+            colKeys.forEach(key -> columns.add(key, Array.randn(rowCount).cumSum()));
+        });
+        final ChartFactory factory = Chart.create().asHtml();
+        final Chart<?> chart = factory.withLinePlot(frame, c -> c.title().withText("Benchmark"));
+        final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(plain, StandardCharsets.UTF_8)) {
+            factory.javascript(writer, Collections.singletonList(chart));
+        }
+        final byte[] bytes = plain.toByteArray();
+        for (int run=0; run<3; ++run) {
+            for (int level : new int[] {1, 4, 6, 9}) {
+                final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                measure("level " + level, () -> {
+                    try (OutputStream os = GzipOutput.compress(compressed, level)) {
+                        os.write(bytes);
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                });
+                System.out.printf("level %s   %6d KB -> %6d KB%n", level, bytes.length / 1024, compressed.size() / 1024);
+            }
+        }
+    }
+
+
+    /**
+     * Runs the task and prints the elapsed time and bytes allocated by the calling thread
+     * @param label the label for output
+     * @param task  the task to measure
+     */
+    private void measure(String label, Runnable task) {
+        final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long bytes0 = bean.getThreadAllocatedBytes(threadId);
+        final long time0 = System.nanoTime();
+        task.run();
+        final long time1 = System.nanoTime();
+        final long bytes1 = bean.getThreadAllocatedBytes(threadId);
+        System.out.printf("%-10s %6d millis, %6d KB allocated%n", label, (time1 - time0) / 1000000L, (bytes1 - bytes0) / 1024L);
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.viz.util;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.zavtech.morpheus.array.Array;
+import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.range.Range;
+import com.zavtech.morpheus.viz.chart.Chart;
+
+/**
+ * Tests that PngEncoder output decodes to the original chart image with every filter, serially and in parallel
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class PngEncoderTest {
+
+    private BufferedImage image;
+    private ExecutorService executor;
+
+
+    @BeforeClass()
+    public void setup() throws Exception {
+        final int rowCount = 5000;
+        final DataFrame<Integer,String> frame = DataFrame.of(Range.of(0, rowCount), String.class, columns -> {
+            columns.add("A", Array.randn(rowCount).cumSum());
+            columns.add("B", Array.randn(rowCount).cumSum());
+        });
+        Chart.create().asSwing().withLinePlot(frame, chart -> {
+            chart.title().withText("PngEncoder Test");
+            chart.options().withImageEncoder((rendered, alpha, os) -> this.image = rendered);
+            chart.writerPng(new ByteArrayOutputStream(), 1000, 600, true);
+        });
+        Assert.assertNotNull(image, "The chart was rendered to an image");
+        this.executor = Executors.newFixedThreadPool(4);
+    }
+
+
+    @AfterClass()
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+
+    @DataProvider(name="encodings")
+    public Object[][] encodings() {
+        final List<Object[]> args = new ArrayList<>();
+        for (PngEncoder.Filter filter : PngEncoder.Filter.values()) {
+            for (boolean parallel : new boolean[] {false, true}) {
+                for (boolean alpha : new boolean[] {false, true}) {
+                    args.add(new Object[] {filter, parallel, alpha});
+                }
+            }
+        }
+        return args.toArray(new Object[args.size()][]);
+    }
+
+
+    @Test(dataProvider="encodings")
+    public void encode(PngEncoder.Filter filter, boolean parallel, boolean alpha) throws Exception {
+        final PngEncoder encoder = new PngEncoder(6, filter);
+        if (parallel) {
+            encoder.withParallelism(executor, 4);
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        encoder.encode(image, alpha, bytes);
+        final BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertNotNull(decoded, "The encoded image can be decoded");
+        Assert.assertEquals(decoded.getWidth(), image.getWidth(), "The image width matches");
+        Assert.assertEquals(decoded.getHeight(), image.getHeight(), "The image height matches");
+        Assert.assertEquals(decoded.getColorModel().hasAlpha(), alpha, "The image has an alpha channel if requested");
+        final int mask = alpha ? 0xFFFFFFFF : 0x00FFFFFF;
+        for (int y=0; y<image.getHeight(); ++y) {
+            for (int x=0; x<image.getWidth(); ++x) {
+                final int expected = image.getRGB(x, y) & mask;
+                final int actual = decoded.getRGB(x, y) & mask;
+                if (expected != actual) {
+                    Assert.fail(String.format("Pixel at %s,%s differs, expected %08X, found %08X", x, y, expected, actual));
+                }
+            }
+        }
+    }
+
+}